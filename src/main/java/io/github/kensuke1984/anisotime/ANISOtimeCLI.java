@@ -2,14 +2,20 @@ package io.github.kensuke1984.anisotime;
 
 import java.awt.Desktop;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.net.URI;
 import java.nio.file.*;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -22,6 +28,7 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.math3.util.Precision;
 
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Utilities;
 import net.sf.epsgraphics.ColorMode;
 import net.sf.epsgraphics.EpsGraphics;
@@ -34,7 +41,7 @@ import net.sf.epsgraphics.EpsGraphics;
  * <p>
  *
  * @author Kensuke Konishi
- * @version 0.3.10b
+ * @version 0.3.11b
  */
 final class ANISOtimeCLI {
 
@@ -185,7 +192,9 @@ final class ANISOtimeCLI {
      */
     private boolean checkArgumentOption() {
         boolean hasProblem = false;
-        if (Arrays.stream(cmd.getOptions()).filter(Option::hasArg).anyMatch(o -> o.getValue().startsWith("-"))) {
+        if (Arrays.stream(cmd.getOptions()).filter(Option::hasArg)
+                .filter(o -> !o.getOpt().equals("b") || !o.getValue().equals("-"))
+                .anyMatch(o -> o.getValue().startsWith("-"))) {
             System.err.println("Some options are missing arguments.");
             hasProblem = true;
         }
@@ -244,6 +253,74 @@ final class ANISOtimeCLI {
         }
     }
 
+    /**
+     * If the option '-b' is passed, ANISOtime reads rows of "depth[km] &Delta;[deg] (phases)" from the file given by
+     * the option, or from the standard input if it is '-'. Phases in a row are separated by commas. If a row has no
+     * phases, the ones by -ph (or the default ones) are used. Blank rows and rows starting with '#' are skipped.
+     * <p>
+     * Rows are computed concurrently with the catalog shared by all of them, and the results are printed in the order
+     * of the rows as soon as they are ready. Each line is "depth &Delta; phase (ray parameter, &Delta;, T)". A problem
+     * in a row is printed to the standard error and does not stop the others.
+     *
+     * @throws IOException if any
+     */
+    private void printBatch() throws IOException {
+        String input = cmd.getOptionValue("b");
+        // rows in computation at once
+        int window = 4 * JobScheduler.getParallelism();
+        Deque<CompletableFuture<String>> results = new ArrayDeque<>();
+        try (BufferedReader reader = input.equals("-") ? new BufferedReader(new InputStreamReader(System.in)) :
+                Files.newBufferedReader(Paths.get(input))) {
+            int nLine = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int lineNumber = ++nLine;
+                String row = line.trim();
+                if (row.isEmpty() || row.startsWith("#")) continue;
+                results.add(JobScheduler.supply(() -> computeRow(lineNumber, row)));
+                if (window <= results.size()) System.out.print(results.poll().join());
+                while (!results.isEmpty() && results.peek().isDone()) System.out.print(results.poll().join());
+            }
+        }
+        while (!results.isEmpty()) System.out.print(results.poll().join());
+        System.out.flush();
+    }
+
+    /**
+     * @param lineNumber of the row in the input
+     * @param row        "depth[km] &Delta;[deg] (phases)"
+     * @return lines of the results for the row
+     */
+    private String computeRow(int lineNumber, String row) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(bytes)) {
+            String[] parts = row.split("\\s+");
+            if (parts.length < 2 || 3 < parts.length)
+                throw new IllegalArgumentException("A row must be \"depth \u0394 (phases)\".");
+            double rowEventR = structure.earthRadius() - Double.parseDouble(parts[0]);
+            double rowDelta = Math.toRadians(Double.parseDouble(parts[1]));
+            Phase[] phases = parts.length == 2 ? targetPhases : Arrays.stream(parts[2].split(","))
+                    .map(n -> Phase.create(n, cmd.hasOption("SV"))).distinct().toArray(Phase[]::new);
+            String prefix = parts[0] + " " + parts[1] + " ";
+            for (Phase phase : phases) {
+                Raypath[] raypaths = catalog.searchPath(phase, rowEventR, rowDelta);
+                if (phase.isDiffracted()) {
+                    double deltaOnBoundary = Math.toDegrees(rowDelta - raypaths[0].computeDelta(rowEventR, phase));
+                    if (deltaOnBoundary < 0) continue;
+                    printResults(prefix, rowEventR, -1, raypaths[0],
+                            Phase.create(phase.toString() + deltaOnBoundary, phase.isPSV()), out);
+                    continue;
+                }
+                for (Raypath raypath : raypaths)
+                    printResults(prefix, rowEventR, Math.toDegrees(rowDelta), raypath, phase, out);
+            }
+        } catch (Exception e) {
+            System.err.println("Line " + lineNumber + " (" + row + "): " + e);
+            return "";
+        }
+        return bytes.toString();
+    }
+
     /**
      * @param out          Path for a file
      * @param phase        to be shown
@@ -297,6 +374,11 @@ final class ANISOtimeCLI {
                 return;
             }
 
+            if (cmd.hasOption("b")) {
+                printBatch();
+                return;
+            }
+
             // only create a catalog
             if (!cmd.hasOption("p") && !cmd.hasOption("deg")) return;
 
@@ -372,8 +454,8 @@ final class ANISOtimeCLI {
         }
     }
 
-    private void printLine(Phase phase, PrintStream out, int decimalPlace, double... values) {
-        out.println(phase + " " + IntStream.range(0, values.length).filter(i -> (1 << i & showFlag) != 0)
+    private void printLine(String prefix, Phase phase, PrintStream out, int decimalPlace, double... values) {
+        out.println(prefix + phase + " " + IntStream.range(0, values.length).filter(i -> (1 << i & showFlag) != 0)
                 .mapToObj(i -> Utilities.fixDecimalPlaces(decimalPlace, values[i])).collect(Collectors.joining(" ")));
     }
 
@@ -387,6 +469,20 @@ final class ANISOtimeCLI {
      * @return delta [deg] time [s]
      */
     private double[] printResults(double targetDelta, Raypath raypath, Phase targetPhase, PrintStream out) {
+        return printResults("", eventR, targetDelta, raypath, targetPhase, out);
+    }
+
+    /**
+     * @param prefix      printed at the head of the line
+     * @param eventR      [km] radius of the source
+     * @param targetDelta [deg] a target &Delta; for the interpolation. If it is 0, the interpolation will not be done.
+     * @param raypath     Raypath
+     * @param targetPhase phase to be printed
+     * @param out         resource to print in
+     * @return delta [deg] time [s]
+     */
+    private double[] printResults(String prefix, double eventR, double targetDelta, Raypath raypath,
+                                  Phase targetPhase, PrintStream out) {
         double p0 = raypath.getRayParameter();
         double delta0 = raypath.computeDelta(eventR, targetPhase);
         double time0 = raypath.computeT(eventR, targetPhase);
@@ -402,7 +498,7 @@ final class ANISOtimeCLI {
                 delta0 = targetDelta;
             }
         }
-        printLine(targetPhase, out, decimalPlaces, p0, delta0, time0);
+        printLine(prefix, targetPhase, out, decimalPlaces, p0, delta0, time0);
         return new double[]{delta0, time0};
     }
 
@@ -476,6 +572,8 @@ final class ANISOtimeCLI {
         options.addOption("rs", "record-section", true,
                 "start,end(,interval) [deg]\n Computes a table of a record section for the range.");
         options.addOption("o", true, "Directory for ray path figures or file name for record sections.");
+        options.addOption("b", "batch", true,
+                "File of rows 'depth[km] \u0394[deg] (phase,phase,...)', or '-' for the standard input.\n Computes the rows concurrently and prints the results in the order of the rows.");
     }
 
     /**
@@ -531,6 +629,17 @@ final class ANISOtimeCLI {
             return true;
         }
 
+        if (cmd.hasOption("b")) {
+            if (cmd.hasOption("p") || cmd.hasOption("deg") || cmd.hasOption("h") || cmd.hasOption("rs")) {
+                System.err.println("In the batch mode, depths and distances are given in the rows, so none of the options -p, -deg, -h and -rs can be specified.");
+                return true;
+            }
+            if (cmd.hasOption("eps")) {
+                System.err.println("In the batch mode, -eps can not be set.");
+                return true;
+            }
+        }
+
         if (cmd.hasOption("rc") && cmd.hasOption("mod")) {
             System.err.println("When you read a catalog, you cannot specify a velocity model.");
             return true;
@@ -0,0 +1,420 @@
+package io.github.kensuke1984.anisotime;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+import io.github.kensuke1984.kibrary.util.Utilities;
+
+/**
+ * Long-lived travel time service. It keeps {@link RaypathCatalog}s warm in
+ * memory and answers requests from local clients over a socket on the loopback
+ * address, so that tools do not load or compute catalogs by themselves.
+ * <p>
+ * The protocol is one line for a request and one line for its answer. Words
+ * are separated by spaces. An answer starts with "OK" or "ERROR".
+ * <ul>
+ * <li>time model depth[km] &Delta;[deg] phase,phase,... &rarr; OK T T ...
+ * (sorted travel times [s] of all the arrivals)</li>
+ * <li>lookup model depth[km] &Delta;[deg] phase,phase,... &rarr; OK T T ...
+ * (looked up in {@link RaypathCatalog#getTravelTimeTable(Phase, double)})</li>
+ * <li>path model depth[km] &Delta;[deg] phase &rarr; OK p &Delta; T, p &Delta;
+ * T, ... (ray parameter, &Delta; [deg] and T [s] of each arrival as printed
+ * by the CLI)</li>
+ * <li>metrics &rarr; OK counts and latencies of the requests, and cache hits
+ * of the catalogs</li>
+ * <li>quit &rarr; the connection is closed</li>
+ * </ul>
+ * A model is prem, iprem, ak135 or a path of a structure file. A catalog for a
+ * structure file is computed (or read) at the first request and kept.
+ * <p>
+ * Usage: java io.github.kensuke1984.anisotime.ANISOtimeService [port]
+ * <p>
+ * Use {@link Client} to send requests from Java.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.1
+ */
+public final class ANISOtimeService implements Closeable {
+
+    /**
+     * default port of the service
+     */
+    public static final int DEFAULT_PORT = 23032;
+
+    private final ServerSocket SERVER;
+
+    /**
+     * threads for connections
+     */
+    private final ExecutorService CONNECTIONS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * model &rarr; catalog
+     */
+    private final Map<String, RaypathCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+    private final AtomicLong catalogHits = new AtomicLong();
+    private final AtomicLong catalogMisses = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final LatencyHistogram timeLatency = new LatencyHistogram();
+    private final LatencyHistogram lookupLatency = new LatencyHistogram();
+    private final LatencyHistogram pathLatency = new LatencyHistogram();
+
+    /**
+     * @param port of the service on the loopback address (0: any free port)
+     * @throws IOException if the port is not available
+     */
+    public ANISOtimeService(int port) throws IOException {
+        SERVER = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        CATALOGS.put("prem", RaypathCatalog.PREM);
+        CATALOGS.put("iprem", RaypathCatalog.ISO_PREM);
+        CATALOGS.put("ak135", RaypathCatalog.AK135);
+    }
+
+    /**
+     * @param args [port]
+     * @throws IOException if any
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length == 0 ? DEFAULT_PORT : Integer.parseInt(args[0]);
+        try (ANISOtimeService service = new ANISOtimeService(port)) {
+            System.err.println("ANISOtime service is listening on " + service.getPort() + ".");
+            service.serve();
+        }
+    }
+
+    /**
+     * @return port of the service
+     */
+    public int getPort() {
+        return SERVER.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the service is closed. Each connection is
+     * served in its own thread.
+     */
+    public void serve() {
+        while (!SERVER.isClosed()) {
+            try {
+                Socket socket = SERVER.accept();
+                CONNECTIONS.execute(() -> handle(socket));
+            } catch (IOException e) {
+                if (!SERVER.isClosed()) e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        SERVER.close();
+        CONNECTIONS.shutdownNow();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(s.getOutputStream())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (line.equals("quit")) break;
+                writer.println(answer(line));
+                writer.flush();
+            }
+        } catch (IOException e) {
+            if (!SERVER.isClosed()) e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param request a line of the protocol
+     * @return a line of the answer
+     */
+    String answer(String request) {
+        long startTime = System.nanoTime();
+        String[] parts = request.split("\\s+");
+        try {
+            switch (parts[0]) {
+                case "time":
+                    return "OK " + joinTimes(computeTimes(parts, false));
+                case "lookup":
+                    return "OK " + joinTimes(computeTimes(parts, true));
+                case "path":
+                    return "OK " + computePaths(parts);
+                case "metrics":
+                    return "OK " + getMetrics();
+                default:
+                    throw new IllegalArgumentException("Unknown request " + parts[0]);
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            return "ERROR " + e.getMessage();
+        } finally {
+            long nanos = System.nanoTime() - startTime;
+            switch (parts[0]) {
+                case "time":
+                    timeLatency.add(nanos);
+                    break;
+                case "lookup":
+                    lookupLatency.add(nanos);
+                    break;
+                case "path":
+                    pathLatency.add(nanos);
+                    break;
+            }
+        }
+    }
+
+    private static String joinTimes(double[] times) {
+        return Arrays.stream(times).mapToObj(Double::toString).collect(Collectors.joining(" "));
+    }
+
+    private double[] computeTimes(String[] parts, boolean lookUp) {
+        if (parts.length != 5)
+            throw new IllegalArgumentException("The request must be \"" + parts[0] + " model depth delta phases\".");
+        RaypathCatalog catalog = getCatalog(parts[1]);
+        double eventR = catalog.getStructure().earthRadius() - Double.parseDouble(parts[2]);
+        double targetDelta = Math.toRadians(Double.parseDouble(parts[3]));
+        double[] times = Arrays.stream(parts[4].split(",")).map(Phase::create).distinct()
+                .flatMapToDouble(phase -> Arrays.stream(lookUp ? catalog.lookUpTime(phase, eventR, targetDelta) :
+                        catalog.searchTime(phase, eventR, targetDelta))).toArray();
+        Arrays.sort(times);
+        return times;
+    }
+
+    private String computePaths(String[] parts) {
+        if (parts.length != 5)
+            throw new IllegalArgumentException("The request must be \"path model depth delta phase\".");
+        RaypathCatalog catalog = getCatalog(parts[1]);
+        double eventR = catalog.getStructure().earthRadius() - Double.parseDouble(parts[2]);
+        double targetDelta = Math.toRadians(Double.parseDouble(parts[3]));
+        Phase phase = Phase.create(parts[4]);
+        if (phase.isDiffracted()) throw new IllegalArgumentException("Diffracted phases are not available for path.");
+        return Arrays.stream(catalog.searchPath(phase, eventR, targetDelta)).map(raypath -> {
+            double delta = Math.toDegrees(raypath.computeDelta(eventR, phase));
+            double time = raypath.computeT(eventR, phase);
+            double interpolatedTime =
+                    catalog.travelTimeByThreePointInterpolate(Math.toDegrees(targetDelta), raypath, eventR, phase);
+            if (!Double.isNaN(interpolatedTime)) {
+                delta = Math.toDegrees(targetDelta);
+                time = interpolatedTime;
+            }
+            return raypath.getRayParameter() + " " + delta + " " + time;
+        }).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * @param model prem, iprem, ak135 or a path of a structure file
+     * @return catalog for the model
+     */
+    private RaypathCatalog getCatalog(String model) {
+        String key = model.equals("PREM") || model.equals("iPREM") || model.equals("AK135") ? model.toLowerCase() :
+                model;
+        RaypathCatalog catalog = CATALOGS.get(key);
+        if (catalog != null) {
+            catalogHits.incrementAndGet();
+            return catalog;
+        }
+        return CATALOGS.computeIfAbsent(key, this::createCatalog);
+    }
+
+    private RaypathCatalog createCatalog(String model) {
+        catalogMisses.incrementAndGet();
+        Path modelPath = Paths.get(model);
+        if (!Files.exists(modelPath)) throw new IllegalArgumentException("No model " + model);
+        VelocityStructure structure;
+        try {
+            structure = new PolynomialStructure(modelPath);
+        } catch (Exception e) {
+            try {
+                structure = new NamedDiscontinuityStructure(modelPath);
+            } catch (Exception e2) {
+                throw new IllegalArgumentException(model + " is not acceptable as a structure.");
+            }
+        }
+        long startTime = System.nanoTime();
+        RaypathCatalog catalog =
+                RaypathCatalog.computeCatalogue(structure, ComputationalMesh.simple(structure), Math.toRadians(1));
+        System.err.println("Catalog for " + model + " is ready in " +
+                Utilities.toTimeString(System.nanoTime() - startTime));
+        return catalog;
+    }
+
+    /**
+     * @return counts and latencies of the requests, and cache hits of the catalogs
+     */
+    String getMetrics() {
+        return "catalogs=" + CATALOGS.size() + " catalogHits=" + catalogHits + " catalogMisses=" + catalogMisses +
+                " errors=" + errors + " time[" + timeLatency + "] lookup[" + lookupLatency + "] path[" + pathLatency +
+                "]";
+    }
+
+    /**
+     * Histogram of latencies in buckets of powers of 2 in microseconds.
+     */
+    private static final class LatencyHistogram {
+        /**
+         * the i-th bucket counts latencies in [2<sup>i-1</sup>, 2<sup>i</sup>)
+         * &mu;s (the 0-th one counts &lt;1 &mu;s)
+         */
+        private final AtomicLongArray buckets = new AtomicLongArray(40);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void add(long nanos) {
+            long micros = nanos / 1000;
+            buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(micros), buckets.length() - 1));
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * @param quantile (0, 1]
+         * @return [&mu;s] the upper bound of the bucket which has the quantile
+         */
+        private long percentile(double quantile) {
+            long n = count.get();
+            long rank = (long) Math.ceil(n * quantile);
+            long sum = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                sum += buckets.get(i);
+                if (rank <= sum) return 1L << i;
+            }
+            return 1L << buckets.length();
+        }
+
+        /**
+         * @return count, mean, percentiles and max; latencies are in &mu;s
+         */
+        @Override
+        public String toString() {
+            long n = count.get();
+            if (n == 0) return "count=0";
+            return "count=" + n + " meanUs=" + totalNanos.get() / n / 1000 + " p50Us<" + percentile(0.5) +
+                    " p90Us<" + percentile(0.9) + " p99Us<" + percentile(0.99) + " maxUs=" + maxNanos.get() / 1000;
+        }
+    }
+
+    /**
+     * Client of the service. Requests on a client are sent one by one over one
+     * connection.
+     * <p>
+     * This class is <b>thread-safe</b>.
+     */
+    public static final class Client implements Closeable {
+
+        private final Socket SOCKET;
+        private final BufferedReader READER;
+        private final PrintWriter WRITER;
+
+        /**
+         * @param port of the service on the loopback address
+         * @throws IOException if the service is not available
+         */
+        public Client(int port) throws IOException {
+            SOCKET = new Socket(InetAddress.getLoopbackAddress(), port);
+            READER = new BufferedReader(new InputStreamReader(SOCKET.getInputStream(), StandardCharsets.UTF_8));
+            WRITER = new PrintWriter(SOCKET.getOutputStream());
+        }
+
+        /**
+         * @param request a line of the protocol
+         * @return the answer without "OK"
+         * @throws IOException if the service answers an error or the connection has problems
+         */
+        public synchronized String request(String request) throws IOException {
+            WRITER.println(request);
+            WRITER.flush();
+            String answer = READER.readLine();
+            if (answer == null) throw new IOException("The service closed the connection.");
+            if (!answer.startsWith("OK")) throw new IOException(answer);
+            return answer.substring(2).trim();
+        }
+
+        /**
+         * @param model              prem, iprem, ak135 or a path of a structure file
+         * @param depth              [km] depth of the source
+         * @param epicentralDistance [deg] target &Delta;
+         * @param phases             to look for
+         * @return [s] sorted travel times of all the arrivals of the phases
+         * @throws IOException if any
+         */
+        public double[] searchTime(String model, double depth, double epicentralDistance, Phase... phases)
+                throws IOException {
+            return parseTimes(request("time", model, depth, epicentralDistance, phases));
+        }
+
+        /**
+         * @param model              prem, iprem, ak135 or a path of a structure file
+         * @param depth              [km] depth of the source
+         * @param epicentralDistance [deg] target &Delta;
+         * @param phases             to look for
+         * @return [s] sorted travel times of all the arrivals of the phases in the tables of the catalog
+         * @throws IOException if any
+         */
+        public double[] lookUpTime(String model, double depth, double epicentralDistance, Phase... phases)
+                throws IOException {
+            return parseTimes(request("lookup", model, depth, epicentralDistance, phases));
+        }
+
+        private String request(String type, String model, double depth, double epicentralDistance,
+                               Phase... phases) throws IOException {
+            if (phases.length == 0) throw new IllegalArgumentException("No phase is given.");
+            return request(type + " " + model + " " + depth + " " + epicentralDistance + " " +
+                    Arrays.stream(phases).map(Phase::toString).collect(Collectors.joining(",")));
+        }
+
+        private static double[] parseTimes(String answer) {
+            return answer.isEmpty() ? new double[0] :
+                    Arrays.stream(answer.split("\\s+")).mapToDouble(Double::parseDouble).toArray();
+        }
+
+        /**
+         * @return metrics of the service
+         * @throws IOException if any
+         */
+        public String getMetrics() throws IOException {
+            return request("metrics");
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                synchronized (this) {
+                    WRITER.println("quit");
+                    WRITER.flush();
+                }
+            } finally {
+                SOCKET.close();
+            }
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
@@ -22,8 +23,6 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.DoubleFunction;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.math3.linear.RealVector;
@@ -60,7 +59,7 @@ import io.github.kensuke1984.kibrary.math.Integrand;
  * JV,JH: SV, SH(J) wave in the inner-core<br>
  *
  * @author Kensuke Konishi
- * @version 0.4.4b
+ * @version 0.4.6b
  * @see "Woodhouse, 1981"
  */
 public class Raypath implements Serializable, Comparable<Raypath> {
@@ -359,6 +358,44 @@ public class Raypath implements Serializable, Comparable<Raypath> {
             stream.writeDouble(value);
     }
 
+    /**
+     * [byte] size of a record by {@link #putRecord(ByteBuffer)}
+     */
+    static final int RECORD_BYTES = 8 + 16 * PhasePart.values().length;
+
+    /**
+     * Writes the ray parameter, and &Delta; and T of each phase part (NaN if
+     * it does not exist) in the same way as the serialization. This must be
+     * computed.
+     *
+     * @param buffer to put the record of {@link #RECORD_BYTES}
+     */
+    void putRecord(ByteBuffer buffer) {
+        if (!isComputed) throw new IllegalStateException("The raypath is not computed yet.");
+        buffer.putDouble(RAY_PARAMETER);
+        for (PhasePart pp : PhasePart.values())
+            if (propagationMap.get(pp) == Propagation.NOEXIST) buffer.putDouble(Double.NaN).putDouble(Double.NaN);
+            else buffer.putDouble(deltaMap.get(pp)).putDouble(timeMap.get(pp));
+    }
+
+    /**
+     * @param buffer    from which a record by {@link #putRecord(ByteBuffer)} is read
+     * @param woodhouse {@link Woodhouse1981}
+     * @param mesh      {@link ComputationalMesh}
+     * @return computed raypath of the record
+     */
+    static Raypath getRecord(ByteBuffer buffer, Woodhouse1981 woodhouse, ComputationalMesh mesh) {
+        Raypath raypath = new Raypath(buffer.getDouble(), woodhouse, mesh);
+        raypath.deltaMap = Collections.synchronizedMap(new EnumMap<>(PhasePart.class));
+        raypath.timeMap = Collections.synchronizedMap(new EnumMap<>(PhasePart.class));
+        for (PhasePart pp : PhasePart.values()) {
+            raypath.deltaMap.put(pp, buffer.getDouble());
+            raypath.timeMap.put(pp, buffer.getDouble());
+        }
+        raypath.isComputed = true;
+        return raypath;
+    }
+
     /**
      * If this method has &Delta; and T for partitions.
      */
@@ -413,48 +450,52 @@ public class Raypath implements Serializable, Comparable<Raypath> {
     private void computeT() {
         timeMap = Collections.synchronizedMap(new EnumMap<>(PhasePart.class));
         Arrays.stream(PhasePart.values()).forEach(pp -> timeMap.put(pp, Double.NaN));
-        Function<PhasePart, Thread> createThread = pp -> {
+        dTMap = Collections.synchronizedMap(new EnumMap<>(PhasePart.class));
+        Consumer<PhasePart> compute = pp -> {
             RealVector mesh = MESH.getMesh(pp.whichPartition());
             double[] dT = new double[mesh.getDimension() - 1];
             dTMap.put(pp, dT);
-            return new Thread(() -> {
-                double jeffreysBoundary = jeffreysBoundaryMap.get(pp);
-                for (int i = 0; i < dT.length; i++) {
-                    if (mesh.getEntry(i) < jeffreysBoundary) continue;
-                    dT[i] = simpsonT(pp, mesh.getEntry(i), mesh.getEntry(i + 1));
-                }
-                double startR;
-                switch (getPropagation(pp)) {
-                    case PENETRATING:
-                        startR = mesh.getEntry(0) + ComputationalMesh.eps;
-                        break;
-                    case DIFFRACTION:
-                        startR = mesh.getEntry(0) + permissibleGapForDiff;
-                        break;
-                    case BOUNCING:
-                        startR = turningRMap.get(pp);
-                        break;
-                    default:
-                        throw new RuntimeException("UNEXPECTED");
-                }
-                timeMap.put(pp, computeT(pp, startR, mesh.getEntry(dT.length)));
-            });
+            double jeffreysBoundary = jeffreysBoundaryMap.get(pp);
+            for (int i = 0; i < dT.length; i++) {
+                if (mesh.getEntry(i) < jeffreysBoundary) continue;
+                dT[i] = simpsonT(pp, mesh.getEntry(i), mesh.getEntry(i + 1));
+            }
+            double startR;
+            switch (getPropagation(pp)) {
+                case PENETRATING:
+                    startR = mesh.getEntry(0) + ComputationalMesh.eps;
+                    break;
+                case DIFFRACTION:
+                    startR = mesh.getEntry(0) + permissibleGapForDiff;
+                    break;
+                case BOUNCING:
+                    startR = turningRMap.get(pp);
+                    break;
+                default:
+                    throw new RuntimeException("UNEXPECTED");
+            }
+            timeMap.put(pp, computeT(pp, startR, mesh.getEntry(dT.length)));
         };
+        computeParts(compute);
+    }
 
-        dTMap = new EnumMap<>(PhasePart.class);
-        List<Thread> runningThread =
-                Arrays.stream(PhasePart.values()).filter(pp -> propagationMap.get(pp) != Propagation.NOEXIST)
-                        .map(createThread).collect(Collectors.toList());
-
-        runningThread.forEach(Thread::start);
-
-        try {
-            for (Thread t : runningThread)
-                t.join();
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Could not compute travel time.");
-        }
+    /**
+     * Runs the computation for each existing phase part in parallel. In a thread
+     * of a fork-join pool, it runs in the pool, otherwise in the common pool.
+     * As in the former raw threads, a failure in a part is printed and the
+     * value of the part stays {@link Double#NaN}.
+     *
+     * @param compute computation for a phase part
+     */
+    private void computeParts(Consumer<PhasePart> compute) {
+        Arrays.stream(PhasePart.values()).filter(pp -> propagationMap.get(pp) != Propagation.NOEXIST).parallel()
+                .forEach(pp -> {
+                    try {
+                        compute.accept(pp);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                });
     }
 
     /**
@@ -993,48 +1034,34 @@ public class Raypath implements Serializable, Comparable<Raypath> {
     private void computeDelta() {
         deltaMap = Collections.synchronizedMap(new EnumMap<>(PhasePart.class));
         Arrays.stream(PhasePart.values()).forEach(pp -> deltaMap.put(pp, Double.NaN));
-        Function<PhasePart, Thread> createThread = pp -> {
+        dThetaMap = Collections.synchronizedMap(new EnumMap<>(PhasePart.class));
+        Consumer<PhasePart> compute = pp -> {
             RealVector mesh = MESH.getMesh(pp.whichPartition());
             double[] dTheta = new double[mesh.getDimension() - 1];
             dThetaMap.put(pp, dTheta);
-            return new Thread(() -> {
-                double jeffreysBoundary = jeffreysBoundaryMap.get(pp);
-                for (int i = 0; i < dTheta.length; i++) {
-                    if (mesh.getEntry(i) < jeffreysBoundary) continue;
-                    dTheta[i] = simpsonDelta(pp, mesh.getEntry(i), mesh.getEntry(i + 1));
-                }
-
-                double startR;
-                switch (getPropagation(pp)) {
-                    case PENETRATING:
-                        startR = mesh.getEntry(0) + ComputationalMesh.eps;
-                        break;
-                    case DIFFRACTION:
-                        startR = mesh.getEntry(0) + permissibleGapForDiff;
-                        break;
-                    case BOUNCING:
-                        startR = turningRMap.get(pp);
-                        break;
-                    default:
-                        throw new RuntimeException("UNEXPECTED");
-                }
-                deltaMap.put(pp, computeDelta(pp, startR, mesh.getEntry(dTheta.length)));
-            });
-        };
+            double jeffreysBoundary = jeffreysBoundaryMap.get(pp);
+            for (int i = 0; i < dTheta.length; i++) {
+                if (mesh.getEntry(i) < jeffreysBoundary) continue;
+                dTheta[i] = simpsonDelta(pp, mesh.getEntry(i), mesh.getEntry(i + 1));
+            }
 
-        dThetaMap = Collections.synchronizedMap(new EnumMap<>(PhasePart.class));
-        List<Thread> runningThread =
-                Arrays.stream(PhasePart.values()).filter(pp -> propagationMap.get(pp) != Propagation.NOEXIST)
-                        .map(createThread).collect(Collectors.toList());
-
-        runningThread.forEach(Thread::start);
-        try {
-            for (Thread t : runningThread)
-                t.join();
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Could not compute epicentral distances.");
-        }
+            double startR;
+            switch (getPropagation(pp)) {
+                case PENETRATING:
+                    startR = mesh.getEntry(0) + ComputationalMesh.eps;
+                    break;
+                case DIFFRACTION:
+                    startR = mesh.getEntry(0) + permissibleGapForDiff;
+                    break;
+                case BOUNCING:
+                    startR = turningRMap.get(pp);
+                    break;
+                default:
+                    throw new RuntimeException("UNEXPECTED");
+            }
+            deltaMap.put(pp, computeDelta(pp, startR, mesh.getEntry(dTheta.length)));
+        };
+        computeParts(compute);
     }
 
     private transient Map<PhasePart, Propagation> propagationMap;
@@ -1,21 +1,37 @@
 package io.github.kensuke1984.anisotime;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 
 import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+import org.apache.commons.math3.exception.ConvergenceException;
 import org.apache.commons.math3.fitting.PolynomialCurveFitter;
 import org.apache.commons.math3.fitting.WeightedObservedPoints;
 
@@ -29,10 +45,18 @@ import io.github.kensuke1984.kibrary.util.Utilities;
  * If a new catalog is computed which does not exist in Kibrary share, it
  * automatically is stored.
  * <p>
+ * A catalog file has a header of {@value #HEADER_BYTES} bytes (magic number,
+ * format version, digests of the structure and the mesh, &delta;&Delta;, the
+ * number of raypaths and sizes of the following parts), the serialized
+ * structure and mesh, and records of the raypaths (see
+ * {@link Raypath#RECORD_BYTES}). The header can be checked without reading the
+ * rest. The records are mapped and decoded when the raypaths are needed first.
+ * Files by the Java serialization of older versions can still be read.
+ * <p>
  * TODO sorting by dDelta/dp
  *
  * @author Kensuke Konishi
- * @version 0.0.10.1b
+ * @version 0.0.13b
  */
 public class RaypathCatalog implements Serializable {
     /**
@@ -88,13 +112,20 @@ public class RaypathCatalog implements Serializable {
                 RaypathCatalog cat;
                 String model = p.getFileName().toString().replace(".cat", "");
                 ComputationalMesh simple = ComputationalMesh.simple(v);
+                double dDelta = Math.toRadians(1);
                 if (Files.exists(p)) {
                     try {
-                        cat = read(p);
+                        Header header = readHeader(p);
+                        if (header == null) {
+                            System.err.println("Converting the catalog for " + model + " to the current format.");
+                            cat = read(p);
+                            cat.write(p);
+                        } else if (header.matches(v, simple, dDelta)) cat = read(p);
+                        else throw new InvalidClassException(p + " is for another condition.");
                     } catch (ClassNotFoundException | IOException ice) {
                         System.err.println("Creating a catalog for " + model +
                                 " (due to out of date).  This computation is done only once.");
-                        (cat = new RaypathCatalog(v, simple, Math.toRadians(1))).create();
+                        (cat = new RaypathCatalog(v, simple, dDelta)).create();
                         try {
                             cat.write(p);
                         } catch (IOException e) {
@@ -103,7 +134,7 @@ public class RaypathCatalog implements Serializable {
                     }
                 } else {
                     System.err.println("Creating a catalog for " + model + ". This computation is done only once.");
-                    (cat = new RaypathCatalog(v, simple, Math.toRadians(1))).create();
+                    (cat = new RaypathCatalog(v, simple, dDelta)).create();
                     try {
                         cat.write(p);
                     } catch (IOException e) {
@@ -139,6 +170,7 @@ public class RaypathCatalog implements Serializable {
      * @return Raypaths in a catalog in order by the p (ray parameter).
      */
     public Raypath[] getRaypaths() {
+        loadRaypaths();
         return raypathList.toArray(new Raypath[raypathList.size()]);
     }
 
@@ -204,6 +236,8 @@ public class RaypathCatalog implements Serializable {
         try (DirectoryStream<Path> catalogStream = Files.newDirectoryStream(share, "*.cat")) {
             for (Path p : catalogStream)
                 try {
+                    Header header = readHeader(p);
+                    if (header != null && !header.matches(structure, mesh, dDelta)) continue;
                     RaypathCatalog c;
                     switch (p.getFileName().toString()) {
                         case "iprem.cat":
@@ -217,8 +251,13 @@ public class RaypathCatalog implements Serializable {
                             break;
                         default:
                             c = read(p);
+                            // written by an older version
+                            if (header == null && c.getStructure().equals(structure) && c.MESH.equals(mesh) &&
+                                    c.D_DELTA == dDelta) c.write(p);
                     }
-                    if (c.getStructure().equals(structure) && c.MESH.equals(mesh) && c.D_DELTA == dDelta) return c;
+                    if (header != null ||
+                            c.getStructure().equals(structure) && c.MESH.equals(mesh) && c.D_DELTA == dDelta)
+                        return c;
                 } catch (InvalidClassException ice) {
                     System.err.println(p + " may be out of date.");
                 }
@@ -281,15 +320,17 @@ public class RaypathCatalog implements Serializable {
         double p_Pdiff = cmb * Math.sqrt(rho / structure.getA(cmb));
         double p_SVdiff = cmb * Math.sqrt(rho / structure.getL(cmb));
         double p_SHdiff = cmb * Math.sqrt(rho / structure.getN(cmb));
-        (pDiff = new Raypath(p_Pdiff, WOODHOUSE, MESH)).compute();
-        (svDiff = new Raypath(p_SVdiff, WOODHOUSE, MESH)).compute();
-        (shDiff = new Raypath(p_SHdiff, WOODHOUSE, MESH)).compute();
+        pDiff = new Raypath(p_Pdiff, WOODHOUSE, MESH);
+        svDiff = new Raypath(p_SVdiff, WOODHOUSE, MESH);
+        shDiff = new Raypath(p_SHdiff, WOODHOUSE, MESH);
+        computeAll(Arrays.asList(pDiff, svDiff, shDiff));
     }
 
     /**
      * @return Raypath of Pdiff
      */
     public Raypath getPdiff() {
+        loadRaypaths();
         return pDiff;
     }
 
@@ -297,6 +338,7 @@ public class RaypathCatalog implements Serializable {
      * @return Raypath of SVdiff
      */
     public Raypath getSVdiff() {
+        loadRaypaths();
         return svDiff;
     }
 
@@ -304,9 +346,20 @@ public class RaypathCatalog implements Serializable {
      * @return Raypath of SHdiff
      */
     public Raypath getSHdiff() {
+        loadRaypaths();
         return shDiff;
     }
 
+    /**
+     * Computes the raypaths which exist in parallel. In a thread of a fork-join
+     * pool, the raypaths are computed in the pool.
+     *
+     * @param raypaths to compute
+     */
+    private static void computeAll(Collection<Raypath> raypaths) {
+        raypaths.parallelStream().filter(Raypath::exists).forEach(Raypath::compute);
+    }
+
     /**
      * Look for the raypath which ray parameter is more than or equal to the input min and less than or equal to max
      * has non NaN path in P or S. Step of the ray parameter is {@link #MINIMUM_DELTA_P}.
@@ -324,36 +377,78 @@ public class RaypathCatalog implements Serializable {
         return new Raypath(max, WOODHOUSE, MESH);
     }
 
+    /**
+     * Raypaths computed in {@link #create()} by their ray parameters.
+     */
+    private final transient Map<Double, Raypath> computedRaypaths = new HashMap<>();
+
+    /**
+     * Returns the raypath for p (computed if it exists). If it is not computed
+     * yet, it is computed in parallel with the ones which the catalogue tries
+     * next, i.e. p + {@link #DELTA_P}, p + 2{@link #DELTA_P}, ... if p is
+     * accepted and (p + last) / 2, ((p + last) / 2 + last) / 2, ... if not, as
+     * many as the parallelism. The ray parameters are made by the same
+     * arithmetic as in {@link #create()}, so the catalogue is same as the one
+     * computed one by one.
+     *
+     * @param p    ray parameter
+     * @param last ray parameter of the last raypath in the catalogue
+     * @return raypath for p
+     */
+    private Raypath raypathAt(double p, double last) {
+        Raypath raypath = computedRaypaths.get(p);
+        if (raypath != null) return raypath;
+        List<Raypath> batch = new ArrayList<>();
+        batch.add(raypath = new Raypath(p, WOODHOUSE, MESH));
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        for (double forward = p + DELTA_P, middle = (p + last) / 2; batch.size() < parallelism;
+             forward += DELTA_P, middle = (middle + last) / 2) {
+            if (!computedRaypaths.containsKey(forward)) batch.add(new Raypath(forward, WOODHOUSE, MESH));
+            if (batch.size() < parallelism && MINIMUM_DELTA_P <= middle - last &&
+                    !computedRaypaths.containsKey(middle)) batch.add(new Raypath(middle, WOODHOUSE, MESH));
+        }
+        computeAll(batch);
+        for (Raypath computed : batch)
+            computedRaypaths.put(computed.getRayParameter(), computed);
+        return raypath;
+    }
+
     /**
      * Creates a catalogue.
+     * <p>
+     * From the last raypath, the one with {@link #DELTA_P} larger ray
+     * parameter is tried. If it is not {@link #closeEnough(Raypath, Raypath)}
+     * to the last one, it is kept in a pool and the middle one is tried until
+     * one is close enough. Raypaths are computed in parallel with the ones
+     * tried next by {@link #raypathAt(double, double)}, and the catalogue is
+     * same as the one computed one by one.
      * TODO eliminate ray paths which have only NaN
      * when running into a ray path with all NaN. what should we do.
      */
     private void create() {
         double pMax = computeRayparameterLimit() + DELTA_P;
-//        System.out.println("pMax=" + pMax);
         // Compute raparameters for diffration phases.
         computeDiffraction();
         long time = System.nanoTime();
         System.err.println("Computing a catalogue. (If you use the same model, the catalog is not computed anymore.)");
-        Raypath firstPath = new Raypath(0, WOODHOUSE, MESH);
-        firstPath.compute();
+        Raypath firstPath = raypathAt(0, 0);
         raypathList.add(firstPath);
         double p_Pdiff = pDiff.getRayParameter();
         double p_SVdiff = svDiff.getRayParameter();
         double p_SHdiff = shDiff.getRayParameter();
         for (double p = firstPath.getRayParameter() + DELTA_P, nextP; p < pMax; p = nextP) {
-            Raypath candidatePath = new Raypath(p, WOODHOUSE, MESH);
+            Raypath candidatePath = raypathAt(p, raypathList.last().getRayParameter());
             if (!candidatePath.exists()) {
                 p = raypathList.last().getRayParameter() + MINIMUM_DELTA_P;
-                candidatePath = new Raypath(p, WOODHOUSE, MESH);
-                if (!candidatePath.exists()) candidatePath = lookForNextExistingRaypath(p, pMax);
-                candidatePath.compute();
+                candidatePath = raypathAt(p, raypathList.last().getRayParameter());
+                if (!candidatePath.exists()) {
+                    candidatePath = lookForNextExistingRaypath(p, pMax);
+                    candidatePath.compute();
+                }
                 raypathList.add(candidatePath);
                 nextP = raypathList.last().getRayParameter() + DELTA_P;
                 continue;
             }
-            candidatePath.compute();
             if (closeEnough(raypathList.last(), candidatePath)) {
                 raypathList.add(candidatePath);
                 nextP = p + DELTA_P;
@@ -362,7 +457,6 @@ public class RaypathCatalog implements Serializable {
                 nextP = (p + raypathList.last().getRayParameter()) / 2;
             }
 
-            // System.out.println(p + " " + nextP);
             if (lookIntoPool()) {
                 p = raypathList.last().getRayParameter();
                 nextP = p + DELTA_P;
@@ -382,6 +476,8 @@ public class RaypathCatalog implements Serializable {
         raypathList.add(pDiff);
         raypathList.add(svDiff);
         raypathList.add(shDiff);
+        raypathPool.clear();
+        computedRaypaths.clear();
 
         System.err.println("Catalogue was made in " + Utilities.toTimeString(System.nanoTime() - time));
     }
@@ -391,11 +487,9 @@ public class RaypathCatalog implements Serializable {
         Raypath last = raypathList.last();
         Raypath diffMinus = new Raypath(diffP - MINIMUM_DELTA_P, WOODHOUSE, MESH);
         Raypath diffPlus = new Raypath(diffP + MINIMUM_DELTA_P, WOODHOUSE, MESH);
-        diffMinus.compute();
-        diffPlus.compute();
+        computeAll(Arrays.asList(diffMinus, diffPlus));
         for (double p = (diffP + last.getRayParameter()) / 2, nextP; ; p = nextP) {
-            Raypath candidate = new Raypath(p, WOODHOUSE, MESH);
-            candidate.compute();
+            Raypath candidate = raypathAt(p, raypathList.last().getRayParameter());
             if (!closeEnough(raypathList.last(), candidate)) {
                 raypathPool.add(candidate);
                 nextP = (raypathList.last().getRayParameter() + candidate.getRayParameter()) / 2;
@@ -510,16 +604,173 @@ public class RaypathCatalog implements Serializable {
     }
 
     /**
+     * "KCAT"
+     */
+    private static final int MAGIC = 0x4B434154;
+
+    /**
+     * Version of the file format. It must be increased when the format or
+     * {@link Raypath#RECORD_BYTES} changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * [byte] size of the header
+     */
+    static final int HEADER_BYTES = 48;
+
+    /**
+     * Header of a catalog file
+     */
+    private static class Header {
+        private final long structureDigest;
+        private final long meshDigest;
+        private final double dDelta;
+        private final int nRaypath;
+        private final int structureBytes;
+        private final int meshBytes;
+
+        private Header(long structureDigest, long meshDigest, double dDelta, int nRaypath, int structureBytes,
+                       int meshBytes) {
+            this.structureDigest = structureDigest;
+            this.meshDigest = meshDigest;
+            this.dDelta = dDelta;
+            this.nRaypath = nRaypath;
+            this.structureBytes = structureBytes;
+            this.meshBytes = meshBytes;
+        }
+
+        private boolean matches(VelocityStructure structure, ComputationalMesh mesh, double dDelta) throws IOException {
+            return this.dDelta == dDelta && structureDigest == digest(serialize(structure)) &&
+                    meshDigest == digest(serialize(mesh));
+        }
+
+        private long getBodyPosition() {
+            return HEADER_BYTES + (long) structureBytes + meshBytes;
+        }
+    }
+
+    /**
+     * @param object to serialize
+     * @return serialized bytes of the object
+     * @throws IOException if any
+     */
+    private static byte[] serialize(Serializable object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream o = new ObjectOutputStream(bytes)) {
+            o.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes to digest
+     * @return the first 8 bytes of SHA-256 of the bytes
+     */
+    private static long digest(byte[] bytes) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bytes)).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param path of a catalog file
+     * @return the header of the file, or null if the file is written by the
+     * Java serialization
+     * @throws IOException if any, or the file is in an unknown version
+     */
+    private static Header readHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+            while (buffer.hasRemaining()) if (channel.read(buffer) < 0) break;
+            buffer.flip();
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) return null;
+            if (buffer.remaining() < HEADER_BYTES - 4) throw new IOException(path + " is broken.");
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION)
+                throw new InvalidClassException(path + " is in the format version " + version + " (not " +
+                        FORMAT_VERSION + ").");
+            long structureDigest = buffer.getLong();
+            long meshDigest = buffer.getLong();
+            double dDelta = buffer.getDouble();
+            int nRaypath = buffer.getInt();
+            int recordBytes = buffer.getInt();
+            if (recordBytes != Raypath.RECORD_BYTES)
+                throw new InvalidClassException(path + " has records of " + recordBytes + " bytes.");
+            return new Header(structureDigest, meshDigest, dDelta, nRaypath, buffer.getInt(), buffer.getInt());
+        }
+    }
+
+    /**
+     * Records of the raypaths mapped from a file. Null after the raypaths are
+     * decoded or when this is computed.
+     */
+    private transient volatile ByteBuffer records;
+
+    /**
+     * Decodes the raypaths from {@link #records}, if they are not yet.
+     */
+    private void loadRaypaths() {
+        if (records == null) return;
+        synchronized (this) {
+            if (records == null) return;
+            ByteBuffer buffer = records.duplicate();
+            pDiff = Raypath.getRecord(buffer, WOODHOUSE, MESH);
+            svDiff = Raypath.getRecord(buffer, WOODHOUSE, MESH);
+            shDiff = Raypath.getRecord(buffer, WOODHOUSE, MESH);
+            while (buffer.hasRemaining()) {
+                Raypath raypath = Raypath.getRecord(buffer, WOODHOUSE, MESH);
+                // the diffraction raypaths are the same instances as the ones in the list
+                if (raypath.getRayParameter() == pDiff.getRayParameter()) raypath = pDiff;
+                else if (raypath.getRayParameter() == svDiff.getRayParameter()) raypath = svDiff;
+                else if (raypath.getRayParameter() == shDiff.getRayParameter()) raypath = shDiff;
+                raypathList.add(raypath);
+            }
+            records = null;
+        }
+    }
+
+    /**
+     * Only the header, the structure and the mesh are read here. The raypaths
+     * are read when they are needed first.
+     *
      * @param path    the path for the catalogue file.
-     * @param options open option
+     * @param options open option (only for files by older versions)
      * @return Catalogue read from the path
      * @throws IOException            if any
      * @throws ClassNotFoundException if any
      */
     public static RaypathCatalog read(Path path, OpenOption... options) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream oi = new ObjectInputStream(Files.newInputStream(path, options))) {
+        Header header = readHeader(path);
+        if (header == null) try (ObjectInputStream oi = new ObjectInputStream(Files.newInputStream(path, options))) {
             return (RaypathCatalog) oi.readObject();
         }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long recordPosition = header.getBodyPosition();
+            long recordLength = (header.nRaypath + 3L) * Raypath.RECORD_BYTES;
+            if (channel.size() != recordPosition + recordLength) throw new IOException(path + " is broken.");
+            ByteBuffer objects = ByteBuffer.allocate(header.structureBytes + header.meshBytes);
+            while (objects.hasRemaining()) channel.read(objects, HEADER_BYTES + objects.position());
+            VelocityStructure structure;
+            ComputationalMesh mesh;
+            try (ObjectInputStream oi = new ObjectInputStream(
+                    new ByteArrayInputStream(objects.array(), 0, header.structureBytes))) {
+                structure = (VelocityStructure) oi.readObject();
+            }
+            try (ObjectInputStream oi = new ObjectInputStream(
+                    new ByteArrayInputStream(objects.array(), header.structureBytes, header.meshBytes))) {
+                mesh = (ComputationalMesh) oi.readObject();
+            }
+            // the same instance for the cache of Woodhouse1981
+            for (VelocityStructure known : new VelocityStructure[]{VelocityStructure.prem(), VelocityStructure.iprem(),
+                    VelocityStructure.ak135()})
+                if (known.equals(structure)) structure = known;
+            RaypathCatalog catalog = new RaypathCatalog(structure, mesh, header.dDelta);
+            catalog.records = channel.map(FileChannel.MapMode.READ_ONLY, recordPosition, recordLength);
+            return catalog;
+        }
     }
 
     /**
@@ -549,8 +800,23 @@ public class RaypathCatalog implements Serializable {
      * @throws IOException If an I/O error happens. it throws error.
      */
     public void write(Path path, OpenOption... options) throws IOException {
-        try (ObjectOutputStream o = new ObjectOutputStream(Files.newOutputStream(path, options))) {
-            o.writeObject(this);
+        loadRaypaths();
+        byte[] structure = serialize(getStructure());
+        byte[] mesh = serialize(MESH);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(digest(structure)).putLong(digest(mesh)).putDouble(D_DELTA)
+                .putInt(raypathList.size()).putInt(Raypath.RECORD_BYTES).putInt(structure.length).putInt(mesh.length);
+        ByteBuffer body = ByteBuffer.allocate((raypathList.size() + 3) * Raypath.RECORD_BYTES);
+        pDiff.putRecord(body);
+        svDiff.putRecord(body);
+        shDiff.putRecord(body);
+        for (Raypath raypath : raypathList)
+            raypath.putRecord(body);
+        try (OutputStream o = new BufferedOutputStream(Files.newOutputStream(path, options))) {
+            o.write(header.array());
+            o.write(structure);
+            o.write(mesh);
+            o.write(body.array());
         }
     }
 
@@ -583,7 +849,13 @@ public class RaypathCatalog implements Serializable {
             rayC.compute();
             double deltaC = rayC.computeDelta(eventR, targetPhase);
             if (Double.isNaN(deltaC)) continue;
-            Raypath rayIn = interpolateRaypath(targetPhase, eventR, targetDelta, rayI, rayC, rayP);
+            Raypath rayIn;
+            try {
+                rayIn = interpolateRaypath(targetPhase, eventR, targetDelta, rayI, rayC, rayP);
+            } catch (ConvergenceException e) {
+                // the raypaths are degenerate in delta
+                continue;
+            }
             if (Double.isNaN(rayIn.computeDelta(eventR, targetPhase))) continue;
             pathList.add(rayIn);
         }
@@ -610,15 +882,98 @@ public class RaypathCatalog implements Serializable {
             if (0 < (deltaI - targetDelta) * (deltaP - targetDelta)) continue;
             Raypath rayC = new Raypath((rayI.getRayParameter() + rayP.getRayParameter()) / 2, WOODHOUSE, MESH);
             rayC.compute();
-            Raypath rayIn = interpolateRaypath(targetPhase, eventR, targetDelta, rayI, rayC, rayP);
-            double deltaC = rayC.computeDelta(eventR, targetPhase);
-            double deltaIn = rayIn.computeDelta(eventR, targetPhase);
-            if (Double.isNaN(deltaC) || Double.isNaN(deltaIn)) continue;
-            timeList.add(interpolateTraveltime(targetPhase, eventR, targetDelta, rayI, rayC, rayP, rayIn));
+            try {
+                Raypath rayIn = interpolateRaypath(targetPhase, eventR, targetDelta, rayI, rayC, rayP);
+                double deltaC = rayC.computeDelta(eventR, targetPhase);
+                double deltaIn = rayIn.computeDelta(eventR, targetPhase);
+                if (Double.isNaN(deltaC) || Double.isNaN(deltaIn)) continue;
+                timeList.add(interpolateTraveltime(targetPhase, eventR, targetDelta, rayI, rayC, rayP, rayIn));
+            } catch (ConvergenceException e) {
+                // the raypaths are degenerate in delta
+            }
         }
         return timeList.stream().mapToDouble(Double::doubleValue).toArray();
     }
 
+    /**
+     * (phase, event radius) &rarr; table. Tables are made when they are needed
+     * first, and not serialized.
+     */
+    private transient volatile Map<List<Object>, TravelTimeTable> travelTimeTables;
+
+    /**
+     * Raypaths in this catalog and the ones of the middle ray parameters
+     * between them. Not serialized.
+     */
+    private transient volatile Raypath[] denseRaypaths;
+
+    /**
+     * Computes the raypath of the middle ray parameter between each pair of
+     * neighbouring raypaths, only once for a catalog. As in
+     * {@link #searchTime(Phase, double, double)}, a pair is not used for a
+     * phase if the middle raypath does not have it.
+     *
+     * @return raypaths in this catalog and the middle ones in order by the ray
+     * parameter
+     */
+    private Raypath[] getDenseRaypaths() {
+        Raypath[] dense = denseRaypaths;
+        if (dense != null) return dense;
+        synchronized (this) {
+            if (denseRaypaths != null) return denseRaypaths;
+            long time = System.nanoTime();
+            System.err.println("Computing middle raypaths for travel time tables. This is done only once.");
+            Raypath[] raypaths = getRaypaths();
+            Raypath[] middles = new Raypath[raypaths.length - 1];
+            for (int i = 0; i < middles.length; i++)
+                middles[i] = new Raypath((raypaths[i].getRayParameter() + raypaths[i + 1].getRayParameter()) / 2,
+                        WOODHOUSE, MESH);
+            computeAll(Arrays.asList(middles));
+            dense = new Raypath[raypaths.length + middles.length];
+            for (int i = 0; i < middles.length; i++) {
+                dense[2 * i] = raypaths[i];
+                dense[2 * i + 1] = middles[i];
+            }
+            dense[dense.length - 1] = raypaths[raypaths.length - 1];
+            System.err.println("Middle raypaths were computed in " + Utilities.toTimeString(System.nanoTime() - time));
+            return denseRaypaths = dense;
+        }
+    }
+
+    /**
+     * Returns the table of &Delta; and T on the raypaths in this catalog and
+     * the middle ones between them. It is made when it is needed first and kept
+     * in this catalog. The middle raypaths are computed for the first table.
+     * Lookups in the table compute no raypath, and are much faster than
+     * {@link #searchTime(Phase, double, double)}.
+     *
+     * @param targetPhase target phase (must not be diffracted)
+     * @param eventR      [km] event radius
+     * @return table for the phase and the event radius
+     */
+    public TravelTimeTable getTravelTimeTable(Phase targetPhase, double eventR) {
+        Map<List<Object>, TravelTimeTable> tables = travelTimeTables;
+        if (tables == null) synchronized (this) {
+            if ((tables = travelTimeTables) == null) travelTimeTables = tables = new ConcurrentHashMap<>();
+        }
+        return tables.computeIfAbsent(Arrays.asList(targetPhase, eventR),
+                key -> new TravelTimeTable(getDenseRaypaths(), targetPhase, eventR));
+    }
+
+    /**
+     * Travel times by {@link TravelTimeTable}. For diffracted phases, it is
+     * same as {@link #searchTime(Phase, double, double)}.
+     *
+     * @param targetPhase target phase
+     * @param eventR      [km] event radius
+     * @param targetDelta [rad] target &Delta;
+     * @return [s] travel times. zero length array is possible.
+     */
+    public double[] lookUpTime(Phase targetPhase, double eventR, double targetDelta) {
+        if (targetPhase.isDiffracted()) return searchTime(targetPhase, eventR, targetDelta);
+        return getTravelTimeTable(targetPhase, eventR).searchTime(targetDelta);
+    }
+
     /**
      * Assume that there is a regression curve f(&Delta;) = T for the small
      * range. The function f is assumed to be a polynomial function. The degree
@@ -647,6 +1002,7 @@ public class RaypathCatalog implements Serializable {
      * @return travel time for the targetDelta [s]
      */
     double travelTimeByThreePointInterpolate(double targetDelta, Raypath raypath0, double eventR, Phase phase) {
+        loadRaypaths();
         targetDelta = Math.toRadians(targetDelta);
         double delta0 = raypath0.computeDelta(eventR, phase);
         Raypath lower = raypathList.lower(raypath0);
@@ -0,0 +1,214 @@
+package io.github.kensuke1984.anisotime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table of &Delta; and T of a phase for a source radius on the raypaths in a
+ * {@link RaypathCatalog}.
+ * <p>
+ * The raypaths are split into branches on which &Delta; is monotonic with
+ * respect to p (ray parameter). For a target &Delta;, the bracket on each
+ * branch is found by bisection, and T is interpolated by the cubic Hermite
+ * polynomial of &Delta; with dT/d&Delta; = p at the both ends. No raypath is
+ * computed in a query.
+ * <p>
+ * The error of the cubic is estimated by its difference from the quadratic
+ * which has the same values at the both ends and the same slope at the nearer
+ * end. As the difference is that of the cubic term, it is larger than the true
+ * error unless the branch turns within the bracket.
+ * <p>
+ * Diffracted phases are not in a table.
+ * <p>
+ * This class is <b>immutable</b>.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.1
+ * @see RaypathCatalog#getTravelTimeTable(Phase, double)
+ */
+public final class TravelTimeTable {
+
+    private final Phase PHASE;
+
+    /**
+     * [km] radius of the source
+     */
+    private final double EVENT_R;
+
+    /**
+     * ray parameters of the entries
+     */
+    private final double[] P;
+
+    /**
+     * [rad] epicentral distances of the entries
+     */
+    private final double[] DELTA;
+
+    /**
+     * [s] travel times of the entries
+     */
+    private final double[] T;
+
+    /**
+     * {first, last} indices of each branch. &Delta; is monotonic from the
+     * first to the last. Neighbouring branches share an entry.
+     */
+    private final int[][] BRANCHES;
+
+    /**
+     * @param raypaths in order by the ray parameter. All must be computed.
+     * @param phase    target phase (must not be diffracted)
+     * @param eventR   [km] radius of the source
+     */
+    TravelTimeTable(Raypath[] raypaths, Phase phase, double eventR) {
+        if (phase.isDiffracted()) throw new IllegalArgumentException("Diffracted phases are not tabulated.");
+        PHASE = phase;
+        EVENT_R = eventR;
+        double[] p = new double[raypaths.length];
+        double[] delta = new double[raypaths.length];
+        double[] t = new double[raypaths.length];
+        int n = 0;
+        // index of the first entry after NaN
+        List<Integer> segmentStarts = new ArrayList<>();
+        boolean inSegment = false;
+        for (Raypath raypath : raypaths) {
+            double d = raypath.computeDelta(eventR, phase);
+            double time = raypath.computeT(eventR, phase);
+            if (Double.isNaN(d) || Double.isNaN(time)) {
+                inSegment = false;
+                continue;
+            }
+            if (!inSegment) segmentStarts.add(n);
+            inSegment = true;
+            p[n] = raypath.getRayParameter();
+            delta[n] = d;
+            t[n++] = time;
+        }
+        P = Arrays.copyOf(p, n);
+        DELTA = Arrays.copyOf(delta, n);
+        T = Arrays.copyOf(t, n);
+        segmentStarts.add(n);
+
+        List<int[]> branches = new ArrayList<>();
+        for (int i = 0; i < segmentStarts.size() - 1; i++) {
+            int first = segmentStarts.get(i);
+            int end = segmentStarts.get(i + 1) - 1;
+            while (first < end) {
+                int last = first + 1;
+                double sign = Math.signum(DELTA[last] - DELTA[first]);
+                while (last < end && Math.signum(DELTA[last + 1] - DELTA[last]) == sign) last++;
+                branches.add(new int[]{first, last});
+                first = last;
+            }
+        }
+        BRANCHES = branches.toArray(new int[0][]);
+    }
+
+    /**
+     * @return target phase
+     */
+    public Phase getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * @return [km] radius of the source
+     */
+    public double getEventR() {
+        return EVENT_R;
+    }
+
+    /**
+     * @return the number of raypaths in the table
+     */
+    public int size() {
+        return P.length;
+    }
+
+    /**
+     * @param targetDelta [rad] target &Delta;
+     * @return [s] travel times of the arrivals at the target &Delta;, one for
+     * each branch. Never returns null. zero length array is possible.
+     */
+    public double[] searchTime(double targetDelta) {
+        return search(targetDelta)[0];
+    }
+
+    /**
+     * @param targetDelta [rad] target &Delta;
+     * @return {travel times [s], estimated errors [s] of them}. The two arrays
+     * have the same order and length. zero length arrays are possible.
+     */
+    public double[][] searchTimeAndError(double targetDelta) {
+        return search(targetDelta);
+    }
+
+    private double[][] search(double targetDelta) {
+        double[] times = new double[BRANCHES.length];
+        double[] errors = new double[BRANCHES.length];
+        int n = 0;
+        for (int i = 0; i < BRANCHES.length; i++) {
+            int first = BRANCHES[i][0];
+            int last = BRANCHES[i][1];
+            // the shared entry belongs to the previous branch
+            if (targetDelta == DELTA[first] && 0 < i && BRANCHES[i - 1][1] == first) continue;
+            int lower = bisect(first, last, targetDelta);
+            if (lower < 0) continue;
+            interpolate(lower, targetDelta, times, errors, n++);
+        }
+        return new double[][]{Arrays.copyOf(times, n), Arrays.copyOf(errors, n)};
+    }
+
+    /**
+     * @return the index i (first &le; i &lt; last) where the target is in
+     * [&Delta;<sub>i</sub>, &Delta;<sub>i+1</sub>], or -1 if the target is
+     * out of the branch
+     */
+    private int bisect(int first, int last, double targetDelta) {
+        boolean increasing = DELTA[first] < DELTA[last];
+        double min = increasing ? DELTA[first] : DELTA[last];
+        double max = increasing ? DELTA[last] : DELTA[first];
+        if (targetDelta < min || max < targetDelta) return -1;
+        int lower = first;
+        int upper = last;
+        while (1 < upper - lower) {
+            int middle = (lower + upper) >>> 1;
+            if ((DELTA[middle] <= targetDelta) == increasing) lower = middle;
+            else upper = middle;
+        }
+        return lower;
+    }
+
+    private void interpolate(int i, double targetDelta, double[] times, double[] errors, int index) {
+        double h = DELTA[i + 1] - DELTA[i];
+        if (h == 0) {
+            times[index] = T[i];
+            errors[index] = Math.abs(T[i + 1] - T[i]);
+            return;
+        }
+        double s = (targetDelta - DELTA[i]) / h;
+        double s2 = s * s;
+        double s3 = s2 * s;
+        double h00 = 2 * s3 - 3 * s2 + 1;
+        double h10 = s3 - 2 * s2 + s;
+        double h01 = -2 * s3 + 3 * s2;
+        double h11 = s3 - s2;
+        double cubic = h00 * T[i] + h10 * h * P[i] + h01 * T[i + 1] + h11 * h * P[i + 1];
+        // quadratic with the slope at the nearer end
+        double quadratic;
+        if (s < 0.5) {
+            double c = (T[i + 1] - T[i] - P[i] * h) / h / h;
+            double x = targetDelta - DELTA[i];
+            quadratic = T[i] + P[i] * x + c * x * x;
+        } else {
+            double c = (T[i] - T[i + 1] + P[i + 1] * h) / h / h;
+            double x = targetDelta - DELTA[i + 1];
+            quadratic = T[i + 1] + P[i + 1] * x + c * x * x;
+        }
+        times[index] = cubic;
+        errors[index] = Math.abs(cubic - quadratic);
+    }
+
+}
@@ -13,7 +13,7 @@ import org.apache.commons.math3.util.FastMath;
  * ω=2πfδt
  *
  * @author Kensuke Konishi
- * @version 0.1.3.2
+ * @version 0.1.6
  */
 public class BandPassFilter extends ButterworthFilter {
 
@@ -255,6 +255,45 @@ public class BandPassFilter extends ButterworthFilter {
         return backward ? Complex.valueOf(response.abs() * response.abs()) : response;
     }
 
+    /**
+     * Frequency response continued to a complex &omega;. For a real &omega;,
+     * it is same as {@link #getFrequencyResponse(double)}. For a spectrum at
+     * &omega;-i&omega;<sub>I</sub> (e.g. DSM with a damping
+     * &omega;<sub>I</sub>), it gives the response to the undamped waveform.
+     *
+     * @param omega &omega;: 2&pi;f&Delta;t (may be complex)
+     * @return H(&omega;), or H(&omega;)H(-&omega;) if the filter is backward
+     * (zero phase)
+     */
+    public Complex getFrequencyResponse(Complex omega) {
+        return backward ? computeResponse(omega).multiply(computeResponse(omega.negate())) : computeResponse(omega);
+    }
+
+    /**
+     * Response of one pass (forward in time) even if the filter is backward.
+     * The pass backward in time has the response at -&omega;.
+     *
+     * @param omega &omega;: 2&pi;f&Delta;t (may be complex)
+     * @return H(&omega;)
+     */
+    public Complex getCausalFrequencyResponse(Complex omega) {
+        return computeResponse(omega);
+    }
+
+    private Complex computeResponse(Complex omega) {
+        Complex sin = omega.sin();
+        Complex cos = omega.cos();
+        Complex numerator = Complex.I.multiply(sin.multiply(2));
+        Complex response = Complex.valueOf(g);
+        for (int j = 0; j < n; j++) {
+            // Saito 1.7
+            Complex denominator = cos.multiply(b2[j] + 1).add(b1[j])
+                    .subtract(Complex.I.multiply(sin.multiply(b2[j] - 1)));
+            response = response.multiply(numerator).divide(denominator);
+        }
+        return response;
+    }
+
     @Override
     public Complex[] applyFilter(Complex[] data) {
         Complex[] y = new Complex[data.length];
@@ -299,6 +338,13 @@ public class BandPassFilter extends ButterworthFilter {
         return y;
     }
 
+    @Override
+    void cascade(double[] x) {
+        for (int j = 0; j < n; j++)
+            computeRecursion(0, -1, b1[j], b2[j], x);
+        multiply(g, x);
+    }
+
     /**
      * y[t]=a<sub>0</sub>x[t]+a<sub>1</sub>x[t-1]+a<sub>2</sub>x[t-2]-b<sub>1</sub>y[t-1]-b<sub>2</sub>y[t-2] <br>
      * a<sub>0</sub> =1, a<sub>1</sub>= 0, a<sub>2</sub> = -1
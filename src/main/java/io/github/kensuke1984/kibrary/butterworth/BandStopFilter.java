@@ -8,7 +8,7 @@ import org.apache.commons.math3.util.FastMath;
  * Bandstop filter
  *
  * @author Kensuke Konishi
- * @version 0.0.5.1
+ * @version 0.0.6
  */
 public class BandStopFilter extends ButterworthFilter {
 
@@ -333,6 +333,22 @@ public class BandStopFilter extends ButterworthFilter {
         return y;
     }
 
+    /**
+     * As {@link #applyFilter(Complex[])}, the filter is applied only forward.
+     */
+    @Override
+    public void applyFilterInPlace(double[] data) {
+        backward = false;
+        cascade(data);
+    }
+
+    @Override
+    void cascade(double[] x) {
+        for (int j = 0; j < n; j++)
+            computeRecursion(a1, 1, b1[j], b2[j], x);
+        multiply(g, x);
+    }
+
     /**
      * <sub></sub>
      * y[t]=a<sub>0</sub>x[t]+a<sub>1</sub>x[t-1]+a<sub>2</sub>x[t-2]-b<sub>1</sub>y[t-1]-b<sub>2</sub>y[t-2] <br>
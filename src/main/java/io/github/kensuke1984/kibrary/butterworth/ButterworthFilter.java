@@ -17,7 +17,7 @@ import org.apache.commons.math3.util.FastMath;
  * true.
  * 
  * @author Kensuke Konishi
- * @version 0.0.5
+ * @version 0.0.7
  * 
  */
 public abstract class ButterworthFilter {
@@ -99,19 +99,80 @@ public abstract class ButterworthFilter {
 	 * @param data
 	 *            フィルタを掛ける系列
 	 * @return フィルタをかけたあとの数列
+	 * @see #applyFilterInPlace(double[])
 	 */
 	public double[] applyFilter(double[] data) {
-		Complex[] cdata = new Complex[data.length];
-		for (int i = 0; i < cdata.length; i++)
-			cdata[i] = Complex.valueOf(data[i]);
+		double[] y = data.clone();
+		applyFilterInPlace(y);
+		return y;
+	}
+
+	/**
+	 * Filters a real series in place without any {@link Complex}. The result is
+	 * same as {@link #applyFilter(Complex[])}.
+	 * 
+	 * @param data
+	 *            フィルタを掛ける系列 (overwritten by the filtered one)
+	 */
+	public void applyFilterInPlace(double[] data) {
+		cascade(data);
+		if (!backward)
+			return;
+		reverse(data);
+		cascade(data);
+		reverse(data);
+	}
+
+	/**
+	 * Applies all the sections once forward and multiplies G<sub>0</sub>.
+	 * 
+	 * @param x
+	 *            series to be overwritten
+	 */
+	abstract void cascade(double[] x);
 
-		cdata = applyFilter(cdata);
+	/**
+	 * y[t]=x[t]+a<sub>1</sub>x[t-1]+a<sub>2</sub>x[t-2]-b<sub>1</sub>y[t-1]-b
+	 * <sub>2</sub>y[t-2] in place, where x and y before t=0 are 0.
+	 * 
+	 * @param a1
+	 *            a<sub>1</sub>
+	 * @param a2
+	 *            a<sub>2</sub>
+	 * @param b1
+	 *            b<sub>1</sub>
+	 * @param b2
+	 *            b<sub>2</sub>
+	 * @param x
+	 *            series to be overwritten by y
+	 */
+	static void computeRecursion(double a1, double a2, double b1, double b2, double[] x) {
+		double x1 = 0;
+		double x2 = 0;
+		double y1 = 0;
+		double y2 = 0;
+		for (int i = 0; i < x.length; i++) {
+			double x0 = x[i];
+			double y0 = x0 + a1 * x1 + a2 * x2 - b1 * y1 - b2 * y2;
+			x[i] = y0;
+			x2 = x1;
+			x1 = x0;
+			y2 = y1;
+			y1 = y0;
+		}
+	}
 
-		double[] newData = new double[data.length];
-		for (int i = 0; i < data.length; i++)
-			newData[i] = cdata[i].getReal();
+	static void multiply(double g, double[] x) {
+		for (int i = 0; i < x.length; i++)
+			x[i] *= g;
+	}
 
-		return newData;
+	private static void reverse(double[] x) {
+		for (int i = 0, j = x.length - 1; i < j; i++, j--) {
+			double tmp = x[i];
+			x[i] = x[j];
+			x[j] = tmp;
+		}
 	}
 
 	/**
@@ -123,6 +184,13 @@ public abstract class ButterworthFilter {
 		this.backward = backward;
 	}
 
+	/**
+	 * @return true if the filter is zero phase (also applied backward)
+	 */
+	public boolean isBackward() {
+		return backward;
+	}
+
 	void setN() {
 		n = (int) FastMath.ceil(FastMath.log(as / ap) / FastMath.log(sigmaSoverSigmaP));
 	}
@@ -16,7 +16,7 @@ import org.apache.commons.math3.util.FastMath;
  * f: frequency [Hz] &Delta;t: sampling interval [s]
  *
  * @author Kensuke Konishi
- * @version 0.0.3.1
+ * @version 0.0.4
  */
 public class LowPassFilter extends ButterworthFilter {
     public double getOmegaP() {
@@ -226,6 +226,14 @@ public class LowPassFilter extends ButterworthFilter {
         return y;
     }
 
+    @Override
+    void cascade(double[] x) {
+        for (int j = 0; j < n / 2; j++)
+            computeRecursion(2, 1, b1[j], b2[j], x);
+        if (n % 2 == 1) computeRecursion(1, 0, b1[n / 2], 0, x);
+        multiply(g, x);
+    }
+
     /**
      * <sub></sub>
      * y[t]=a<sub>0</sub>x[t]+a<sub>1</sub>x[t-1]+a<sub>2</sub>x[t-2]-b<sub>1</sub>y[t-1]-b<sub>2</sub>y[t-2] <br>
@@ -12,20 +12,21 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import org.apache.commons.math3.util.Precision;
 
 import io.github.kensuke1984.kibrary.Operation;
 import io.github.kensuke1984.kibrary.Property;
+import io.github.kensuke1984.kibrary.math.CrossCorrelation;
 import io.github.kensuke1984.kibrary.timewindow.Timewindow;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformation;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformationFile;
 import io.github.kensuke1984.kibrary.util.EventFolder;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Station;
 import io.github.kensuke1984.kibrary.util.Trace;
 import io.github.kensuke1984.kibrary.util.Utilities;
@@ -34,6 +35,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACComponent;
 import io.github.kensuke1984.kibrary.util.sac.SACData;
 import io.github.kensuke1984.kibrary.util.sac.SACExtension;
 import io.github.kensuke1984.kibrary.util.sac.SACFileName;
+import io.github.kensuke1984.kibrary.util.sac.SACHeaderData;
 import io.github.kensuke1984.kibrary.util.sac.SACHeaderEnum;
 
 /**
@@ -60,7 +62,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACHeaderEnum;
  * timeshift fileを一つに統一
  *
  * @author Kensuke Konishi
- * @version 0.2.1.3
+ * @version 0.2.1.6
  */
 public class FujiStaticCorrection implements Operation {
 
@@ -181,18 +183,21 @@ public class FujiStaticCorrection implements Operation {
             }
 
             // observed fileを拾ってくる
-            Set<SACFileName> obsFiles;
+            // headers are checked before reading waveforms
+            Map<SACFileName, SACHeaderData> obsHeaders;
+            Map<SACFileName, SACHeaderData> synHeaders;
             try {
-                (obsFiles = obsEventDir.sacFileSet()).removeIf(s -> !s.isOBS());
+                obsHeaders = obsEventDir.sacHeaderMap();
+                synHeaders = new EventFolder(synEventPath).sacHeaderMap();
             } catch (IOException e1) {
                 e1.printStackTrace();
                 return;
             }
             // TreeMap<String, Double> timeshiftMap = new TreeMap<>();
-            for (SACFileName obsName : obsFiles) {
+            for (SACFileName obsName : obsHeaders.keySet()) {
                 SACComponent component = obsName.getComponent();
                 // check a component
-                if (!components.contains(component)) continue;
+                if (!obsName.isOBS() || !components.contains(component)) continue;
                 SACExtension synExt = convolute ? SACExtension.valueOfConvolutedSynthetic(component) :
                         SACExtension.valueOfSynthetic(component);
 
@@ -200,26 +205,20 @@ public class FujiStaticCorrection implements Operation {
                         synEventPath.resolve(obsName.getStationName() + "." + obsName.getGlobalCMTID() + "." + synExt));
                 // System.out.println(obsFile.getName() + " " +
                 // synFile.getName());
-                if (!synName.exists()) {
+                SACHeaderData obsHeader = obsHeaders.get(obsName);
+                SACHeaderData synHeader = synHeaders.get(synName);
+                if (synHeader == null) {
                     System.err.println(synName + " does not exist. ");
                     continue;
                 }
-                SACData obsSac;
-                SACData synSac;
-                try {
-                    obsSac = obsName.read();
-                    synSac = synName.read();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    continue;
-                }
 
-                Station station = obsSac.getStation();
+                Station station = obsHeader.getStation();
                 double delta = 1 / sacSamplingHz;
-                if (delta != obsSac.getValue(SACHeaderEnum.DELTA) || delta != synSac.getValue(SACHeaderEnum.DELTA)) {
+                if (delta != obsHeader.getValue(SACHeaderEnum.DELTA) ||
+                        delta != synHeader.getValue(SACHeaderEnum.DELTA)) {
                     System.err.println(
-                            "Deltas are invalid. " + obsSac + " " + obsSac.getValue(SACHeaderEnum.DELTA) + " " +
-                                    synSac + " " + synSac.getValue(SACHeaderEnum.DELTA) + " must be " + delta);
+                            "Deltas are invalid. " + obsName + " " + obsHeader.getValue(SACHeaderEnum.DELTA) + " " +
+                                    synName + " " + synHeader.getValue(SACHeaderEnum.DELTA) + " must be " + delta);
                     continue;
                 }
                 // Pickup time windows of obsName
@@ -227,6 +226,17 @@ public class FujiStaticCorrection implements Operation {
                         timewindowInformation.stream().filter(info -> info.getStation().equals(station))
                                 .filter(info -> info.getGlobalCMTID().equals(eventID))
                                 .filter(info -> info.getComponent() == component).collect(Collectors.toSet());
+                if (windows.isEmpty()) continue;
+
+                SACData obsSac;
+                SACData synSac;
+                try {
+                    obsSac = obsName.read();
+                    synSac = synName.read();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    continue;
+                }
 
                 if (windows != null && windows.size() != 0) for (Timewindow window : windows)
                     try {
@@ -352,35 +362,19 @@ public class FujiStaticCorrection implements Operation {
     private int getBestPoint(double[] obs, double[] syn, double delta) {
         int shift = 0;
         double cor = 0;
-
-        // double synsum = 0;
-        // for (int j = 0; j < syn.length; j++)
-        // synsum += syn[j] * syn[j];
-        // synsum = Math.sqrt(synsum);
         // searchWidthから 相関のいいshiftを探す
         int width = obs.length - syn.length; // searchWidth
+        if (width <= 0) return (int) (searchRange / delta);
+        double[] products = CrossCorrelation.dotProducts(obs, syn);
+        double[] energies = CrossCorrelation.energies(obs, syn.length);
         for (int shiftI = 0; shiftI < width; shiftI++) {
-            // double variance = 0;
-            double tmpcor = 0;
-            double obssum = 0;
-            for (int j = 0; j < syn.length; j++) {
-                tmpcor += syn[j] * obs[j + shiftI];
-                obssum += obs[j + shiftI] * obs[j + shiftI];
-                // variance += (syn[j] - obs[j + shiftI])
-                // * (syn[j] - obs[j + shiftI]);
-            }
-            obssum = Math.sqrt(obssum);
-            // tmpcor /= synsum * obssum;
-            tmpcor /= obssum;
-            // variance /= obssum;
-            // System.out.println(((int) (-searchRange / delta) + shiftI) + " "
-            // + tmpcor + " " + variance);
+            if (energies[shiftI] == 0) continue;
+            double tmpcor = products[shiftI] / Math.sqrt(energies[shiftI]);
             if (tmpcor > cor) {
                 shift = shiftI;
                 cor = tmpcor;
             }
         }
-        // System.out.println(pointWidth+" "+shift);
         return (int) (searchRange / delta) - shift;
     }
 
@@ -460,20 +454,8 @@ public class FujiStaticCorrection implements Operation {
     @Override
     public void run() throws Exception {
         Set<EventFolder> eventDirs = Utilities.eventFolderSet(obsPath);
-        int n = Runtime.getRuntime().availableProcessors();
-        ExecutorService es = Executors.newFixedThreadPool(n);
         timewindowInformation = TimewindowInformationFile.read(timewindowInformationPath);
-        eventDirs.stream().map(Worker::new).forEach(es::execute);
-        es.shutdown();
-
-        while (!es.isTerminated()) {
-            try {
-                // System.out.println("waiting");
-                Thread.sleep(1000);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        JobScheduler.invokeAll(eventDirs.stream().map(Worker::new).collect(Collectors.toList()));
         output();
     }
 
@@ -29,7 +29,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACData;
  * {@link #convolve(Complex[])}
  *
  * @author Kensuke Konishi
- * @version 0.0.6.3
+ * @version 0.0.7
  */
 public class SourceTimeFunction {
 
@@ -128,7 +128,8 @@ public class SourceTimeFunction {
     /**
      * @param np         must be a power of 2
      * @param tlen       [s] must be a tenth of powers of 2
-     * @param samplingHz 20 preferred (now must)
+     * @param samplingHz tlen samplingHz must be at least 2np (e.g. 20,
+     *                   {@link io.github.kensuke1984.kibrary.util.spc.SACMaker#findSamplingHz(int, double, double, double)})
      */
     protected SourceTimeFunction(int np, double tlen, double samplingHz) {
         if (!checkValues(np, tlen, samplingHz)) throw new RuntimeException();
@@ -140,8 +141,8 @@ public class SourceTimeFunction {
 
     protected static boolean checkValues(int np, double tlen, double samplingHz) {
         boolean bool = true;
-        if (samplingHz != 20) {
-            System.err.println("Only samplingHz 20 is acceptable now.");
+        if (Math.round(tlen * samplingHz) < 2 * np) {
+            System.err.println("samplingHz " + samplingHz + " is too small for np " + np + " and tlen " + tlen);
             bool = false;
         }
         if (!ArithmeticUtils.isPowerOfTwo(np)) {
@@ -238,7 +239,8 @@ public class SourceTimeFunction {
     }
 
     private static int computeLsmooth(int np, double tlen, double samplingHz) {
-        int lsmooth = (int) (0.5 * tlen * samplingHz / np);
+        // round-off in tlen samplingHz must not lower lsmooth
+        int lsmooth = (int) (0.5 * tlen * samplingHz / np + 1e-9);
         int i = Integer.highestOneBit(lsmooth);
         return i < lsmooth ? i * 2 : lsmooth;
     }
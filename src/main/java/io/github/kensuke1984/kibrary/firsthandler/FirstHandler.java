@@ -10,13 +10,12 @@ import java.nio.file.StandardOpenOption;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import io.github.kensuke1984.kibrary.Operation;
 import io.github.kensuke1984.kibrary.Property;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Utilities;
 
 /**
@@ -42,7 +41,7 @@ import io.github.kensuke1984.kibrary.util.Utilities;
  * intermediate files explicitly.
  *
  * @author Kensuke Konishi
- * @version 0.2.1.3
+ * @version 0.2.1.4
  */
 public class FirstHandler implements Operation {
     public static void writeDefaultPropertiesFile() throws IOException {
@@ -162,14 +161,8 @@ public class FirstHandler implements Operation {
 
         seedSacs.forEach(ss -> ss.setRemoveIntermediateFiles(removeIntermediateFile));
 
-        int threadNum = Runtime.getRuntime().availableProcessors();
-        ExecutorService es = Executors.newFixedThreadPool(threadNum);
-
-        seedSacs.forEach(es::submit);
-
-        es.shutdown();
         try {
-            while (!es.isTerminated()) Thread.sleep(1000 * 5);
+            JobScheduler.invokeAll(seedSacs);
         } catch (Exception e2) {
             e2.printStackTrace();
         }
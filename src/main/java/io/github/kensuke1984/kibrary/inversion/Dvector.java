@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -14,7 +15,6 @@ import java.util.Set;
 import java.util.function.Predicate;
 import java.util.function.ToDoubleBiFunction;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealVector;
@@ -34,7 +34,7 @@ import io.github.kensuke1984.kibrary.waveformdata.BasicID;
  * TODO 同じ震源観測点ペアの波形も周波数やタイムウインドウによってあり得るから それに対処 varianceも
  *
  * @author Kensuke Konishi
- * @version 0.2.2
+ * @version 0.2.3
  */
 public class Dvector {
 
@@ -46,6 +46,11 @@ public class Dvector {
         return Arrays.stream(ids).parallel().allMatch(BasicID::containsData);
     }
 
+    /**
+     * [s] Start times of a pair must differ less than this.
+     */
+    private static final double START_TIME_TOLERANCE = 20;
+
     /**
      * compare id0 and id1 if component npts sampling Hz start time max min
      * period station global cmt id are same This method does NOT consider if
@@ -58,10 +63,67 @@ public class Dvector {
     private static boolean isPair(BasicID id0, BasicID id1) {
         return id0.getStation().equals(id1.getStation()) && id0.getGlobalCMTID().equals(id1.getGlobalCMTID()) &&
                 id0.getSacComponent() == id1.getSacComponent() && id0.getNpts() == id1.getNpts() &&
-                id0.getSamplingHz() == id1.getSamplingHz() && Math.abs(id0.getStartTime() - id1.getStartTime()) < 20 &&
+                id0.getSamplingHz() == id1.getSamplingHz() &&
+                Math.abs(id0.getStartTime() - id1.getStartTime()) < START_TIME_TOLERANCE &&
                 id0.getMaxPeriod() == id1.getMaxPeriod() && id0.getMinPeriod() == id1.getMinPeriod();
     }
 
+    /**
+     * Hash index of IDs keyed by station, global CMT ID, component, period range and start time. Start times are
+     * put in buckets of {@link #START_TIME_TOLERANCE}, so a pair of an ID is only in the bucket of the ID or the
+     * neighbouring ones.
+     */
+    private static final class IDIndex {
+        private final BasicID[] IDS;
+        private final Map<List<Object>, List<Integer>> INDEX_MAP = new HashMap<>();
+
+        private IDIndex(BasicID[] ids) {
+            IDS = ids;
+            for (int i = 0; i < ids.length; i++)
+                INDEX_MAP.computeIfAbsent(keyOf(ids[i], bucketOf(ids[i])), key -> new ArrayList<>()).add(i);
+        }
+
+        private static long bucketOf(BasicID id) {
+            return (long) Math.floor(id.getStartTime() / START_TIME_TOLERANCE);
+        }
+
+        private static List<Object> keyOf(BasicID id, long bucket) {
+            return Arrays.asList(id.getStation(), id.getGlobalCMTID(), id.getSacComponent(), id.getMinPeriod(),
+                    id.getMaxPeriod(), bucket);
+        }
+
+        /**
+         * @param id to look for
+         * @return the smallest i such that ids[i] and the id are a pair, if there is no pair, -1
+         */
+        private int indexOf(BasicID id) {
+            long bucket = bucketOf(id);
+            int index = -1;
+            for (long b = bucket - 1; b <= bucket + 1; b++) {
+                List<Integer> candidates = INDEX_MAP.get(keyOf(id, b));
+                if (candidates == null) continue;
+                for (int i : candidates) {
+                    if (0 <= index && index < i) break;
+                    if (isPair(id, IDS[i])) {
+                        index = i;
+                        break;
+                    }
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * index for {@link #obsIDs}
+     */
+    private IDIndex obsIndex;
+
+    /**
+     * index for {@link #synIDs}
+     */
+    private IDIndex synIndex;
+
     /**
      * Predicate for choosing dataset. Observed IDs are used for the choice.
      */
@@ -491,9 +553,8 @@ public class Dvector {
                         .collect(Collectors.toList());
 
         // Duplication check
-        for (int i = 0; i < obsList.size(); i++)
-            for (int j = i + 1; j < obsList.size(); j++)
-                if (obsList.get(i).equals(obsList.get(j))) throw new RuntimeException("Duplicate observed detected");
+        if (new HashSet<>(obsList).size() != obsList.size())
+            throw new RuntimeException("Duplicate observed detected");
 
         // 理論波形の抽出
         List<BasicID> synList =
@@ -501,9 +562,8 @@ public class Dvector {
                         .collect(Collectors.toList());
 
         // 重複チェック
-        for (int i = 0; i < synList.size(); i++)
-            for (int j = i + 1; j < synList.size(); j++)
-                if (synList.get(i).equals(synList.get(j))) throw new RuntimeException("Duplicate synthetic detected");
+        if (new HashSet<>(synList).size() != synList.size())
+            throw new RuntimeException("Duplicate synthetic detected");
 
         // System.out.println("There are "+synList.size()+" synthetic IDs");
 
@@ -517,13 +577,14 @@ public class Dvector {
         List<BasicID> useObsList = new ArrayList<>(size);
         List<BasicID> useSynList = new ArrayList<>(size);
 
-        for (BasicID syn : synList)
-            for (BasicID obs : obsList)
-                if (isPair(syn, obs)) {
-                    useObsList.add(obs);
-                    useSynList.add(syn);
-                    break;
-                }
+        BasicID[] obsArray = obsList.toArray(new BasicID[obsList.size()]);
+        IDIndex obsListIndex = new IDIndex(obsArray);
+        for (BasicID syn : synList) {
+            int i = obsListIndex.indexOf(syn);
+            if (i < 0) continue;
+            useObsList.add(obsArray[i]);
+            useSynList.add(syn);
+        }
 
         if (useObsList.size() != useSynList.size()) throw new RuntimeException("unanticipated");
         // System.out.println(useObsList.size() + " observed and synthetic pairs
@@ -532,6 +593,8 @@ public class Dvector {
         nTimeWindow = useSynList.size();
         obsIDs = useObsList.toArray(new BasicID[nTimeWindow]);
         synIDs = useSynList.toArray(new BasicID[nTimeWindow]);
+        obsIndex = new IDIndex(obsIDs);
+        synIndex = new IDIndex(synIDs);
 
         weighting = new double[nTimeWindow];
         startPoints = new int[nTimeWindow];
@@ -556,7 +619,6 @@ public class Dvector {
      * @return index for the id
      */
     int whichTimewindow(BasicID id) {
-        BasicID[] ids = id.getWaveformType() == WaveformType.OBS ? obsIDs : synIDs;
-        return IntStream.range(0, ids.length).filter(i -> isPair(id, ids[i])).findAny().orElse(-1);
+        return (id.getWaveformType() == WaveformType.OBS ? obsIndex : synIndex).indexOf(id);
     }
 }
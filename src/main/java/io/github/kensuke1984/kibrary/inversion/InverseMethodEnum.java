@@ -8,10 +8,10 @@ import org.apache.commons.math3.linear.RealVector;
  * value decomposition.. etc
  * 
  * @author Kensuke Konishi
- * @version 0.0.3
+ * @version 0.0.4
  */
 public enum InverseMethodEnum {
-	SINGULAR_VALUE_DECOMPOSITION, CONJUGATE_GRADIENT, LEAST_SQUARES_METHOD;
+	SINGULAR_VALUE_DECOMPOSITION, CONJUGATE_GRADIENT, LEAST_SQUARES_METHOD, MATRIX_FREE_CONJUGATE_GRADIENT;
 
 	public String simple() {
 		switch (this) {
@@ -21,6 +21,8 @@ public enum InverseMethodEnum {
 			return "CG";
 		case LEAST_SQUARES_METHOD:
 			return "LSM";
+		case MATRIX_FREE_CONJUGATE_GRADIENT:
+			return "MFCG";
 		default:
 			throw new RuntimeException("UnEXpECCted");
 		}
@@ -37,6 +39,9 @@ public enum InverseMethodEnum {
 		case "LSM":
 		case "lsm":
 			return LEAST_SQUARES_METHOD;
+		case "MFCG":
+		case "mfcg":
+			return MATRIX_FREE_CONJUGATE_GRADIENT;
 		default:
 			throw new IllegalArgumentException("Invalid name for InverseMethod");
 		}
@@ -33,7 +33,7 @@ import io.github.kensuke1984.kibrary.waveformdata.BasicID;
  * 
  * @author Kensuke Konishi
  * 
- * @version 0.1.2.1
+ * @version 0.1.2.2
  */
 public class InversionResult {
 
@@ -208,6 +208,8 @@ public class InversionResult {
 	public double varianceOf(InverseMethodEnum inverse, int n) {
 		if (n < 1)
 			throw new IllegalArgumentException("n must be 1 or more.");
+		if (!answerVarianceMap.containsKey(inverse))
+			throw new IllegalArgumentException("No variance for " + inverse + " in " + rootPath);
 		return answerVarianceMap.get(inverse)[n];
 	}
 
@@ -393,6 +395,9 @@ public class InversionResult {
 			if (inverse == InverseMethodEnum.LEAST_SQUARES_METHOD)
 				continue;
 			Path path = rootPath.resolve(inverse.simple() + "/variance.txt");
+			// only the methods used in the inversion
+			if (!Files.exists(path))
+				continue;
 			answerVarianceMap.put(inverse,
 					Files.lines(path).mapToDouble(Double::parseDouble).boxed().toArray(Double[]::new));
 		}
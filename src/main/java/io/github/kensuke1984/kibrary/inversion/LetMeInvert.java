@@ -19,6 +19,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -40,7 +41,7 @@ import io.github.kensuke1984.kibrary.waveformdata.PartialIDFile;
  * Let's invert
  *
  * @author Kensuke Konishi
- * @version 2.0.3.4
+ * @version 2.0.3.5
  */
 public class LetMeInvert implements Operation {
     /**
@@ -93,6 +94,10 @@ public class LetMeInvert implements Operation {
         if (!property.containsKey("partialPath"))
             throw new IllegalArgumentException("There is no information about 'partialPath'.");
         if (!property.containsKey("inverseMethods")) property.setProperty("inverseMethods", "CG SVD");
+        if (!property.containsKey("mapDataFile")) property.setProperty("mapDataFile", "false");
+        if (!property.containsKey("keepsA")) property.setProperty("keepsA", "true");
+        if (!property.containsKey("tolerance")) property.setProperty("tolerance", "1e-8");
+        if (!property.containsKey("interval")) property.setProperty("interval", "1");
     }
 
     private void set() {
@@ -111,8 +116,42 @@ public class LetMeInvert implements Operation {
                 Arrays.stream(property.getProperty("alpha").split("\\s+")).mapToDouble(Double::parseDouble).toArray();
         inverseMethods = Arrays.stream(property.getProperty("inverseMethods").split("\\s+")).map(InverseMethodEnum::of)
                 .collect(Collectors.toSet());
+        mapDataFile = Boolean.parseBoolean(property.getProperty("mapDataFile"));
+        keepsA = Boolean.parseBoolean(property.getProperty("keepsA"));
+        maxIteration = property.containsKey("maxIteration") ? Integer.parseInt(property.getProperty("maxIteration")) :
+                Integer.MAX_VALUE;
+        tolerance = Double.parseDouble(property.getProperty("tolerance"));
+        interval = Integer.parseInt(property.getProperty("interval"));
+        if (!keepsA && inverseMethods.contains(InverseMethodEnum.MATRIX_FREE_CONJUGATE_GRADIENT))
+            throw new IllegalArgumentException("MFCG needs A. keepsA must be true.");
     }
 
+    /**
+     * the maximum number of iterations in MFCG
+     */
+    protected int maxIteration;
+
+    /**
+     * MFCG stops if |Atr|/|Atd| is smaller than this
+     */
+    protected double tolerance;
+
+    /**
+     * MFCG outputs answers every this number of iterations
+     */
+    protected int interval;
+
+    /**
+     * If false, A is not built. A<sup>T</sup>A and A<sup>T</sup>d are accumulated time window by time window
+     * from the mapped partial file.
+     */
+    protected boolean keepsA;
+
+    /**
+     * If true, waveform and partial files are memory-mapped and each waveform is decoded when it is used.
+     */
+    protected boolean mapDataFile;
+
     /**
      * AIC計算に用いるα 独立データ数はn/αと考える
      */
@@ -143,8 +182,18 @@ public class LetMeInvert implements Operation {
             pw.println("#stationInformationPath station.inf");
             pw.println("##double[] alpha it self, if it is set, compute aic for each alpha.");
             pw.println("#alpha");
-            pw.println("##inverseMethods[] names of inverse methods (CG SVD)");
+            pw.println("##inverseMethods[] names of inverse methods CG SVD MFCG (CG SVD)");
             pw.println("#inverseMethods");
+            pw.println("##boolean if it is true, data files are memory-mapped instead of being read into memory (false)");
+            pw.println("#mapDataFile");
+            pw.println("##boolean if it is false, A is not kept but AtA and Atd are accumulated from the mapped partial file (true)");
+            pw.println("#keepsA");
+            pw.println("##int maximum number of iterations in MFCG (the number of unknowns)");
+            pw.println("#maxIteration");
+            pw.println("##double MFCG stops if |Atr|/|Atd| (r: residual) gets smaller than this (1e-8)");
+            pw.println("#tolerance");
+            pw.println("##int MFCG outputs answers every this number of iterations and at the last one (1)");
+            pw.println("#interval");
         }
         System.err.println(outPath + " is created.");
     }
@@ -163,12 +212,17 @@ public class LetMeInvert implements Operation {
         this.stationSet = stationSet;
         outPath = workPath.resolve("lmi" + Utilities.getTemporaryString());
         inverseMethods = new HashSet<>(Arrays.asList(InverseMethodEnum.values()));
+        // MFCG runs up to as many iterations as CG
+        maxIteration = equation.getMlength();
+        tolerance = 1e-8;
+        interval = 1;
     }
 
     private Path outPath;
 
     private void setEquation() throws IOException {
-        BasicID[] ids = BasicIDFile.readBasicIDandDataFile(waveIDPath, waveformPath);
+        BasicID[] ids = mapDataFile ? BasicIDFile.mapBasicIDandDataFile(waveIDPath, waveformPath) :
+                BasicIDFile.readBasicIDandDataFile(waveIDPath, waveformPath);
 
         // set Dvector
         System.err.println("Creating D vector");
@@ -179,8 +233,10 @@ public class LetMeInvert implements Operation {
         List<UnknownParameter> parameterList = UnknownParameterFile.read(unknownParameterListPath);
 
         // set partial matrix
-        PartialID[] partialIDs = PartialIDFile.readPartialIDandDataFile(partialIDPath, partialPath);
-        eq = new ObservationEquation(partialIDs, parameterList, dVector);
+        PartialID[] partialIDs =
+                mapDataFile || !keepsA ? PartialIDFile.mapPartialIDandDataFile(partialIDPath, partialPath) :
+                        PartialIDFile.readPartialIDandDataFile(partialIDPath, partialPath);
+        eq = new ObservationEquation(partialIDs, parameterList, dVector, keepsA);
     }
 
     /**
@@ -430,7 +486,9 @@ public class LetMeInvert implements Operation {
         inverseMethods.forEach(method -> {
             try {
                 if (method == InverseMethodEnum.LEAST_SQUARES_METHOD) return; // TODO
-                solve(outPath.resolve(method.simple()), method.getMethod(eq.getAtA(), eq.getAtD()));
+                if (method == InverseMethodEnum.MATRIX_FREE_CONJUGATE_GRADIENT) solve(outPath.resolve(method.simple()),
+                        new MatrixFreeConjugateGradientMethod(eq, maxIteration, tolerance, interval));
+                else solve(outPath.resolve(method.simple()), method.getMethod(eq.getAtA(), eq.getAtD()));
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -445,7 +503,7 @@ public class LetMeInvert implements Operation {
 
         // 基底ベクトルの書き出し SVD: vt, CG: cg ベクトル
         RealMatrix p = inverseProblem.getBaseVectors();
-        for (int j = 0; j < eq.getMlength(); j++) {
+        for (int j = 0; j < p.getColumnDimension(); j++) {
             writeDat(outPath.resolve("p" + j + ".txt"), p.getColumn(j));
         }
     }
@@ -465,6 +523,9 @@ public class LetMeInvert implements Operation {
 
     /**
      * outPath下にvarianceを書き込む
+     * <p>
+     * The n th line is the variance for the answer with n parameters (MFCG: n iterations). For MFCG with
+     * interval &gt; 1, lines of the iterations whose answers are not kept are NaN.
      *
      * @param outPath root path
      */
@@ -472,10 +533,18 @@ public class LetMeInvert implements Operation {
 
         Path out = outPath.resolve("variance.txt");
         if (Files.exists(out)) throw new FileAlreadyExistsException(out.toString());
-        double[] variance = new double[eq.getMlength() + 1];
+        int nAns = inverse.getANS().getColumnDimension();
+        // the number of parameters for each answer
+        int[] nParameters = inverse instanceof MatrixFreeConjugateGradientMethod ?
+                ((MatrixFreeConjugateGradientMethod) inverse).getIterations() : IntStream.rangeClosed(1, nAns).toArray();
+        double[] variance = new double[nAns == 0 ? 1 : nParameters[nAns - 1] + 1];
+        Arrays.fill(variance, Double.NaN);
         variance[0] = eq.getDVector().getVariance();
-        for (int i = 0; i < eq.getMlength(); i++) {
-            variance[i + 1] = eq.varianceOf(inverse.getANS().getColumnVector(i));
+        for (int i = 0; i < nAns; i++) {
+            RealVector m = inverse.getANS().getColumnVector(i);
+            // MFCG does not need AtA
+            variance[nParameters[i]] = inverse instanceof MatrixFreeConjugateGradientMethod ?
+                    eq.residualVarianceOf(m) : eq.varianceOf(m);
         }
         writeDat(out, variance);
         if (alpha == null) return;
@@ -490,7 +559,7 @@ public class LetMeInvert implements Operation {
     /**
      * 自由度iに対してAICを計算する 独立データは n / alpha 各々のAIC群
      *
-     * @param variance varianceの列
+     * @param variance varianceの列 (variance[i] for i parameters)
      * @param alpha    alpha redundancy
      * @return array of aic
      */
@@ -0,0 +1,175 @@
+package io.github.kensuke1984.kibrary.inversion;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Conjugate gradient method for A<sup>T</sup>A&delta;m = A<sup>T</sup>&delta;d without A<sup>T</sup>A (CGLS).
+ * <p>
+ * Only products A<b>x</b> and A<sup>T</sup><b>y</b> by an {@link ObservationEquation} are used, so neither
+ * A<sup>T</sup>A nor n&times;n matrices for all the iterations are needed. In exact arithmetic the i th answer is
+ * same as the one by {@link ConjugateGradientMethod}.
+ * <p>
+ * The iteration stops when |A<sup>T</sup>(&delta;d-A&delta;m)| / |A<sup>T</sup>&delta;d| becomes smaller than a
+ * tolerance or when the number of iterations reaches a limit. Answers and base vectors are kept only for every
+ * 'interval' iterations and the last one.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.1
+ * @see ConjugateGradientMethod
+ */
+public class MatrixFreeConjugateGradientMethod extends InverseProblem {
+
+    private final ObservationEquation EQUATION;
+
+    private final int MAX_ITERATION;
+
+    private final double TOLERANCE;
+
+    private final int INTERVAL;
+
+    /**
+     * i th answer and base vector are for ITERATIONS[i] th iteration (1, 2, ...)
+     */
+    private int[] iterations;
+
+    /**
+     * P = (p1, p2,....) of kept iterations
+     */
+    private RealMatrix p;
+
+    /**
+     * p<sub>i</sub><sup>T</sup>A<sup>T</sup>Ap<sub>i</sub> of kept iterations
+     */
+    private double[] paap;
+
+    /**
+     * @param equation     gives products A<b>x</b> and A<sup>T</sup><b>y</b>
+     * @param maxIteration the maximum number of iterations
+     * @param tolerance    the iteration stops if |A<sup>T</sup>r|/|A<sup>T</sup>&delta;d| becomes smaller than
+     *                     this. (r is the residual)
+     * @param interval     answers are kept every this number of iterations (the last one is always kept)
+     */
+    public MatrixFreeConjugateGradientMethod(ObservationEquation equation, int maxIteration, double tolerance,
+                                             int interval) {
+        if (maxIteration < 1 || interval < 1)
+            throw new IllegalArgumentException("maxIteration and interval must be positive.");
+        EQUATION = equation;
+        MAX_ITERATION = Math.min(maxIteration, equation.getMlength());
+        TOLERANCE = tolerance;
+        INTERVAL = interval;
+        atd = equation.getAtD();
+    }
+
+    @Override
+    public void compute() {
+        System.err.println("Solving by matrix-free CG method.");
+        int n = getParN();
+        RealVector m = new ArrayRealVector(n);
+        RealVector r = EQUATION.getDVector().getD(); // r = d - Am
+        RealVector s = atd; // s = At r
+        RealVector pi = s;
+        double gamma = s.dotProduct(s);
+        double stop = TOLERANCE * Math.sqrt(gamma);
+        List<Integer> keptIterations = new ArrayList<>();
+        List<RealVector> keptAns = new ArrayList<>();
+        List<RealVector> keptP = new ArrayList<>();
+        List<Double> keptPAAP = new ArrayList<>();
+        for (int i = 1; i <= MAX_ITERATION; i++) {
+            RealVector api = EQUATION.operate(pi);
+            double piaapi = api.dotProduct(api);
+            double alpha = gamma / piaapi;
+            m = m.add(pi.mapMultiply(alpha));
+            boolean converged = i == MAX_ITERATION;
+            double gammaNext = 0;
+            if (!converged) {
+                r = r.subtract(api.mapMultiply(alpha));
+                s = EQUATION.computeAtD(r);
+                gammaNext = s.dotProduct(s);
+                converged = Math.sqrt(gammaNext) <= stop;
+            }
+            if (i % INTERVAL == 0 || converged) {
+                keptIterations.add(i);
+                keptAns.add(m);
+                keptP.add(pi);
+                keptPAAP.add(piaapi);
+            }
+            if (converged) {
+                System.err.println("CG iteration stopped at " + i);
+                break;
+            }
+            pi = s.add(pi.mapMultiply(gammaNext / gamma));
+            gamma = gammaNext;
+        }
+        iterations = keptIterations.stream().mapToInt(Integer::intValue).toArray();
+        ans = MatrixUtils.createRealMatrix(n, iterations.length);
+        p = MatrixUtils.createRealMatrix(n, iterations.length);
+        for (int i = 0; i < iterations.length; i++) {
+            ans.setColumnVector(i, keptAns.get(i));
+            p.setColumnVector(i, keptP.get(i));
+        }
+        paap = keptPAAP.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * @return numbers of iterations (1, 2, ...) for the columns of answers and base vectors
+     */
+    public int[] getIterations() {
+        return iterations.clone();
+    }
+
+    @Override
+    public int getParN() {
+        return EQUATION.getMlength();
+    }
+
+    /**
+     * Answers are written with the numbers of their iterations.
+     */
+    @Override
+    public void outputAns(Path outPath) throws IOException {
+        Files.createDirectories(outPath);
+        System.err.println("outputting the answer files in " + outPath);
+        for (int i = 0; i < iterations.length; i++) {
+            Path out = outPath.resolve(getEnum().simple() + iterations[i] + ".txt");
+            try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out))) {
+                Arrays.stream(ans.getColumn(i)).forEach(pw::println);
+            }
+        }
+    }
+
+    /**
+     * Base vectors of all the iterations up to j must be kept (interval must be 1).
+     */
+    @Override
+    public RealMatrix computeCovariance(double sigmaD, int j) {
+        if (INTERVAL != 1) throw new UnsupportedOperationException("Base vectors are not kept for every iteration.");
+        RealMatrix covariance = MatrixUtils.createRealMatrix(getParN(), getParN());
+        double sigmaD2 = sigmaD * sigmaD;
+        for (int i = 0; i < j; i++) {
+            RealMatrix p = this.p.getColumnMatrix(i);
+            covariance = covariance.add(p.multiply(p.transpose()).scalarMultiply(sigmaD2 / paap[i]));
+        }
+        return covariance;
+    }
+
+    @Override
+    public RealMatrix getBaseVectors() {
+        return p;
+    }
+
+    @Override
+    InverseMethodEnum getEnum() {
+        return InverseMethodEnum.MATRIX_FREE_CONJUGATE_GRADIENT;
+    }
+}
@@ -13,11 +13,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 import io.github.kensuke1984.kibrary.inversion.montecarlo.DataGenerator;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 
-import io.github.kensuke1984.kibrary.math.Matrix;
+import io.github.kensuke1984.kibrary.math.ColumnMajorMatrix;
 import io.github.kensuke1984.kibrary.util.Location;
 import io.github.kensuke1984.kibrary.util.Utilities;
 import io.github.kensuke1984.kibrary.util.spc.PartialType;
@@ -34,12 +35,12 @@ import javax.xml.crypto.Data;
  * <p>
  *
  * @author Kensuke Konishi
- * @version 0.2.1.3
+ * @version 0.2.3
  * @see Dvector {@link UnknownParameter}
  */
 public class ObservationEquation {
 
-    private Matrix a;
+    private ColumnMajorMatrix a;
 
     /**
      * @param partialIDs    for A
@@ -47,10 +48,29 @@ public class ObservationEquation {
      * @param dVector       for &delta;d
      */
     public ObservationEquation(PartialID[] partialIDs, List<UnknownParameter> parameterList, Dvector dVector) {
+        this(partialIDs, parameterList, dVector, true);
+    }
+
+    /**
+     * If A is not kept, A<sup>T</sup>A and A<sup>T</sup>&delta;d are accumulated time window by time window and the
+     * rows of A are discarded, so the memory scales with the number of parameters instead of the size of A. Then
+     * the partialIDs should refer their waveforms in a mapped file
+     * ({@link io.github.kensuke1984.kibrary.waveformdata.PartialIDFile#mapPartialIDandDataFile(Path, Path)}) and
+     * methods which need A itself throw {@link UnsupportedOperationException}.
+     *
+     * @param partialIDs    for A
+     * @param parameterList for &delta;m
+     * @param dVector       for &delta;d
+     * @param keepsA        if A is built and kept
+     */
+    public ObservationEquation(PartialID[] partialIDs, List<UnknownParameter> parameterList, Dvector dVector,
+                               boolean keepsA) {
         DVECTOR = dVector;
         PARAMETER_LIST = Collections.unmodifiableList(parameterList);
-        readA(partialIDs);
-        atd = RealVector.unmodifiableRealVector(computeAtD(dVector.getD()));
+        if (keepsA) {
+            readA(partialIDs);
+            atd = RealVector.unmodifiableRealVector(computeAtD(dVector.getD()));
+        } else accumulateAtA(partialIDs);
         BORN_GENERATOR = model -> DVECTOR.separate(operate(model));
         VARIANCE_GENERATOR = this::varianceOf;
     }
@@ -92,6 +112,20 @@ public class ObservationEquation {
         return variance / obs2;
     }
 
+    /**
+     * Same as {@link #varianceOf(RealVector)}, but computed from the residual &delta;d - A&delta;m without
+     * A<sup>T</sup>A.
+     *
+     * @param m &delta;m
+     * @return |A&delta;m - &delta;d|<sup>2</sup>/|obs|<sup>2</sup>
+     */
+    public double residualVarianceOf(RealVector m) {
+        Objects.requireNonNull(m);
+        double obs2 = DVECTOR.getObsNorm() * DVECTOR.getObsNorm();
+        RealVector residual = DVECTOR.getD().subtract(operate(m));
+        return residual.dotProduct(residual) / obs2;
+    }
+
     private RealVector atd;
 
     /**
@@ -100,7 +134,7 @@ public class ObservationEquation {
      * @param ids source for A
      */
     private void readA(PartialID[] ids) {
-        a = new Matrix(DVECTOR.getNpts(), PARAMETER_LIST.size());
+        a = new ColumnMajorMatrix(DVECTOR.getNpts(), PARAMETER_LIST.size());
         // partialDataFile.readWaveform();
         long t = System.nanoTime();
         AtomicInteger count = new AtomicInteger();
@@ -115,7 +149,8 @@ public class ObservationEquation {
             double weighting = DVECTOR.getWeighting(k) * PARAMETER_LIST.get(column).getWeighting();
             double[] partial = id.getData();
             for (int j = 0; j < partial.length; j++)
-                a.setEntry(row + j, column, partial[j] * weighting);
+                partial[j] *= weighting;
+            a.setColumnPart(row, column, partial);
             count.incrementAndGet();
         });
 //		System.out.println(count.get()+" "+ DVECTOR.getNTimeWindow() * PARAMETER_LIST.size()+" "+PARAMETER_LIST.size());
@@ -124,6 +159,80 @@ public class ObservationEquation {
         System.err.println("A is read and built in " + Utilities.toTimeString(System.nanoTime() - t));
     }
 
+    /**
+     * Computes A<sup>T</sup>A and A<sup>T</sup>&delta;d without building A. Waveforms of partials for one time
+     * window are read, added to A<sup>T</sup>A and A<sup>T</sup>&delta;d and thrown away.
+     *
+     * @param ids source for A
+     */
+    private void accumulateAtA(PartialID[] ids) {
+        long t = System.nanoTime();
+        int n = PARAMETER_LIST.size();
+        int nTimeWindow = DVECTOR.getNTimeWindow();
+        int[] columns = new int[ids.length];
+        int[] timewindows = new int[ids.length];
+        Arrays.parallelSetAll(columns, i -> whatNumber(ids[i].getPartialType(), ids[i].getPerturbationLocation()));
+        Arrays.parallelSetAll(timewindows, i -> columns[i] < 0 ? -1 : DVECTOR.whichTimewindow(ids[i]));
+        // partials[k][j] is for the k th timewindow and the j th parameter
+        PartialID[][] partialIDs = new PartialID[nTimeWindow][n];
+        for (int i = 0; i < ids.length; i++) {
+            if (timewindows[i] < 0) continue;
+            // one partial for a timewindow and a parameter, otherwise one of them would be lost
+            PartialID existing = partialIDs[timewindows[i]][columns[i]];
+            if (existing != null) throw new RuntimeException(
+                    "Input partials " + existing + " and " + ids[i] + " are for the same timewindow and parameter.");
+            partialIDs[timewindows[i]][columns[i]] = ids[i];
+        }
+        if (Arrays.stream(partialIDs).flatMap(Arrays::stream).anyMatch(Objects::isNull))
+            throw new RuntimeException("Input partials are not enough.");
+
+        double[][] ata = new double[n][n];
+        double[] atd = new double[n];
+        RealVector[] dVec = DVECTOR.getdVec();
+        for (int k = 0; k < nTimeWindow; k++) {
+            PartialID[] windowIDs = partialIDs[k];
+            double weighting = DVECTOR.getWeighting(k);
+            double[][] rows = new double[n][];
+            IntStream.range(0, n).parallel().forEach(j -> {
+                double[] partial = windowIDs[j].getData();
+                double w = weighting * PARAMETER_LIST.get(j).getWeighting();
+                for (int l = 0; l < partial.length; l++)
+                    partial[l] *= w;
+                rows[j] = partial;
+            });
+            double[] d = dVec[k].toArray();
+            IntStream.range(0, n).parallel().forEach(i -> {
+                double[] partialI = rows[i];
+                double[] ataI = ata[i];
+                for (int j = i; j < n; j++) {
+                    double[] partialJ = rows[j];
+                    double value = 0;
+                    for (int l = 0; l < partialI.length; l++)
+                        value += partialI[l] * partialJ[l];
+                    ataI[j] += value;
+                }
+                double value = 0;
+                for (int l = 0; l < partialI.length; l++)
+                    value += partialI[l] * d[l];
+                atd[i] += value;
+            });
+            partialIDs[k] = null;
+        }
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < i; j++)
+                ata[i][j] = ata[j][i];
+        this.ata = new Array2DRowRealMatrix(ata, false);
+        this.atd = RealVector.unmodifiableRealVector(new ArrayRealVector(atd, false));
+        System.err.println("AtA and Atd are accumulated in " + Utilities.toTimeString(System.nanoTime() - t));
+    }
+
+    /**
+     * @throws UnsupportedOperationException if A is not kept
+     */
+    private void checkA() {
+        if (a == null) throw new UnsupportedOperationException("A is not kept in this equation.");
+    }
+
     /**
      * @param type     to look for
      * @param location to look for
@@ -164,6 +273,7 @@ public class ObservationEquation {
      * @return (deep)copy of A, which can be heavy load.
      */
     public RealMatrix getA() {
+        checkA();
         return a.copy();
     }
 
@@ -187,6 +297,7 @@ public class ObservationEquation {
         else if (parameter instanceof Physical3DParameter)
             location = ((Physical3DParameter) parameter).getPointLocation();
         else throw new RuntimeException("UNEXPECTED");
+        checkA();
         return a.getColumnVector(whatNumber(parameter.getPartialType(), location));
     }
 
@@ -253,6 +364,7 @@ public class ObservationEquation {
      * @return A<sup>T</sup>d
      */
     public RealVector computeAtD(RealVector d) {
+        checkA();
         return a.preMultiply(d);
     }
 
@@ -279,6 +391,7 @@ public class ObservationEquation {
      * @return Am
      */
     public RealVector operate(RealVector m) {
+        checkA();
         return a.operate(m);
     }
 
@@ -8,12 +8,12 @@ import java.nio.charset.Charset;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.NoSuchFileException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
 
 import io.github.kensuke1984.kibrary.util.Earth;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Location;
 
 /**
@@ -24,7 +24,7 @@ import io.github.kensuke1984.kibrary.util.Location;
  * 
  * TODO 名前のチェック validity
  * 
- * @version 0.1.2.2
+ * @version 0.1.2.3
  * 
  * @author Kensuke Konishi
  * 
@@ -65,17 +65,11 @@ public class PerturbationPoint extends HorizontalPoint {
 	 */
 	public void computeVolumes() {
 		volumeMap = new HashMap<>();
-		ExecutorService es = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-		for (Location perLoc : perturbationLocation)
-			es.execute(new VolumeCalculator(perLoc));
-
-		es.shutdown();
-		while (!es.isTerminated()) {
-			try {
-				Thread.sleep(1000);
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+		try {
+			JobScheduler.invokeAll(
+					Arrays.stream(perturbationLocation).map(VolumeCalculator::new).collect(Collectors.toList()));
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
 
 	}
@@ -0,0 +1,150 @@
+package io.github.kensuke1984.kibrary.math;
+
+/**
+ * Inverse Fourier transform of a spectrum of a real time series evaluated only
+ * at evenly spaced points p = first + j step (j = 0, ..., m-1) of the time
+ * series of length n.
+ * <p>
+ * The values are same as {@link InverseFFT#toTimeSeries(double[], int)} at the
+ * points. For short windows, they are summed up directly in O(m np).
+ * Otherwise, the chirp-z transform (Bluestein's algorithm) gives them by FFTs
+ * of the length of about m+np, which does not depend on n. The FFTs use the
+ * kernel of {@link InverseFFT} on interleaved arrays.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.2
+ */
+public final class ChirpZTransform {
+
+    /**
+     * The direct summation is used when m(np+1) is less than this times L
+     * log<sub>2</sub>L, where L is the length of FFTs in the chirp-z transform.
+     */
+    private static final int DIRECT_FACTOR = 16;
+
+    private ChirpZTransform() {
+    }
+
+    /**
+     * x<sub>p</sub> = 1/n &sum;<sub>k</sub> X<sub>k</sub> exp(2&pi;ikp/n) where
+     * X<sub>n-k</sub> = X<sub>k</sub>*. X<sub>k</sub> for np &lt; k &le; n/2
+     * are 0.
+     *
+     * @param spectrum interleaved X<sub>0</sub>, ..., X<sub>np</sub> (the length
+     *                 is 2(np+1))
+     * @param np       the number of steps in the spectrum (np &le; n/2)
+     * @param n        length of the whole time series
+     * @param first    the first point
+     * @param step     interval of the points
+     * @param m        the number of the points
+     * @return x<sub>first + j step</sub> (j = 0, ..., m-1)
+     */
+    public static double[] toTimeSeries(double[] spectrum, int np, int n, int first, int step, int m) {
+        if (n / 2 < np) throw new IllegalArgumentException("np " + np + " is larger than n/2 " + n / 2);
+        // a_k = c_k X_k exp(2 pi i k first / n), where c_k is 1 for k = 0, n/2 and 2 otherwise
+        double[] a = new double[2 * (np + 1)];
+        for (int k = 0; k <= np; k++) {
+            double c = k == 0 || 2 * k == n ? 1 : 2;
+            double re = c * spectrum[2 * k];
+            double im = k == 0 ? 0 : c * spectrum[2 * k + 1];
+            double theta = phase((long) k * first, n);
+            a[2 * k] = re * Math.cos(theta) - im * Math.sin(theta);
+            a[2 * k + 1] = re * Math.sin(theta) + im * Math.cos(theta);
+        }
+        int length = Integer.highestOneBit(m + np) << 1;
+        double[] x = (long) m * (np + 1) < (long) DIRECT_FACTOR * length * Integer.numberOfTrailingZeros(length) ?
+                sumDirectly(a, np, n, step, m) : chirpZ(a, np, n, step, m, length);
+        for (int j = 0; j < m; j++)
+            x[j] /= n;
+        return x;
+    }
+
+    /**
+     * @return 2&pi;q/n reduced by 2&pi; before multiplication
+     */
+    private static double phase(long q, int n) {
+        return 2 * Math.PI * Math.floorMod(q, (long) n) / n;
+    }
+
+    /**
+     * Re &sum;<sub>k</sub> a<sub>k</sub> W<sup>jk</sup>, W = exp(2&pi;i
+     * step/n)
+     */
+    private static double[] sumDirectly(double[] a, int np, int n, int step, int m) {
+        double[] x = new double[m];
+        for (int j = 0; j < m; j++) {
+            double theta = phase((long) j * step, n);
+            double wRe = Math.cos(theta);
+            double wIm = Math.sin(theta);
+            // z = W^(jk)
+            double zRe = 1;
+            double zIm = 0;
+            double sum = 0;
+            for (int k = 0; k <= np; k++) {
+                sum += a[2 * k] * zRe - a[2 * k + 1] * zIm;
+                double re = zRe * wRe - zIm * wIm;
+                zIm = zRe * wIm + zIm * wRe;
+                zRe = re;
+            }
+            x[j] = sum;
+        }
+        return x;
+    }
+
+    /**
+     * jk = (j<sup>2</sup> + k<sup>2</sup> - (j-k)<sup>2</sup>)/2 turns
+     * &sum;<sub>k</sub> a<sub>k</sub> W<sup>jk</sup> into a convolution.
+     */
+    private static double[] chirpZ(double[] a, int np, int n, int step, int m, int length) {
+        // interleaved arrays of the length (complex) of the FFTs
+        double[] chirpA = new double[2 * length];
+        double[] chirpB = new double[2 * length];
+        // W^(k^2/2) = exp(pi i step k^2 / n) = exp(2 pi i (step k^2) / 2n)
+        for (int k = 0; k <= np; k++) {
+            double theta = halfChirp(k, step, n);
+            double cos = Math.cos(theta);
+            double sin = Math.sin(theta);
+            chirpA[2 * k] = a[2 * k] * cos - a[2 * k + 1] * sin;
+            chirpA[2 * k + 1] = a[2 * k] * sin + a[2 * k + 1] * cos;
+        }
+        for (int l = 0; l < Math.max(m, np + 1); l++) {
+            double theta = halfChirp(l, step, n);
+            double cos = Math.cos(theta);
+            double sin = -Math.sin(theta);
+            if (l < m) {
+                chirpB[2 * l] = cos;
+                chirpB[2 * l + 1] = sin;
+            }
+            if (0 < l && l <= np) {
+                chirpB[2 * (length - l)] = cos;
+                chirpB[2 * (length - l) + 1] = sin;
+            }
+        }
+        InverseFFT fft = InverseFFT.getInstance(2 * length);
+        fft.transformComplex(chirpA);
+        fft.transformComplex(chirpB);
+        // the transform with the opposite sign is conj(F(conj(z))), so the product is conjugated before and after
+        for (int i = 0; i < length; i++) {
+            double re = chirpA[2 * i] * chirpB[2 * i] - chirpA[2 * i + 1] * chirpB[2 * i + 1];
+            double im = chirpA[2 * i] * chirpB[2 * i + 1] + chirpA[2 * i + 1] * chirpB[2 * i];
+            chirpA[2 * i] = re;
+            chirpA[2 * i + 1] = -im;
+        }
+        fft.transformComplex(chirpA);
+        double[] x = new double[m];
+        for (int j = 0; j < m; j++) {
+            double theta = halfChirp(j, step, n);
+            // Re(conj(y_j) / length * W^(j^2/2))
+            x[j] = (chirpA[2 * j] * Math.cos(theta) + chirpA[2 * j + 1] * Math.sin(theta)) / length;
+        }
+        return x;
+    }
+
+    /**
+     * @return the phase of W<sup>k<sup>2</sup>/2</sup> reduced by 2&pi;
+     */
+    private static double halfChirp(long k, int step, int n) {
+        return Math.PI * Math.floorMod(step * k * k, 2L * n) / n;
+    }
+
+}
@@ -0,0 +1,155 @@
+package io.github.kensuke1984.kibrary.math;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Dense matrix whose entries are stored column by column, one array for each column.
+ * <p>
+ * A column is contiguous in the memory, therefore A<sup>T</sup>A, A<sup>T</sup>v and Av are computed by tiled and
+ * parallelized kernels in {@link MatrixComputation} without any bounds checks for each entry. It suits a matrix like
+ * the partial derivative matrix A which has many more rows than columns.
+ * <p>
+ * Only the number of rows must be less than {@link Integer#MAX_VALUE}; the number of entries is not limited.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.2
+ */
+public class ColumnMajorMatrix extends AbstractRealMatrix {
+
+    private final int ROW_DIMENSION;
+    private final int COLUMN_DIMENSION;
+
+    /**
+     * (i, j) entry is COLUMNS[j][i]
+     */
+    private final double[][] COLUMNS;
+
+    /**
+     * @param rowDimension    the number of rows
+     * @param columnDimension the number of columns
+     */
+    public ColumnMajorMatrix(int rowDimension, int columnDimension) {
+        this(rowDimension, columnDimension, new double[columnDimension][rowDimension]);
+    }
+
+    private ColumnMajorMatrix(int rowDimension, int columnDimension, double[][] columns) {
+        super(rowDimension, columnDimension);
+        ROW_DIMENSION = rowDimension;
+        COLUMN_DIMENSION = columnDimension;
+        COLUMNS = columns;
+    }
+
+    @Override
+    public int getRowDimension() {
+        return ROW_DIMENSION;
+    }
+
+    @Override
+    public int getColumnDimension() {
+        return COLUMN_DIMENSION;
+    }
+
+    @Override
+    public ColumnMajorMatrix createMatrix(int rowDimension, int columnDimension) {
+        return new ColumnMajorMatrix(rowDimension, columnDimension);
+    }
+
+    @Override
+    public ColumnMajorMatrix copy() {
+        double[][] columns = new double[COLUMN_DIMENSION][];
+        for (int j = 0; j < COLUMN_DIMENSION; j++)
+            columns[j] = COLUMNS[j].clone();
+        return new ColumnMajorMatrix(ROW_DIMENSION, COLUMN_DIMENSION, columns);
+    }
+
+    private double[] columnOf(int row, int column) {
+        if (row < 0 || ROW_DIMENSION <= row) throw new OutOfRangeException(row, 0, ROW_DIMENSION - 1);
+        if (column < 0 || COLUMN_DIMENSION <= column)
+            throw new OutOfRangeException(column, 0, COLUMN_DIMENSION - 1);
+        return COLUMNS[column];
+    }
+
+    @Override
+    public double getEntry(int row, int column) {
+        return columnOf(row, column)[row];
+    }
+
+    @Override
+    public void setEntry(int row, int column, double value) {
+        columnOf(row, column)[row] = value;
+    }
+
+    @Override
+    public void addToEntry(int row, int column, double increment) {
+        columnOf(row, column)[row] += increment;
+    }
+
+    @Override
+    public void multiplyEntry(int row, int column, double factor) {
+        columnOf(row, column)[row] *= factor;
+    }
+
+    /**
+     * Sets values from the (row, column) entry downward in the column.
+     *
+     * @param row    index of the first row
+     * @param column index of the column
+     * @param values to set
+     */
+    public void setColumnPart(int row, int column, double[] values) {
+        if (ROW_DIMENSION < row + values.length) throw new OutOfRangeException(row + values.length, 0, ROW_DIMENSION);
+        System.arraycopy(values, 0, columnOf(row, column), row, values.length);
+    }
+
+    @Override
+    public double[] getColumn(int column) {
+        return columnOf(0, column).clone();
+    }
+
+    @Override
+    public RealVector getColumnVector(int column) {
+        return new ArrayRealVector(getColumn(column), false);
+    }
+
+    /**
+     * @return A<sup>T</sup>A
+     */
+    public Matrix computeAtA() {
+        return MatrixComputation.computeAtA(COLUMNS, ROW_DIMENSION);
+    }
+
+    @Override
+    public RealVector operate(RealVector v) throws DimensionMismatchException {
+        if (v.getDimension() != COLUMN_DIMENSION) throw new DimensionMismatchException(v.getDimension(), COLUMN_DIMENSION);
+        return new ArrayRealVector(operate(v.toArray()), false);
+    }
+
+    @Override
+    public double[] operate(double[] v) throws DimensionMismatchException {
+        if (v.length != COLUMN_DIMENSION) throw new DimensionMismatchException(v.length, COLUMN_DIMENSION);
+        return MatrixComputation.operate(COLUMNS, ROW_DIMENSION, v);
+    }
+
+    @Override
+    public RealVector preMultiply(RealVector v) throws DimensionMismatchException {
+        if (v.getDimension() != ROW_DIMENSION) throw new DimensionMismatchException(v.getDimension(), ROW_DIMENSION);
+        return new ArrayRealVector(preMultiply(v.toArray()), false);
+    }
+
+    @Override
+    public double[] preMultiply(double[] v) throws DimensionMismatchException {
+        if (v.length != ROW_DIMENSION) throw new DimensionMismatchException(v.length, ROW_DIMENSION);
+        return MatrixComputation.preMultiply(v, COLUMNS, ROW_DIMENSION);
+    }
+
+    @Override
+    public RealMatrix multiply(RealMatrix m) throws DimensionMismatchException {
+        return MatrixComputation.computeAB(this, m);
+    }
+
+}
@@ -0,0 +1,147 @@
+package io.github.kensuke1984.kibrary.math;
+
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+/**
+ * Correlation of a shorter series sliding on a longer one.
+ * <p>
+ * For a longer series x (length n) and a shorter one y (length m &le; n), the
+ * values at shifts s = 0, ..., n-m are
+ * <ul>
+ * <li>dot product c(s) = &Sigma;<sub>j</sub> y<sub>j</sub>x<sub>j+s</sub></li>
+ * <li>energy e(s) = &Sigma;<sub>j</sub> x<sub>j+s</sub><sup>2</sup></li>
+ * </ul>
+ * The dot products are computed by FFT in O(n log n) except for small inputs,
+ * which are evaluated directly. The energies are running sums in O(n), and
+ * only small ones, where cancellation in the sums matters, are summed up
+ * directly, so the values are the real energies of the windows. Callers
+ * normalize them for their own measures of correlation. Windows with no signal
+ * have energy exactly 0 and should be skipped, as round-off leaves their dot
+ * products not exactly 0.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.2
+ */
+public final class CrossCorrelation {
+
+    /**
+     * The direct evaluation is used when m(n-m+1) is less than this times
+     * N log<sub>2</sub>N, where N is the length of the FFT.
+     */
+    private static final int DIRECT_FACTOR = 16;
+
+    /**
+     * Running sums less than this times the maximum are summed up again
+     * directly.
+     */
+    private static final double ENERGY_EPSILON = 1e-12;
+
+    private static final FastFourierTransformer FFT = new FastFourierTransformer(DftNormalization.STANDARD);
+
+    private CrossCorrelation() {
+    }
+
+    /**
+     * @param longer  series x
+     * @param shorter series y, must not be longer than x
+     * @return c(s) = &Sigma;<sub>j</sub> y<sub>j</sub>x<sub>j+s</sub> (s = 0,
+     * ..., n-m)
+     */
+    public static double[] dotProducts(double[] longer, double[] shorter) {
+        int n = longer.length;
+        int m = shorter.length;
+        if (m == 0 || n < m) throw new IllegalArgumentException("Invalid lengths " + n + " " + m);
+        int nShift = n - m + 1;
+        int nFFT = Integer.highestOneBit(n - 1) << 1;
+        if (n == 1) nFFT = 1;
+        long directCost = (long) m * nShift;
+        if (directCost < (long) DIRECT_FACTOR * nFFT * Integer.numberOfTrailingZeros(nFFT))
+            return directDotProducts(longer, shorter);
+        // circular correlation on nFFT >= n points has no wrap for s <= n-m
+        Complex[] x = FFT.transform(pad(longer, nFFT), TransformType.FORWARD);
+        Complex[] y = FFT.transform(pad(shorter, nFFT), TransformType.FORWARD);
+        for (int i = 0; i < nFFT; i++)
+            x[i] = x[i].multiply(y[i].conjugate());
+        Complex[] c = FFT.transform(x, TransformType.INVERSE);
+        double[] products = new double[nShift];
+        for (int s = 0; s < nShift; s++)
+            products[s] = c[s].getReal();
+        return products;
+    }
+
+    private static double[] directDotProducts(double[] longer, double[] shorter) {
+        double[] products = new double[longer.length - shorter.length + 1];
+        for (int s = 0; s < products.length; s++) {
+            double product = 0;
+            for (int j = 0; j < shorter.length; j++)
+                product += shorter[j] * longer[j + s];
+            products[s] = product;
+        }
+        return products;
+    }
+
+    /**
+     * @param longer series x
+     * @param m      length of the window
+     * @return e(s) = &Sigma;<sub>j&lt;m</sub> x<sub>j+s</sub><sup>2</sup> (s =
+     * 0, ..., n-m). It is exactly 0 for windows of no signal.
+     */
+    public static double[] energies(double[] longer, int m) {
+        int n = longer.length;
+        if (m == 0 || n < m) throw new IllegalArgumentException("Invalid lengths " + n + " " + m);
+        double[] energies = new double[n - m + 1];
+        double energy = 0;
+        double max = 0;
+        for (int s = 0; s < energies.length; s++) {
+            // summed up again every m shifts so that round-off does not accumulate; still O(n)
+            if (s % m == 0) {
+                energy = 0;
+                for (int j = 0; j < m; j++)
+                    energy += longer[s + j] * longer[s + j];
+            } else energy += longer[s + m - 1] * longer[s + m - 1] - longer[s - 1] * longer[s - 1];
+            energies[s] = energy;
+            max = Math.max(max, energy);
+        }
+        // cancellation in the running sum leaves residuals comparable to small energies
+        int nonzero = 0;
+        for (int s = 0; s < energies.length; s++) {
+            if (s == 0) {
+                for (int j = 0; j < m; j++)
+                    if (longer[j] != 0) nonzero++;
+            } else nonzero += (longer[s + m - 1] != 0 ? 1 : 0) - (longer[s - 1] != 0 ? 1 : 0);
+            if (max * ENERGY_EPSILON <= energies[s]) continue;
+            energy = 0;
+            if (nonzero != 0) for (int j = 0; j < m; j++)
+                energy += longer[s + j] * longer[s + j];
+            energies[s] = energy;
+        }
+        return energies;
+    }
+
+    /**
+     * @param longer  series x
+     * @param shorter series y, must not be longer than x
+     * @return c(s)/(|x<sub>s</sub>||y|), the correlation coefficient of y and
+     * the part of x from s (s = 0, ..., n-m). 0 where e(s) or |y| is 0.
+     */
+    public static double[] normalizedCorrelations(double[] longer, double[] shorter) {
+        double[] correlations = dotProducts(longer, shorter);
+        double[] energies = energies(longer, shorter.length);
+        double norm = 0;
+        for (double y : shorter)
+            norm += y * y;
+        norm = Math.sqrt(norm);
+        for (int s = 0; s < correlations.length; s++)
+            correlations[s] = energies[s] == 0 || norm == 0 ? 0 : correlations[s] / Math.sqrt(energies[s]) / norm;
+        return correlations;
+    }
+
+    private static double[] pad(double[] series, int length) {
+        double[] padded = new double[length];
+        System.arraycopy(series, 0, padded, 0, series.length);
+        return padded;
+    }
+}
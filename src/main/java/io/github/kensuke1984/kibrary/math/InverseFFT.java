@@ -0,0 +1,229 @@
+package io.github.kensuke1984.kibrary.math;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverse fast Fourier transform of a spectrum of a real time series.
+ * <p>
+ * Spectra are given as interleaved arrays (re<sub>0</sub>, im<sub>0</sub>, re<sub>1</sub>, im<sub>1</sub>,...), and
+ * no {@link org.apache.commons.math3.complex.Complex} is created. The output is same as the real part of
+ * {@link org.apache.commons.math3.transform.FastFourierTransformer} (STANDARD, INVERSE) for the hermitian extension
+ * of the spectrum, computed by a complex transform of the half length. {@link #toSpectrum(double[])} is the forward
+ * transform of a real time series by the same kernel.
+ * <p>
+ * Twiddle factors are computed once for each length and shared. An instance holds a work buffer, therefore it must be
+ * used in one thread. {@link #getInstance(int)} gives an instance for the current thread.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.3
+ */
+public final class InverseFFT {
+
+    /**
+     * n &rarr; {cos(2&pi;k/n), sin(2&pi;k/n)} (k = 0, ..., n/2-1)
+     */
+    private static final Map<Integer, double[][]> TWIDDLES = new ConcurrentHashMap<>();
+
+    /**
+     * n &rarr; bit reversed indices of n/2
+     */
+    private static final Map<Integer, int[]> BIT_REVERSALS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Map<Integer, InverseFFT>> INSTANCES = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * @param n length of time series (must be a power of 2 and at least 2)
+     * @return an instance for n in the current thread
+     */
+    public static InverseFFT getInstance(int n) {
+        return INSTANCES.get().computeIfAbsent(n, InverseFFT::new);
+    }
+
+    /**
+     * length of the time series
+     */
+    private final int N;
+
+    private final double[] COS;
+
+    private final double[] SIN;
+
+    private final int[] BIT_REVERSAL;
+
+    /**
+     * interleaved work buffer for the transform of the half length
+     */
+    private final double[] BUFFER;
+
+    private InverseFFT(int n) {
+        if (n < 2 || Integer.bitCount(n) != 1) throw new IllegalArgumentException(n + " is not a power of 2");
+        N = n;
+        double[][] twiddle = TWIDDLES.computeIfAbsent(n, InverseFFT::computeTwiddle);
+        COS = twiddle[0];
+        SIN = twiddle[1];
+        BIT_REVERSAL = BIT_REVERSALS.computeIfAbsent(n, k -> computeBitReversal(k / 2));
+        BUFFER = new double[n];
+    }
+
+    private static double[][] computeTwiddle(int n) {
+        double[][] twiddle = new double[2][n / 2];
+        for (int k = 0; k < n / 2; k++) {
+            double theta = 2 * Math.PI * k / n;
+            twiddle[0][k] = Math.cos(theta);
+            twiddle[1][k] = Math.sin(theta);
+        }
+        return twiddle;
+    }
+
+    private static int[] computeBitReversal(int m) {
+        int[] reversal = new int[m];
+        int bits = Integer.numberOfTrailingZeros(m);
+        for (int i = 0; i < m; i++)
+            reversal[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        return reversal;
+    }
+
+    /**
+     * @return length of time series
+     */
+    public int getN() {
+        return N;
+    }
+
+    /**
+     * x<sub>t</sub> = 1/n &sum;<sub>k</sub> X<sub>k</sub> exp(2&pi;ikt/n) where X<sub>n-k</sub> = X<sub>k</sub>*.
+     * X<sub>k</sub> for np &lt; k &le; n/2 are 0.
+     *
+     * @param spectrum interleaved X<sub>0</sub>, ..., X<sub>np</sub> (the length is 2(np+1))
+     * @param np       the number of steps in the spectrum (np &le; n/2)
+     * @param x        array for the time series (the length is n) to be overwritten
+     * @return x
+     */
+    public double[] toTimeSeries(double[] spectrum, int np, double[] x) {
+        int m = N / 2;
+        if (m < np) throw new IllegalArgumentException("np " + np + " is larger than n/2 " + m);
+        if (x.length != N) throw new IllegalArgumentException("The length of x must be " + N);
+        // X_k and X_{m-k} give X_k(even) + i X_k(odd)
+        for (int k = 0; k < m; k++) {
+            double reK = k <= np ? spectrum[2 * k] : 0;
+            double imK = k == 0 || np < k ? 0 : spectrum[2 * k + 1];
+            int l = m - k;
+            double reL = l <= np ? spectrum[2 * l] : 0;
+            double imL = l == m || np < l ? 0 : spectrum[2 * l + 1];
+            double reEven = 0.5 * (reK + reL);
+            double imEven = 0.5 * (imK - imL);
+            double reDiff = 0.5 * (reK - reL);
+            double imDiff = 0.5 * (imK + imL);
+            // odd = diff * exp(2 pi i k / n)
+            double reOdd = reDiff * COS[k] - imDiff * SIN[k];
+            double imOdd = reDiff * SIN[k] + imDiff * COS[k];
+            int j = 2 * BIT_REVERSAL[k];
+            BUFFER[j] = reEven - imOdd;
+            BUFFER[j + 1] = imEven + reOdd;
+        }
+        transformHalf();
+        for (int i = 0; i < m; i++) {
+            x[2 * i] = BUFFER[2 * i] / m;
+            x[2 * i + 1] = BUFFER[2 * i + 1] / m;
+        }
+        return x;
+    }
+
+    /**
+     * @param spectrum interleaved X<sub>0</sub>, ..., X<sub>np</sub> (the length is 2(np+1))
+     * @param np       the number of steps in the spectrum (np &le; n/2)
+     * @return the time series
+     * @see #toTimeSeries(double[], int, double[])
+     */
+    public double[] toTimeSeries(double[] spectrum, int np) {
+        return toTimeSeries(spectrum, np, new double[N]);
+    }
+
+    /**
+     * X<sub>k</sub> = &sum;<sub>t</sub> x<sub>t</sub> exp(-2&pi;ikt/n) (k = 0, ..., n/2) of a real time series, i.e.
+     * {@link #toTimeSeries(double[], int)} with np = n/2 gives x back. It is computed by the same transform of the
+     * half length.
+     *
+     * @param x time series (the length is n)
+     * @return interleaved X<sub>0</sub>, ..., X<sub>n/2</sub> (the length is n+2)
+     */
+    public double[] toSpectrum(double[] x) {
+        int m = N / 2;
+        if (x.length != N) throw new IllegalArgumentException("The length of x must be " + N);
+        // z_j = x_2j + i x_2j+1, conjugated for the transform with the opposite sign
+        for (int k = 0; k < m; k++) {
+            int j = 2 * BIT_REVERSAL[k];
+            BUFFER[j] = x[2 * k];
+            BUFFER[j + 1] = -x[2 * k + 1];
+        }
+        transformHalf();
+        double[] spectrum = new double[N + 2];
+        for (int k = 0; k <= m; k++) {
+            // Z_k and Z_{m-k}* (Z_m = Z_0) after conjugating back
+            int p = 2 * (k % m);
+            int q = 2 * ((m - k) % m);
+            double reK = BUFFER[p];
+            double imK = -BUFFER[p + 1];
+            double reL = BUFFER[q];
+            double imL = BUFFER[q + 1];
+            // even = (Z_k + Z_{m-k}*)/2, odd = (Z_k - Z_{m-k}*)/2i
+            double reEven = 0.5 * (reK + reL);
+            double imEven = 0.5 * (imK + imL);
+            double reOdd = 0.5 * (imK - imL);
+            double imOdd = -0.5 * (reK - reL);
+            // X_k = even + exp(-2 pi i k / n) odd
+            double cos = k < m ? COS[k] : -1;
+            double sin = k < m ? -SIN[k] : 0;
+            spectrum[2 * k] = reEven + reOdd * cos - imOdd * sin;
+            spectrum[2 * k + 1] = imEven + reOdd * sin + imOdd * cos;
+        }
+        return spectrum;
+    }
+
+    /**
+     * Unnormalized complex transform z<sub>j</sub> = &sum;<sub>k</sub> z<sub>k</sub> exp(2&pi;ijk/(n/2)) of the
+     * length n/2 in place. It is the kernel of {@link #toTimeSeries(double[], int, double[])} without the real
+     * spectrum symmetry.
+     *
+     * @param z interleaved complex values z<sub>0</sub>, ..., z<sub>n/2-1</sub> (the length is n) to be overwritten
+     */
+    void transformComplex(double[] z) {
+        int m = N / 2;
+        if (z.length != N) throw new IllegalArgumentException("The length of z must be " + N);
+        for (int k = 0; k < m; k++) {
+            int j = 2 * BIT_REVERSAL[k];
+            BUFFER[j] = z[2 * k];
+            BUFFER[j + 1] = z[2 * k + 1];
+        }
+        transformHalf();
+        System.arraycopy(BUFFER, 0, z, 0, N);
+    }
+
+    /**
+     * Unnormalized inverse transform of the bit reversed BUFFER of the half length.
+     */
+    private void transformHalf() {
+        int m = N / 2;
+        for (int size = 2; size <= m; size *= 2) {
+            int half = size / 2;
+            // exp(2 pi i j / size) = exp(2 pi i (j * n / size) / n)
+            int step = N / size;
+            for (int start = 0; start < m; start += size)
+                for (int j = 0; j < half; j++) {
+                    double cos = COS[j * step];
+                    double sin = SIN[j * step];
+                    int p = 2 * (start + j);
+                    int q = p + size;
+                    double re = BUFFER[q] * cos - BUFFER[q + 1] * sin;
+                    double im = BUFFER[q] * sin + BUFFER[q + 1] * cos;
+                    BUFFER[q] = BUFFER[p] - re;
+                    BUFFER[q + 1] = BUFFER[p + 1] - im;
+                    BUFFER[p] += re;
+                    BUFFER[p + 1] += im;
+                }
+        }
+    }
+
+}
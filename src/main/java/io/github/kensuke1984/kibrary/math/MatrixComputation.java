@@ -3,6 +3,7 @@ package io.github.kensuke1984.kibrary.math;
 import java.util.stream.IntStream;
 
 import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
@@ -12,14 +13,33 @@ import io.github.kensuke1984.kibrary.util.Utilities;
 
 /**
  * Computations of matrix and vector
+ * <p>
+ * Matrices backed by arrays ({@link Array2DRowRealMatrix} and {@link ColumnMajorMatrix}) are computed by kernels
+ * reading the arrays directly. A<sup>T</sup>A is computed block by block, and the blocks are computed in parallel.
  * 
- * 
- * @version 0.0.2.1
+ * @version 0.0.4
  * @author Kensuke Konishi
  */
 class MatrixComputation {
 
+	/**
+	 * The number of columns of A in a block of A<sup>T</sup>A
+	 */
+	private static final int COLUMN_BLOCK = 64;
+
+	/**
+	 * The number of rows of A read at once for a block of A<sup>T</sup>A. Two sets of columns in a block of this
+	 * height stay in the cache.
+	 */
+	private static final int ROW_BLOCK = 256;
+
+	/**
+	 * The number of rows in a task for Av
+	 */
+	private static final int OPERATE_BLOCK = 4096;
+
 	public static Matrix computeAtA(RealMatrix a) {
+		if (a instanceof Array2DRowRealMatrix) return computeAtA(((Array2DRowRealMatrix) a).getDataRef());
 		long start = System.nanoTime();
 		System.err.print("Computing matrix multiplication AtA");
 		int n = a.getColumnDimension();
@@ -36,7 +56,176 @@ class MatrixComputation {
 		return ata;
 	}
 
+	/**
+	 * @param a
+	 *            rows of A
+	 * @return A<sup>T</sup>A
+	 */
+	static Matrix computeAtA(double[][] a) {
+		long start = System.nanoTime();
+		System.err.print("Computing matrix multiplication AtA");
+		int n = a.length == 0 ? 0 : a[0].length;
+		double[][] ata = new double[n][n];
+		int nBlock = (n + COLUMN_BLOCK - 1) / COLUMN_BLOCK;
+		IntStream.range(0, nBlock * nBlock).parallel().filter(b -> b / nBlock <= b % nBlock).forEach(b -> {
+			int i0 = b / nBlock * COLUMN_BLOCK;
+			int i1 = Math.min(i0 + COLUMN_BLOCK, n);
+			int j0 = b % nBlock * COLUMN_BLOCK;
+			int j1 = Math.min(j0 + COLUMN_BLOCK, n);
+			double[][] block = new double[i1 - i0][j1 - j0];
+			for (double[] row : a)
+				for (int i = i0; i < i1; i++) {
+					double aki = row[i];
+					if (aki == 0)
+						continue;
+					double[] blockRow = block[i - i0];
+					for (int j = Math.max(i, j0); j < j1; j++)
+						blockRow[j - j0] += aki * row[j];
+				}
+			fillSymmetric(ata, block, i0, j0);
+		});
+		System.err.println(",  it took " + Utilities.toTimeString(System.nanoTime() - start));
+		return new Matrix(ata, false);
+	}
+
+	/**
+	 * @param a
+	 *            columns of A
+	 * @param nRow
+	 *            the number of rows of A
+	 * @return A<sup>T</sup>A
+	 */
+	static Matrix computeAtA(double[][] a, int nRow) {
+		int nColumn = a.length;
+		long start = System.nanoTime();
+		System.err.print("Computing matrix multiplication AtA");
+		double[][] ata = new double[nColumn][nColumn];
+		int nBlock = (nColumn + COLUMN_BLOCK - 1) / COLUMN_BLOCK;
+		IntStream.range(0, nBlock * nBlock).parallel().filter(b -> b / nBlock <= b % nBlock).forEach(b -> {
+			int i0 = b / nBlock * COLUMN_BLOCK;
+			int i1 = Math.min(i0 + COLUMN_BLOCK, nColumn);
+			int j0 = b % nBlock * COLUMN_BLOCK;
+			int j1 = Math.min(j0 + COLUMN_BLOCK, nColumn);
+			double[][] block = new double[i1 - i0][j1 - j0];
+			for (int k0 = 0; k0 < nRow; k0 += ROW_BLOCK) {
+				int k1 = Math.min(k0 + ROW_BLOCK, nRow);
+				for (int i = i0; i < i1; i++) {
+					double[] ci = a[i];
+					double[] blockRow = block[i - i0];
+					int j = Math.max(i, j0);
+					// four columns at once so that the column i is read once for them
+					for (; j + 3 < j1; j += 4) {
+						double[] cj0 = a[j];
+						double[] cj1 = a[j + 1];
+						double[] cj2 = a[j + 2];
+						double[] cj3 = a[j + 3];
+						double value0 = 0;
+						double value1 = 0;
+						double value2 = 0;
+						double value3 = 0;
+						for (int k = k0; k < k1; k++) {
+							double aki = ci[k];
+							value0 += aki * cj0[k];
+							value1 += aki * cj1[k];
+							value2 += aki * cj2[k];
+							value3 += aki * cj3[k];
+						}
+						blockRow[j - j0] += value0;
+						blockRow[j + 1 - j0] += value1;
+						blockRow[j + 2 - j0] += value2;
+						blockRow[j + 3 - j0] += value3;
+					}
+					for (; j < j1; j++) {
+						double[] cj = a[j];
+						double value = 0;
+						for (int k = k0; k < k1; k++)
+							value += ci[k] * cj[k];
+						blockRow[j - j0] += value;
+					}
+				}
+			}
+			fillSymmetric(ata, block, i0, j0);
+		});
+		System.err.println(",  it took " + Utilities.toTimeString(System.nanoTime() - start));
+		return new Matrix(ata, false);
+	}
+
+	/**
+	 * Puts the upper part (j &ge; i) of a block starting at (i0, j0) into the symmetric matrix.
+	 */
+	private static void fillSymmetric(double[][] ata, double[][] block, int i0, int j0) {
+		for (int i = 0; i < block.length; i++)
+			for (int j = Math.max(i0 + i, j0) - j0; j < block[i].length; j++) {
+				ata[i0 + i][j0 + j] = block[i][j];
+				ata[j0 + j][i0 + i] = block[i][j];
+			}
+	}
+
+	/**
+	 * @param a
+	 *            columns of A
+	 * @param nRow
+	 *            the number of rows of A
+	 * @param m
+	 *            vector to operate
+	 * @return Am
+	 */
+	static double[] operate(double[][] a, int nRow, double[] m) {
+		int nColumn = a.length;
+		double[] am = new double[nRow];
+		int nBlock = (nRow + OPERATE_BLOCK - 1) / OPERATE_BLOCK;
+		IntStream.range(0, nBlock).parallel().forEach(b -> {
+			int k0 = b * OPERATE_BLOCK;
+			int k1 = Math.min(k0 + OPERATE_BLOCK, nRow);
+			for (int j = 0; j < nColumn; j++) {
+				double mj = m[j];
+				if (mj == 0)
+					continue;
+				double[] cj = a[j];
+				for (int k = k0; k < k1; k++)
+					am[k] += cj[k] * mj;
+			}
+		});
+		return am;
+	}
+
+	/**
+	 * @param v
+	 *            vector to premultiply
+	 * @param a
+	 *            columns of A
+	 * @param nRow
+	 *            the number of rows of A
+	 * @return v<sup>T</sup>A (=A<sup>T</sup>v)
+	 */
+	static double[] preMultiply(double[] v, double[][] a, int nRow) {
+		double[] atv = new double[a.length];
+		IntStream.range(0, a.length).parallel().forEach(j -> {
+			double value = 0;
+			double[] cj = a[j];
+			for (int k = 0; k < nRow; k++)
+				value += cj[k] * v[k];
+			atv[j] = value;
+		});
+		return atv;
+	}
+
 	public static RealVector operate(RealMatrix a, RealVector m) {
+		if (a instanceof Array2DRowRealMatrix) {
+			double[][] rows = ((Array2DRowRealMatrix) a).getDataRef();
+			double[] v = m.toArray();
+			if (a.getColumnDimension() != v.length)
+				throw new RuntimeException("dimension invalid");
+			double[] am = new double[rows.length];
+			IntStream.range(0, rows.length).parallel().forEach(i -> {
+				double value = 0;
+				double[] row = rows[i];
+				for (int k = 0; k < v.length; k++)
+					value += row[k] * v[k];
+				am[i] = value;
+			});
+			return new ArrayRealVector(am, false);
+		}
 		int n = a.getRowDimension();
 		int length = m.getDimension();
 		if (a.getColumnDimension() != length)
@@ -52,6 +241,28 @@ class MatrixComputation {
 	}
 
 	public static RealVector premultiply(RealVector v, RealMatrix a) {
+		if (a instanceof Array2DRowRealMatrix) {
+			double[][] rows = ((Array2DRowRealMatrix) a).getDataRef();
+			double[] u = v.toArray();
+			if (u.length != a.getRowDimension())
+				throw new RuntimeException("dimension invalid");
+			int n = a.getColumnDimension();
+			double[] atv = new double[n];
+			int nBlock = (n + COLUMN_BLOCK - 1) / COLUMN_BLOCK;
+			IntStream.range(0, nBlock).parallel().forEach(b -> {
+				int j0 = b * COLUMN_BLOCK;
+				int j1 = Math.min(j0 + COLUMN_BLOCK, n);
+				for (int k = 0; k < u.length; k++) {
+					double uk = u[k];
+					if (uk == 0)
+						continue;
+					double[] row = rows[k];
+					for (int j = j0; j < j1; j++)
+						atv[j] += uk * row[j];
+				}
+			});
+			return new ArrayRealVector(atv, false);
+		}
 		int n = a.getColumnDimension();
 		int length = v.getDimension();
 		if (length != a.getRowDimension())
@@ -6,13 +6,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
@@ -29,6 +30,7 @@ import io.github.kensuke1984.kibrary.timewindow.Timewindow;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformation;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformationFile;
 import io.github.kensuke1984.kibrary.util.EventFolder;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Station;
 import io.github.kensuke1984.kibrary.util.Trace;
 import io.github.kensuke1984.kibrary.util.Utilities;
@@ -37,6 +39,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACComponent;
 import io.github.kensuke1984.kibrary.util.sac.SACData;
 import io.github.kensuke1984.kibrary.util.sac.SACExtension;
 import io.github.kensuke1984.kibrary.util.sac.SACFileName;
+import io.github.kensuke1984.kibrary.util.sac.SACHeaderData;
 import io.github.kensuke1984.kibrary.util.sac.SACHeaderEnum;
 
 /**
@@ -47,7 +50,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACHeaderEnum;
  * {@link TimewindowInformationFile} necessary.
  *
  * @author Kensuke Konishi
- * @version 0.1.1.2
+ * @version 0.1.1.4
  */
 public class DataSelection implements Operation {
     public static void writeDefaultPropertiesFile() throws IOException {
@@ -196,7 +199,6 @@ public class DataSelection implements Operation {
 
     private class Worker implements Runnable {
 
-        private Set<SACFileName> obsFiles;
         private EventFolder obsEventDirectory;
         private EventFolder synEventDirectory;
 
@@ -204,7 +206,6 @@ public class DataSelection implements Operation {
 
         private Worker(EventFolder ed) throws IOException {
             obsEventDirectory = ed;
-            (obsFiles = ed.sacFileSet()).removeIf(n -> !n.isOBS());
             id = ed.getGlobalCMTID();
             synEventDirectory = new EventFolder(synPath.resolve(ed.getName()));
             if (!synEventDirectory.exists()) return;
@@ -231,9 +232,12 @@ public class DataSelection implements Operation {
                 else lpw.println("#not convolved");
                 lpw.println("#s e c use ratio(syn/obs){abs max min} variance correlation");
 
-                for (SACFileName obsName : obsFiles) {
+                // headers are checked before reading waveforms
+                Map<SACFileName, SACHeaderData> obsHeaders = obsEventDirectory.sacHeaderMap();
+                Map<SACFileName, SACHeaderData> synHeaders = synEventDirectory.sacHeaderMap();
+                for (SACFileName obsName : obsHeaders.keySet()) {
                     // check components
-                    if (!components.contains(obsName.getComponent())) continue;
+                    if (!obsName.isOBS() || !components.contains(obsName.getComponent())) continue;
                     String stationName = obsName.getStationName();
                     SACComponent component = obsName.getComponent();
                     // double timeshift = 0;
@@ -241,15 +245,13 @@ public class DataSelection implements Operation {
                             SACExtension.valueOfSynthetic(component);
 
                     SACFileName synName = new SACFileName(synEventDirectory, stationName + "." + id + "." + synExt);
-                    if (!synName.exists()) continue;
+                    SACHeaderData obsHeader = obsHeaders.get(obsName);
+                    SACHeaderData synHeader = synHeaders.get(synName);
+                    if (synHeader == null) continue;
 
-                    // synthetic sac
-                    SACData obsSac = obsName.read();
-                    SACData synSac = synName.read();
-
-                    Station station = obsSac.getStation();
+                    Station station = obsHeader.getStation();
                     //
-                    if (synSac.getValue(SACHeaderEnum.DELTA) != obsSac.getValue(SACHeaderEnum.DELTA)) continue;
+                    if (synHeader.getValue(SACHeaderEnum.DELTA) != obsHeader.getValue(SACHeaderEnum.DELTA)) continue;
 
                     // Pickup a time window of obsName
                     Set<TimewindowInformation> windowInformations = sourceTimewindowInformationSet.stream()
@@ -258,6 +260,10 @@ public class DataSelection implements Operation {
 
                     if (windowInformations.isEmpty()) continue;
 
+                    // synthetic sac
+                    SACData obsSac = obsName.read();
+                    SACData synSac = synName.read();
+
                     for (TimewindowInformation window : windowInformations) {
                         RealVector synU = cutSAC(synSac, window);
                         RealVector obsU = cutSAC(obsSac, shift(window));
@@ -362,19 +368,10 @@ public class DataSelection implements Operation {
 
     @Override
     public void run() throws Exception {
-        int N_THREADS = Runtime.getRuntime().availableProcessors();
-
-        ExecutorService exec = Executors.newFixedThreadPool(N_THREADS);
-
+        List<Worker> workers = new ArrayList<>();
         for (EventFolder eventDirectory : eventDirs)
-            exec.execute(new Worker(eventDirectory));
-
-        exec.shutdown();
-        while (!exec.isTerminated()) try {
-            Thread.sleep(1000);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+            workers.add(new Worker(eventDirectory));
+        JobScheduler.invokeAll(workers);
 
         System.err.println();
         output();
@@ -11,8 +11,6 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import io.github.kensuke1984.kibrary.Operation;
@@ -22,6 +20,7 @@ import io.github.kensuke1984.kibrary.butterworth.ButterworthFilter;
 import io.github.kensuke1984.kibrary.butterworth.HighPassFilter;
 import io.github.kensuke1984.kibrary.butterworth.LowPassFilter;
 import io.github.kensuke1984.kibrary.util.EventFolder;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Utilities;
 import io.github.kensuke1984.kibrary.util.sac.SACComponent;
 import io.github.kensuke1984.kibrary.util.sac.SACData;
@@ -32,7 +31,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACFileName;
  * できたファイルはoutDir下にイベントフォルダを作りそこにつくる sacのUSER0とUSER1に最短周期、最長周期の情報を書き込む
  *
  * @author Kensuke Konishi
- * @version 0.2.2.1.1
+ * @version 0.2.2.1.2
  */
 public class FilterDivider implements Operation {
 
@@ -244,12 +243,7 @@ public class FilterDivider implements Operation {
 
         outPath = workPath.resolve("filtered" + Utilities.getTemporaryString());
         Files.createDirectories(outPath);
-        ExecutorService es = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        events.stream().map(this::process).forEach(es::submit);
-        es.shutdown();
-        while (!es.isTerminated()) {
-            Thread.sleep(100);
-        }
+        JobScheduler.invokeAll(events.stream().map(this::process).collect(Collectors.toList()));
     }
 
     @Override
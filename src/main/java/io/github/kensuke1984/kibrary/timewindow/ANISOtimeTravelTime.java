@@ -0,0 +1,205 @@
+package io.github.kensuke1984.kibrary.timewindow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.github.kensuke1984.anisotime.ANISOtimeService;
+import io.github.kensuke1984.anisotime.Phase;
+import io.github.kensuke1984.anisotime.PolynomialStructure;
+import io.github.kensuke1984.anisotime.RaypathCatalog;
+
+/**
+ * Travel times computed in this process by {@link RaypathCatalog} instead of
+ * taup_time.
+ * <p>
+ * Travel times are memoized for each (event radius, epicentral distance on a
+ * grid, phase). For a distance between two grid points, the sorted arrivals
+ * on the grid points are linearly interpolated. If the numbers of the arrivals
+ * on the two points are different (e.g. near a caustic), the travel times for
+ * the distance are computed directly.
+ * <p>
+ * Instead of the grid, a {@link io.github.kensuke1984.anisotime.TravelTimeTable}
+ * of the catalog can be used. Then no raypath is computed for each distance.
+ * <p>
+ * Travel times can also be requested to a running {@link ANISOtimeService}
+ * (isotropic PREM), which keeps the catalog warm for many processes. Each
+ * thread has its own connection, so requests of threads run in parallel.
+ * <p>
+ * This class is <b>thread-safe</b>.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.4
+ */
+class ANISOtimeTravelTime implements Closeable {
+
+	private final RaypathCatalog CATALOG;
+
+	/**
+	 * [deg] interval of the grid of epicentral distances. If it is 0, travel
+	 * times are memoized for each input distance.
+	 */
+	private final double DISTANCE_STEP;
+
+	/**
+	 * if travel times are looked up in the tables of the catalog
+	 */
+	private final boolean USE_TABLE;
+
+	/**
+	 * If it is not null, travel times are requested to the service instead
+	 * of the catalog. A client serves one request at a time, so each thread
+	 * has its own.
+	 */
+	private final ThreadLocal<ANISOtimeService.Client> SERVICE;
+
+	/**
+	 * all the clients opened for {@link #SERVICE}
+	 */
+	private final Set<ANISOtimeService.Client> CLIENTS = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * (event radius, index of a distance, phase) &rarr; sorted travel times
+	 */
+	private final Map<List<Object>, double[]> CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * @param catalog
+	 *            to compute travel times
+	 * @param distanceStep
+	 *            [deg] interval of the grid of epicentral distances (0: no
+	 *            grid)
+	 */
+	ANISOtimeTravelTime(RaypathCatalog catalog, double distanceStep) {
+		if (distanceStep < 0)
+			throw new IllegalArgumentException("distanceStep must not be negative.");
+		CATALOG = catalog;
+		DISTANCE_STEP = distanceStep;
+		USE_TABLE = false;
+		SERVICE = null;
+	}
+
+	/**
+	 * Travel times for isotropic PREM are requested to the service.
+	 * 
+	 * @param servicePort
+	 *            port of a running service on the loopback address
+	 * @param distanceStep
+	 *            [deg] interval of the grid of epicentral distances (0: no
+	 *            grid)
+	 * @throws UncheckedIOException
+	 *             if the service is not available
+	 */
+	ANISOtimeTravelTime(int servicePort, double distanceStep) {
+		if (distanceStep < 0)
+			throw new IllegalArgumentException("distanceStep must not be negative.");
+		CATALOG = null;
+		DISTANCE_STEP = distanceStep;
+		USE_TABLE = false;
+		SERVICE = ThreadLocal.withInitial(() -> {
+			try {
+				ANISOtimeService.Client client = new ANISOtimeService.Client(servicePort);
+				CLIENTS.add(client);
+				return client;
+			} catch (IOException e) {
+				throw new UncheckedIOException("ANISOtimeService is not available.", e);
+			}
+		});
+		// checks the service
+		SERVICE.get();
+	}
+
+	/**
+	 * Travel times are looked up in
+	 * {@link RaypathCatalog#getTravelTimeTable(Phase, double)}.
+	 *
+	 * @param catalog
+	 *            to compute travel times
+	 */
+	ANISOtimeTravelTime(RaypathCatalog catalog) {
+		CATALOG = catalog;
+		DISTANCE_STEP = 0;
+		USE_TABLE = true;
+		SERVICE = null;
+	}
+
+	/**
+	 * @param eventR
+	 *            [km] radius of the source !!not depth from the surface!!
+	 * @param epicentralDistance
+	 *            [deg] target epicentral distance
+	 * @param phases
+	 *            to look for
+	 * @return travel times [s] of all the arrivals of the phases
+	 */
+	double[] computeTravelTimes(double eventR, double epicentralDistance, Set<Phase> phases) {
+		return phases.stream()
+				.flatMapToDouble(phase -> Arrays.stream(computeTravelTimes(eventR, epicentralDistance, phase)))
+				.toArray();
+	}
+
+	private double[] computeTravelTimes(double eventR, double epicentralDistance, Phase phase) {
+		if (USE_TABLE) {
+			double[] times = CATALOG.lookUpTime(phase, eventR, Math.toRadians(epicentralDistance));
+			Arrays.sort(times);
+			return times;
+		}
+		if (DISTANCE_STEP == 0)
+			return CACHE.computeIfAbsent(Arrays.asList(eventR, epicentralDistance, phase),
+					key -> search(eventR, epicentralDistance, phase));
+		double x = epicentralDistance / DISTANCE_STEP;
+		long index = (long) Math.floor(x);
+		double[] lower = onGrid(eventR, index, phase);
+		double ratio = x - index;
+		if (ratio == 0)
+			return lower;
+		double[] upper = onGrid(eventR, index + 1, phase);
+		if (lower.length != upper.length)
+			return search(eventR, epicentralDistance, phase);
+		double[] times = new double[lower.length];
+		for (int i = 0; i < times.length; i++)
+			times[i] = lower[i] + (upper[i] - lower[i]) * ratio;
+		return times;
+	}
+
+	private double[] onGrid(double eventR, long index, Phase phase) {
+		return CACHE.computeIfAbsent(Arrays.asList(eventR, index, phase),
+				key -> search(eventR, index * DISTANCE_STEP, phase));
+	}
+
+	private double[] search(double eventR, double epicentralDistance, Phase phase) {
+		if (SERVICE != null)
+			try {
+				return SERVICE.get().searchTime("iprem", PolynomialStructure.ISO_PREM.earthRadius() - eventR,
+						epicentralDistance, phase);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		double[] times = CATALOG.searchTime(phase, eventR, Math.toRadians(epicentralDistance));
+		Arrays.sort(times);
+		return times;
+	}
+
+	/**
+	 * Closes all the clients of the service.
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for (ANISOtimeService.Client client : CLIENTS)
+			try {
+				client.close();
+			} catch (IOException e) {
+				exception = e;
+			}
+		CLIENTS.clear();
+		if (exception != null)
+			throw exception;
+	}
+
+}
@@ -16,7 +16,9 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import io.github.kensuke1984.anisotime.ANISOtimeService;
 import io.github.kensuke1984.anisotime.Phase;
+import io.github.kensuke1984.anisotime.RaypathCatalog;
 import io.github.kensuke1984.kibrary.Operation;
 import io.github.kensuke1984.kibrary.external.TauPPhase;
 import io.github.kensuke1984.kibrary.external.TauPTimeReader;
@@ -24,8 +26,8 @@ import io.github.kensuke1984.kibrary.util.Station;
 import io.github.kensuke1984.kibrary.util.Utilities;
 import io.github.kensuke1984.kibrary.util.globalcmt.GlobalCMTID;
 import io.github.kensuke1984.kibrary.util.sac.SACComponent;
-import io.github.kensuke1984.kibrary.util.sac.SACData;
 import io.github.kensuke1984.kibrary.util.sac.SACFileName;
+import io.github.kensuke1984.kibrary.util.sac.SACHeaderData;
 import io.github.kensuke1984.kibrary.util.sac.SACHeaderEnum;
 
 /**
@@ -33,14 +35,17 @@ import io.github.kensuke1984.kibrary.util.sac.SACHeaderEnum;
  * 
  * Create an information file about timewindows. It looks for observed waveforms
  * in event folders under the working directory. For all the waveforms,
- * timewindows are computed by TauP.
+ * timewindows are computed by TauP, or by ANISOtime in this process if
+ * travelTimeEngine is anisotime or anisotimeTable, or by a running
+ * {@link io.github.kensuke1984.anisotime.ANISOtimeService} if it is
+ * anisotimeService.
  * 
  * 
  * It creates a window for each given phase and exphase with front and rear
  * parts. Overlapped part between those are abandoned. Start and end time of the
  * window is set to integer multiple of DELTA in SAC files.
  * 
- * @version 0.2.2.2
+ * @version 0.2.7
  * 
  * @author Kensuke Konishi
  * 
@@ -70,6 +75,15 @@ public class TimewindowMaker implements Operation {
 			pw.println("#frontShift");
 			pw.println("##double time after last phase. If it is 60, then 60 s after arrival (0)");
 			pw.println("#rearShift");
+			pw.println("##Engine for travel times, taup (taup_time in PATH), anisotime (isotropic PREM)");
+			pw.println("##anisotimeTable (isotropic PREM, looked up in precomputed tables)");
+			pw.println("##or anisotimeService (isotropic PREM, requested to ANISOtimeService running locally) (taup)");
+			pw.println("#travelTimeEngine");
+			pw.println("##int Port of ANISOtimeService for anisotimeService (23032)");
+			pw.println("#servicePort");
+			pw.println("##double [deg] Grid interval of epicentral distances for anisotime (0.1)");
+			pw.println("##Travel times are interpolated between grid points. If it is 0, no grid is used.");
+			pw.println("#distanceStep");
 		}
 		System.err.println(outPath + " is created.");
 	}
@@ -87,6 +101,12 @@ public class TimewindowMaker implements Operation {
 			property.setProperty("exPhases", "sS");
 		if (!property.containsKey("usePhases"))
 			property.setProperty("usePhases", "S");
+		if (!property.containsKey("travelTimeEngine"))
+			property.setProperty("travelTimeEngine", "taup");
+		if (!property.containsKey("distanceStep"))
+			property.setProperty("distanceStep", "0.1");
+		if (!property.containsKey("servicePort"))
+			property.setProperty("servicePort", String.valueOf(ANISOtimeService.DEFAULT_PORT));
 	}
 
 	private Path workPath;
@@ -108,6 +128,24 @@ public class TimewindowMaker implements Operation {
 
 		frontShift = Double.parseDouble(property.getProperty("frontShift"));
 		rearShift = Double.parseDouble(property.getProperty("rearShift"));
+		switch (property.getProperty("travelTimeEngine")) {
+		case "taup":
+			break;
+		case "anisotime":
+			anisotime = new ANISOtimeTravelTime(RaypathCatalog.ISO_PREM,
+					Double.parseDouble(property.getProperty("distanceStep")));
+			break;
+		case "anisotimeTable":
+			anisotime = new ANISOtimeTravelTime(RaypathCatalog.ISO_PREM);
+			break;
+		case "anisotimeService":
+			anisotime = new ANISOtimeTravelTime(Integer.parseInt(property.getProperty("servicePort")),
+					Double.parseDouble(property.getProperty("distanceStep")));
+			break;
+		default:
+			throw new IllegalArgumentException(
+					"travelTimeEngine must be taup, anisotime, anisotimeTable or anisotimeService.");
+		}
 
 	}
 
@@ -144,6 +182,11 @@ public class TimewindowMaker implements Operation {
 	 */
 	private Set<Phase> usePhases;
 
+	/**
+	 * If it is null, taup_time is used.
+	 */
+	private ANISOtimeTravelTime anisotime;
+
 	private Path outputPath;
 	private Set<TimewindowInformation> timewindowSet;
 
@@ -180,20 +223,27 @@ public class TimewindowMaker implements Operation {
 
 	@Override
 	public void run() throws Exception {
-		Utilities.runEventProcess(workPath, eventDir -> {
-			try {
-				eventDir.sacFileSet().stream().filter(sfn -> sfn.isSYN() && components.contains(sfn.getComponent()))
-						.forEach(sfn -> {
-					try {
-						makeTimeWindow(sfn);
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
-				});
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		} , 10, TimeUnit.HOURS);
+		try {
+			Utilities.runEventProcess(workPath, eventDir -> {
+				try {
+					eventDir.sacHeaderMap().entrySet().stream()
+							.filter(entry -> entry.getKey().isSYN()
+									&& components.contains(entry.getKey().getComponent()))
+							.forEach(entry -> {
+						try {
+							makeTimeWindow(entry.getKey(), entry.getValue());
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
+					});
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			} , 10, TimeUnit.HOURS);
+		} finally {
+			if (anisotime != null)
+				anisotime.close();
+		}
 
 		if (timewindowSet.isEmpty())
 			System.err.println("No timewindow is created");
@@ -201,23 +251,34 @@ public class TimewindowMaker implements Operation {
 			TimewindowInformationFile.write(timewindowSet, outputPath);
 	}
 
-	private void makeTimeWindow(SACFileName sacFileName) throws IOException {
-		SACData sacFile = sacFileName.read();
+	/**
+	 * Only the header values are used, so the waveform is not read.
+	 */
+	private void makeTimeWindow(SACFileName sacFileName, SACHeaderData sacFile) throws IOException {
 		// 震源深さ radius
 		double eventR = 6371 - sacFile.getValue(SACHeaderEnum.EVDP);
 		// 震源観測点ペアの震央距離
 		double epicentralDistance = sacFile.getValue(SACHeaderEnum.GCARC);
 
-		Set<TauPPhase> usePhases = TauPTimeReader.getTauPPhase(eventR, epicentralDistance, this.usePhases);
-		Set<TauPPhase> exPhases = this.exPhases == null ? Collections.emptySet()
-				: TauPTimeReader.getTauPPhase(eventR, epicentralDistance, this.exPhases);
+		double[] phaseTime;
+		double[] exPhaseTime;
+		if (anisotime == null) {
+			Set<TauPPhase> usePhases = TauPTimeReader.getTauPPhase(eventR, epicentralDistance, this.usePhases);
+			Set<TauPPhase> exPhases = this.exPhases == null ? Collections.emptySet()
+					: TauPTimeReader.getTauPPhase(eventR, epicentralDistance, this.exPhases);
+			phaseTime = toTravelTime(usePhases);
+			exPhaseTime = toTravelTime(exPhases);
+		} else {
+			phaseTime = anisotime.computeTravelTimes(eventR, epicentralDistance, usePhases);
+			exPhaseTime = anisotime.computeTravelTimes(eventR, epicentralDistance, exPhases);
+		}
 
-		if (usePhases.isEmpty()) {
+		if (phaseTime.length == 0) {
 			writeInvalid(sacFileName);
 			return;
 		}
-		double[] phaseTime = toTravelTime(usePhases);
-		double[] exPhaseTime = exPhases.isEmpty() ? null : toTravelTime(exPhases);
+		if (exPhaseTime.length == 0)
+			exPhaseTime = null;
 		Timewindow[] windows = createTimeWindows(phaseTime, exPhaseTime);
 		// System.exit(0);
 		if (windows == null) {
@@ -6,6 +6,7 @@ import java.nio.file.CopyOption;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -13,12 +14,14 @@ import java.util.stream.Stream;
 
 import io.github.kensuke1984.kibrary.util.globalcmt.GlobalCMTID;
 import io.github.kensuke1984.kibrary.util.sac.SACFileName;
+import io.github.kensuke1984.kibrary.util.sac.SACHeaderData;
+import io.github.kensuke1984.kibrary.util.sac.SACHeaderIndex;
 
 /**
  * Utility for an event folder
  *
  * @author Kensuke Konishi
- * @version 0.0.8.4.1
+ * @version 0.0.8.5
  */
 
 public class EventFolder extends File {
@@ -96,4 +99,15 @@ public class EventFolder extends File {
         }
     }
 
+    /**
+     * Headers are read from the index ({@link SACHeaderIndex}) in this, and only
+     * the SAC files which are new or changed since the last time are read.
+     *
+     * @return <b>unmodifiable</b> Map of all SAC files in this and their headers
+     * @throws IOException if an I/O error occurs
+     */
+    public Map<SACFileName, SACHeaderData> sacHeaderMap() throws IOException {
+        return SACHeaderIndex.load(this);
+    }
+
 }
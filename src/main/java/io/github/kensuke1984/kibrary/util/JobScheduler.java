@@ -0,0 +1,204 @@
+package io.github.kensuke1984.kibrary.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Work-stealing pool shared by all the operations.
+ * <p>
+ * Instead of creating a thread pool and polling {@link java.util.concurrent.ExecutorService#isTerminated()}, use
+ * {@link #invokeAll(Collection)} which returns as soon as the tasks finish. The number of tasks running at once can
+ * be bounded, and progress can be reported after each task.
+ * <p>
+ * The threads are daemon threads, so wait for submitted tasks before the main thread ends. invokeAll does not block
+ * while submitting, and a task in this scheduler may call it; the pool adds a thread while the task waits.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.2
+ */
+public final class JobScheduler {
+
+    /**
+     * Receives the progress of tasks.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called after each task in a thread which ran it.
+         *
+         * @param nDone  the number of finished tasks
+         * @param nTasks the number of all the tasks
+         */
+        void progress(int nDone, int nTasks);
+    }
+
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors(), ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                    null, true);
+
+    private JobScheduler() {
+    }
+
+    /**
+     * @return the number of threads
+     */
+    public static int getParallelism() {
+        return POOL.getParallelism();
+    }
+
+    /**
+     * @param task to run
+     * @return future completed when the task finishes
+     */
+    public static CompletableFuture<Void> submit(Runnable task) {
+        return CompletableFuture.runAsync(task, POOL);
+    }
+
+    /**
+     * @param task to run
+     * @param <T>  type of the result
+     * @return future completed with the result of the task
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, POOL);
+    }
+
+    /**
+     * Runs all the tasks and waits for them. An exception in a task is printed and does not stop the others.
+     *
+     * @param tasks to run
+     * @return the number of tasks which threw exceptions
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static int invokeAll(Collection<? extends Runnable> tasks) throws InterruptedException {
+        return invokeAll(tasks, getParallelism());
+    }
+
+    /**
+     * Runs all the tasks and waits for them. An exception in a task is printed and does not stop the others.
+     *
+     * @param tasks       to run
+     * @param parallelism the maximum number of tasks running or waiting in the pool at once
+     * @return the number of tasks which threw exceptions
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static int invokeAll(Collection<? extends Runnable> tasks, int parallelism) throws InterruptedException {
+        Batch batch = new Batch(tasks, parallelism, null);
+        batch.await(Long.MAX_VALUE);
+        return batch.nFailed.get();
+    }
+
+    /**
+     * Runs all the tasks and waits for them. An exception in a task is printed and does not stop the others.
+     *
+     * @param tasks       to run
+     * @param parallelism the maximum number of tasks running or waiting in the pool at once
+     * @param listener    called after each task (may be null)
+     * @return the number of tasks which threw exceptions
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static int invokeAll(Collection<? extends Runnable> tasks, int parallelism, ProgressListener listener)
+            throws InterruptedException {
+        Batch batch = new Batch(tasks, parallelism, listener);
+        batch.await(Long.MAX_VALUE);
+        return batch.nFailed.get();
+    }
+
+    /**
+     * Runs all the tasks and waits for them at most the timeout. Tasks left after the timeout keep running.
+     *
+     * @param tasks   to run
+     * @param timeout the maximum time to wait
+     * @param unit    unit of the timeout
+     * @return if all the tasks finished within the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static boolean invokeAll(Collection<? extends Runnable> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return new Batch(tasks, getParallelism(), null).await(deadline);
+    }
+
+    /**
+     * At most parallelism tasks are in the pool at once. The first ones are submitted by the caller, and each
+     * finished task submits the next one, so nobody blocks until {@link #await(long)}.
+     */
+    private static class Batch implements ForkJoinPool.ManagedBlocker {
+        private final CountDownLatch latch;
+        private final AtomicInteger nDone = new AtomicInteger();
+        private final AtomicInteger nFailed = new AtomicInteger();
+        private final Iterator<? extends Runnable> iterator;
+        private final int nTasks;
+        private final ProgressListener listener;
+        /**
+         * deadline in {@link System#nanoTime()} of the current wait
+         */
+        private long deadline;
+
+        private Batch(Collection<? extends Runnable> tasks, int parallelism, ProgressListener listener) {
+            if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive.");
+            nTasks = tasks.size();
+            latch = new CountDownLatch(nTasks);
+            iterator = tasks.iterator();
+            this.listener = listener;
+            for (int i = 0; i < Math.min(parallelism, nTasks); i++)
+                submitNext();
+        }
+
+        private void submitNext() {
+            Runnable task;
+            synchronized (iterator) {
+                if (!iterator.hasNext()) return;
+                task = iterator.next();
+            }
+            POOL.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    nFailed.incrementAndGet();
+                    e.printStackTrace();
+                }
+                try {
+                    if (listener != null) listener.progress(nDone.incrementAndGet(), nTasks);
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                } finally {
+                    latch.countDown();
+                    submitNext();
+                }
+            });
+        }
+
+        /**
+         * Waits through {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}, so that a waiting worker of
+         * the pool is compensated and nested batches do not deadlock.
+         *
+         * @param deadline in {@link System#nanoTime()}, or {@link Long#MAX_VALUE} for no timeout
+         * @return if all the tasks finished
+         */
+        private boolean await(long deadline) throws InterruptedException {
+            this.deadline = deadline;
+            ForkJoinPool.managedBlock(this);
+            return isReleasable();
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (deadline == Long.MAX_VALUE) latch.await();
+            else latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return latch.getCount() == 0;
+        }
+    }
+
+}
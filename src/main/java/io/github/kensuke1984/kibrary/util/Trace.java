@@ -16,6 +16,7 @@ import org.apache.commons.math3.linear.LUDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 
+import io.github.kensuke1984.kibrary.math.CrossCorrelation;
 import io.github.kensuke1984.kibrary.timewindow.Timewindow;
 
 /**
@@ -28,7 +29,7 @@ import io.github.kensuke1984.kibrary.timewindow.Timewindow;
  * TODO sorted
  *
  * @author Kensuke Konishi
- * @version 0.1.2.2
+ * @version 0.1.3
  */
 public class Trace {
 
@@ -234,14 +235,11 @@ public class Trace {
         double corMax = -1;
         double compY2 = trace.Y_VECTOR.getNorm();
         double shift = 0;
+        double[] products = CrossCorrelation.dotProducts(Y, trace.Y);
+        double[] energies = CrossCorrelation.energies(Y, trace.getLength());
         for (int i = 0; i <= gapLength; i++) {
-            double cor = 0;
-            double y2 = 0;
-            for (int j = 0; j < trace.getLength(); j++) {
-                cor += Y[i + j] * trace.Y[j];
-                y2 += Y[i + j] * Y[i + j];
-            }
-            cor /= y2 * compY2;
+            if (energies[i] == 0) continue;
+            double cor = products[i] / (energies[i] * compY2);
             if (corMax < cor) {
                 shift = X[i] - trace.X[0];
                 corMax = cor;
@@ -268,22 +266,14 @@ public class Trace {
             shorter = compare;
             longer = base;
         }
-        int gap = longer.length - shorter.length;
+        double[] correlations = CrossCorrelation.normalizedCorrelations(longer, shorter);
         int bestShift = 0;
         double bestCorrelation = 0;
-        for (int shift = 0; shift < gap + 1; shift++) {
-            double[] partY = new double[shorter.length];
-            System.arraycopy(longer, shift, partY, 0, shorter.length);
-            RealVector partYVec = new ArrayRealVector(partY);
-            RealVector shorterVec = new ArrayRealVector(shorter);
-            double correlation = partYVec.dotProduct(shorterVec) / partYVec.getNorm() / shorterVec.getNorm();
-            if (bestCorrelation < correlation) {
-                bestCorrelation = correlation;
+        for (int shift = 0; shift < correlations.length; shift++)
+            if (bestCorrelation < correlations[shift]) {
+                bestCorrelation = correlations[shift];
                 bestShift = shift;
             }
-            // System.out.println(correlation);
-        }
-
         return compare.length < base.length ? bestShift : -bestShift;
     }
 
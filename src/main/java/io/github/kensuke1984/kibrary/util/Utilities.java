@@ -13,10 +13,9 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
@@ -37,7 +36,7 @@ import io.github.kensuke1984.kibrary.util.spc.SpcFileName;
  * this contains various useful static methods.
  *
  * @author Kensuke Konishi
- * @version 0.1.1.1
+ * @version 0.1.1.2
  */
 public final class Utilities {
 
@@ -163,12 +162,9 @@ public final class Utilities {
     public static long runEventProcess(Path workPath, Consumer<EventFolder> process, long timeout, TimeUnit unit)
             throws IOException, InterruptedException {
         long startTime = System.nanoTime();
-        ExecutorService exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        // Thread[] workers = new Thread[eventDirs.length];
-        for (EventFolder eventDirectory : eventFolderSet(workPath))
-            exec.submit(() -> process.accept(eventDirectory));
-        exec.shutdown();
-        exec.awaitTermination(timeout, unit);
+        List<Runnable> tasks = eventFolderSet(workPath).stream()
+                .<Runnable>map(eventDirectory -> () -> process.accept(eventDirectory)).collect(Collectors.toList());
+        JobScheduler.invokeAll(tasks, timeout, unit);
         return System.nanoTime() - startTime;
     }
 
@@ -17,9 +17,12 @@ import io.github.kensuke1984.kibrary.util.Trace;
 
 /**
  * Data in a SAC file.
+ * <p>
+ * Each setter returns a new instance. To change many values at once, use
+ * {@link #toBuilder()} or {@link #builder()}, which make only one instance.
  *
  * @author Kensuke Konishi
- * @version 0.0.1.2
+ * @version 0.0.2
  * @see <a href=http://ds.iris.edu/ds/nodes/dmc/forms/sac/>SAC</a>
  */
 public interface SACData extends SACHeaderData {
@@ -249,4 +252,133 @@ public interface SACData extends SACHeaderData {
      */
     SACData setSACData(double[] waveData);
 
+    /**
+     * @return {@link Builder} which starts from the header and data of this
+     */
+    Builder toBuilder();
+
+    /**
+     * @return {@link Builder} which starts from a header with all the values
+     * undefined (-12345 and false) and no data
+     */
+    static Builder builder() {
+        return new Builder(new SACFile());
+    }
+
+    /**
+     * Builder of {@link SACData}. Values are changed in place, and
+     * {@link #build()} returns the result without any copy.
+     * A builder can build only once.
+     */
+    final class Builder {
+
+        private SACFile sacFile;
+
+        Builder(SACFile sacFile) {
+            this.sacFile = sacFile;
+        }
+
+        private SACFile sacFile() {
+            if (sacFile == null) throw new IllegalStateException("This builder has already built.");
+            return sacFile;
+        }
+
+        /**
+         * @see SACHeaderData#setValue(SACHeaderEnum, double)
+         */
+        public Builder setValue(SACHeaderEnum sacHeaderEnum, double value) {
+            sacFile().putValue(sacHeaderEnum, value);
+            return this;
+        }
+
+        /**
+         * @see SACHeaderData#setInt(SACHeaderEnum, int)
+         */
+        public Builder setInt(SACHeaderEnum sacHeaderEnum, int value) {
+            sacFile().putInt(sacHeaderEnum, value);
+            return this;
+        }
+
+        /**
+         * @see SACHeaderData#setSACEnumerated(SACHeaderEnum, int)
+         */
+        public Builder setSACEnumerated(SACHeaderEnum sacHeaderEnum, int value) {
+            sacFile().putSACEnumerated(sacHeaderEnum, value);
+            return this;
+        }
+
+        /**
+         * @see SACHeaderData#setBoolean(SACHeaderEnum, boolean)
+         */
+        public Builder setBoolean(SACHeaderEnum sacHeaderEnum, boolean bool) {
+            sacFile().putBoolean(sacHeaderEnum, bool);
+            return this;
+        }
+
+        /**
+         * @see SACHeaderData#setSACString(SACHeaderEnum, String)
+         */
+        public Builder setSACString(SACHeaderEnum sacHeaderEnum, String string) {
+            sacFile().putSACString(sacHeaderEnum, string);
+            return this;
+        }
+
+        /**
+         * @see SACHeaderData#setEventLocation(Location)
+         */
+        public Builder setEventLocation(Location eventLocation) {
+            return setValue(SACHeaderEnum.EVLA, eventLocation.getLatitude())
+                    .setValue(SACHeaderEnum.EVLO, eventLocation.getLongitude())
+                    .setValue(SACHeaderEnum.EVDP, 6371 - eventLocation.getR());
+        }
+
+        /**
+         * @see SACHeaderData#setEventTime(LocalDateTime)
+         */
+        public Builder setEventTime(LocalDateTime eventDateTime) {
+            return setInt(SACHeaderEnum.NZYEAR, eventDateTime.getYear())
+                    .setInt(SACHeaderEnum.NZJDAY, eventDateTime.getDayOfYear())
+                    .setInt(SACHeaderEnum.NZHOUR, eventDateTime.getHour())
+                    .setInt(SACHeaderEnum.NZMIN, eventDateTime.getMinute())
+                    .setInt(SACHeaderEnum.NZSEC, eventDateTime.getSecond())
+                    .setInt(SACHeaderEnum.NZMSEC, eventDateTime.getNano() / 1000 / 1000);
+        }
+
+        /**
+         * @see SACHeaderData#setStation(Station)
+         */
+        public Builder setStation(Station station) {
+            return setSACString(SACHeaderEnum.KSTNM, station.getName())
+                    .setSACString(SACHeaderEnum.KNETWK, station.getNetwork())
+                    .setValue(SACHeaderEnum.STLA, station.getPosition().getLatitude())
+                    .setValue(SACHeaderEnum.STLO, station.getPosition().getLongitude());
+        }
+
+        /**
+         * The array is <b>not</b> copied. It must not be changed after this.
+         *
+         * @param waveData to be the data. NPTS must be its length when built.
+         * @return this
+         */
+        public Builder setData(double[] waveData) {
+            sacFile().putData(waveData);
+            return this;
+        }
+
+        /**
+         * @return {@link SACData} with all the values set
+         * @throws IllegalStateException if NPTS differs from the length of the
+         *                               data, or if this has already built.
+         */
+        public SACData build() {
+            SACFile built = sacFile();
+            int npts = built.getInt(SACHeaderEnum.NPTS);
+            int length = built.getDataLength();
+            if (npts != length)
+                throw new IllegalStateException("input npts is invalid. SAC npts:" + npts + " input npts:" + length);
+            sacFile = null;
+            return built;
+        }
+    }
+
 }
@@ -14,7 +14,7 @@ import io.github.kensuke1984.kibrary.butterworth.LowPassFilter;
  * This class is <b>immutable</b>
  *
  * @author Kensuke Konishi
- * @version 1.0.0.1
+ * @version 1.0.2
  * @see <a href=http://ds.iris.edu/ds/nodes/dmc/forms/sac/>SAC</a>
  */
 class SACFile extends SACHeader implements SACData {
@@ -30,8 +30,53 @@ class SACFile extends SACHeader implements SACData {
      *                     sacFileName is broken.
      */
     SACFile(SACFileName sacFileName) throws IOException {
-        super(sacFileName);
-        read(sacFileName);
+        this(new SACInputStream(sacFileName.toPath()));
+    }
+
+    /**
+     * @param stream at the head of a SAC file
+     * @throws IOException If an I/O error occurs.
+     */
+    private SACFile(SACInputStream stream) throws IOException {
+        super(stream);
+        waveData = stream.readFloats(getInt(SACHeaderEnum.NPTS));
+    }
+
+    /**
+     * SAC file with all the header values undefined and no data. Only for
+     * {@link SACData.Builder}.
+     */
+    SACFile() {
+        waveData = new double[0];
+    }
+
+    /**
+     * Changes the data of this without copying. Only for construction.
+     *
+     * @param waveData to be adopted
+     */
+    void putData(double[] waveData) {
+        this.waveData = waveData;
+    }
+
+    /**
+     * @return the number of the data points actually held
+     */
+    int getDataLength() {
+        return waveData.length;
+    }
+
+    /**
+     * The data array is shared until {@link SACData.Builder#setData(double[])}
+     * replaces it, as no instance changes it.
+     */
+    @Override
+    public SACData.Builder toBuilder() {
+        try {
+            return new SACData.Builder((SACFile) super.clone());
+        } catch (Exception e) {
+            throw new RuntimeException("UNExPECTed");
+        }
     }
 
     /**
@@ -41,44 +86,28 @@ class SACFile extends SACHeader implements SACData {
      */
     @Override
     public SACData applyButterworthFilter(ButterworthFilter filter) {
-        SACData sd = clone();
+        SACData.Builder builder = toBuilder();
+        double delta = getValue(SACHeaderEnum.DELTA);
         if (filter instanceof BandPassFilter) {
             BandPassFilter bp = (BandPassFilter) filter;
-            double periodMax = 2.0 * Math.PI * sd.getValue(SACHeaderEnum.DELTA) / bp.getOmegaL();
-            double periodMin = 2.0 * Math.PI * sd.getValue(SACHeaderEnum.DELTA) / bp.getOmegaH();
-            sd = sd.setValue(SACHeaderEnum.USER0, periodMin).setValue(SACHeaderEnum.USER1, periodMax);
+            double periodMax = 2.0 * Math.PI * delta / bp.getOmegaL();
+            double periodMin = 2.0 * Math.PI * delta / bp.getOmegaH();
+            builder.setValue(SACHeaderEnum.USER0, periodMin).setValue(SACHeaderEnum.USER1, periodMax);
         } else if (filter instanceof LowPassFilter) {
             LowPassFilter lp = (LowPassFilter) filter;
-            double periodMin = 2.0 * Math.PI * getValue(SACHeaderEnum.DELTA) / lp.getOmegaP();
-            sd = sd.setValue(SACHeaderEnum.USER0, periodMin);
+            double periodMin = 2.0 * Math.PI * delta / lp.getOmegaP();
+            builder.setValue(SACHeaderEnum.USER0, periodMin);
         } else if (filter instanceof HighPassFilter) {
             HighPassFilter hp = (HighPassFilter) filter;
-            double periodMax = 2.0 * Math.PI * getValue(SACHeaderEnum.DELTA) / hp.getOmegaP();
-            sd = sd.setValue(SACHeaderEnum.USER1, periodMax);
+            double periodMax = 2.0 * Math.PI * delta / hp.getOmegaP();
+            builder.setValue(SACHeaderEnum.USER1, periodMax);
         } else if (filter instanceof BandStopFilter) {
             BandStopFilter bsf = (BandStopFilter) filter;
-            double periodMin = 2 * Math.PI * getValue(SACHeaderEnum.DELTA) / bsf.getOmegaL();
-            double periodMax = 2 * Math.PI * getValue(SACHeaderEnum.DELTA) / bsf.getOmegaH();
-            sd = sd.setValue(SACHeaderEnum.USER0, periodMax).setValue(SACHeaderEnum.USER1, periodMin);
-        }
-        double[] sacdata = filter.applyFilter(waveData.clone());
-        sd = sd.setSACData(sacdata);
-        return sd;
-    }
-
-    /**
-     * Sacの波形部分を読み込む read sacdata from this.sacFile
-     */
-    private void read(SACFileName sacFileName) throws IOException {
-        try (SACInputStream stream = new SACInputStream(sacFileName.toPath())) {
-            stream.skipBytes(632);
-            int npts = getInt(SACHeaderEnum.NPTS);
-            waveData = new double[npts];
-            // float(4) * 70, int(4) * 40, String (8) * 22 + (16)
-            // 4* 70 + 4* 40 + 8* 22 +16 = 632
-            for (int i = 0; i < npts; i++)
-                waveData[i] = stream.readFloat();
+            double periodMin = 2 * Math.PI * delta / bsf.getOmegaL();
+            double periodMax = 2 * Math.PI * delta / bsf.getOmegaH();
+            builder.setValue(SACHeaderEnum.USER0, periodMax).setValue(SACHeaderEnum.USER1, periodMin);
         }
+        return builder.setData(filter.applyFilter(waveData)).build();
     }
 
     @Override
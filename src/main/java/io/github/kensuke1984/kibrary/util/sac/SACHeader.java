@@ -1,13 +1,16 @@
 package io.github.kensuke1984.kibrary.util.sac;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Information in the header parts of a SAC file.
  * <p>This class is <b>IMMUTABLE</b></p>
  *
  * @author Kensuke Konishi
- * @version 2.0.1.1
+ * @version 2.0.3
  * @see <a href=http://ds.iris.edu/ds/nodes/dmc/forms/sac/>SAC</a>
  */
 class SACHeader implements SACHeaderData, Cloneable {
@@ -34,144 +37,142 @@ class SACHeader implements SACHeaderData, Cloneable {
     /**
      * 入力したsacファイルのヘッダーを読み込み上書きする
      *
-     * @param sacFileName to read
+     * @param stream at the head of a SAC file
      */
-    private void read(SACFileName sacFileName) throws IOException {
-        try (SACInputStream stream = new SACInputStream(sacFileName.toPath())) {
-            delta = toDouble(stream.readFloat()); // 0
-            depmin = toDouble(stream.readFloat()); // 1
-            depmax = toDouble(stream.readFloat()); // 2
-            scale = toDouble(stream.readFloat()); // 3
-            odelta = toDouble(stream.readFloat());
-            b = toDouble(stream.readFloat());
-            e = toDouble(stream.readFloat());
-            o = toDouble(stream.readFloat());
-            a = toDouble(stream.readFloat());
-            num9 = toDouble(stream.readFloat());
-            T0 = toDouble(stream.readFloat());
-            T1 = toDouble(stream.readFloat());
-            T2 = toDouble(stream.readFloat());
-            T3 = toDouble(stream.readFloat());
-            T4 = toDouble(stream.readFloat());
-            T5 = toDouble(stream.readFloat());
-            T6 = toDouble(stream.readFloat());
-            T7 = toDouble(stream.readFloat());
-            T8 = toDouble(stream.readFloat());
-            T9 = toDouble(stream.readFloat());
-            F = toDouble(stream.readFloat());
-            RESP0 = toDouble(stream.readFloat());
-            RESP1 = toDouble(stream.readFloat());
-            RESP2 = toDouble(stream.readFloat());
-            RESP3 = toDouble(stream.readFloat());
-            RESP4 = toDouble(stream.readFloat());
-            RESP5 = toDouble(stream.readFloat());
-            RESP6 = toDouble(stream.readFloat());
-            RESP7 = toDouble(stream.readFloat());
-            RESP8 = toDouble(stream.readFloat());
-            RESP9 = toDouble(stream.readFloat());
-            stla = toDouble(stream.readFloat());
-            stlo = toDouble(stream.readFloat());
-            STEL = toDouble(stream.readFloat());
-            STDP = toDouble(stream.readFloat());
-            evla = toDouble(stream.readFloat());
-            evlo = toDouble(stream.readFloat());
-            EVEL = toDouble(stream.readFloat());
-            evdp = toDouble(stream.readFloat());
-            MAG = toDouble(stream.readFloat());
-            USER0 = toDouble(stream.readFloat());
-            USER1 = toDouble(stream.readFloat());
-            USER2 = toDouble(stream.readFloat());
-            USER3 = toDouble(stream.readFloat());
-            USER4 = toDouble(stream.readFloat());
-            USER5 = toDouble(stream.readFloat());
-            USER6 = toDouble(stream.readFloat());
-            USER7 = toDouble(stream.readFloat());
-            USER8 = toDouble(stream.readFloat());
-            USER9 = toDouble(stream.readFloat());
-            DIST = toDouble(stream.readFloat());
-            AZ = toDouble(stream.readFloat());
-            BAZ = toDouble(stream.readFloat());
-            GCARC = toDouble(stream.readFloat());
-            num54 = toDouble(stream.readFloat());
-            num55 = toDouble(stream.readFloat());
-            DEPMEN = toDouble(stream.readFloat());
-            CMPAZ = toDouble(stream.readFloat());
-            CMPINC = toDouble(stream.readFloat());
-            XMINIMUM = toDouble(stream.readFloat());
-            XMAXIMUM = toDouble(stream.readFloat());
-            YMINIMUM = toDouble(stream.readFloat());
-            YMAXIMUM = toDouble(stream.readFloat());
-            num63 = toDouble(stream.readFloat());
-            num64 = toDouble(stream.readFloat());
-            num65 = toDouble(stream.readFloat());
-            num66 = toDouble(stream.readFloat());
-            num67 = toDouble(stream.readFloat());
-            num68 = toDouble(stream.readFloat());
-            num69 = toDouble(stream.readFloat());
-            nzyear = stream.readInt();
-            nzjday = stream.readInt();
-            nzhour = stream.readInt();
-            nzmin = stream.readInt();
-            nzsec = stream.readInt();
-            nzmsec = stream.readInt();
-            nvhdr = stream.readInt();
-            NORID = stream.readInt();
-            NEVID = stream.readInt();
-            npts = stream.readInt();
-            num80 = stream.readInt();
-            NWFID = stream.readInt();
-            nxsize = stream.readInt();
-            NYSIZE = stream.readInt();
-            num84 = stream.readInt();
-            IFTYPE = stream.readInt();
-            IDEP = stream.readInt();
-            IZTYPE = stream.readInt();
-            num88 = stream.readInt();
-            IINST = stream.readInt();
-            ISTREG = stream.readInt();
-            IEVREG = stream.readInt();
-            IEVTYP = stream.readInt();
-            IQUAL = stream.readInt();
-            ISYNTH = stream.readInt();
-            IMAGTYP = stream.readInt();
-            IMAGSRC = stream.readInt();
-            num97 = stream.readInt();
-            num98 = stream.readInt();
-            num99 = stream.readInt();
-            num100 = stream.readInt();
-            num101 = stream.readInt();
-            num102 = stream.readInt();
-            num103 = stream.readInt();
-            num104 = stream.readInt();
-            leven = stream.readSACBoolean();
-            lpspol = stream.readSACBoolean();
-            lovrok = stream.readSACBoolean();
-            lcalda = stream.readSACBoolean();
-            num109 = stream.readSACBoolean();
-            kstnm = stream.readString(8);
-            KEVNM = stream.readString(16);
-            KHOLE = stream.readString(8);
-            KO = stream.readString(8);
-            KA = stream.readString(8);
-            KT0 = stream.readString(8);
-            KT1 = stream.readString(8);
-            KT2 = stream.readString(8);
-            KT3 = stream.readString(8);
-            KT4 = stream.readString(8);
-            KT5 = stream.readString(8);
-            KT6 = stream.readString(8);
-            KT7 = stream.readString(8);
-            KT8 = stream.readString(8);
-            KT9 = stream.readString(8);
-            KF = stream.readString(8);
-            KUSER0 = stream.readString(8);
-            KUSER1 = stream.readString(8);
-            KUSER2 = stream.readString(8);
-            KCMPNM = stream.readString(8);
-            knetwk = stream.readString(8);
-            KDATRD = stream.readString(8);
-            KINST = stream.readString(8);
-        }
+    private void read(SACInputStream stream) throws IOException {
+        delta = toDouble(stream.readFloat()); // 0
+        depmin = toDouble(stream.readFloat()); // 1
+        depmax = toDouble(stream.readFloat()); // 2
+        scale = toDouble(stream.readFloat()); // 3
+        odelta = toDouble(stream.readFloat());
+        b = toDouble(stream.readFloat());
+        e = toDouble(stream.readFloat());
+        o = toDouble(stream.readFloat());
+        a = toDouble(stream.readFloat());
+        num9 = toDouble(stream.readFloat());
+        T0 = toDouble(stream.readFloat());
+        T1 = toDouble(stream.readFloat());
+        T2 = toDouble(stream.readFloat());
+        T3 = toDouble(stream.readFloat());
+        T4 = toDouble(stream.readFloat());
+        T5 = toDouble(stream.readFloat());
+        T6 = toDouble(stream.readFloat());
+        T7 = toDouble(stream.readFloat());
+        T8 = toDouble(stream.readFloat());
+        T9 = toDouble(stream.readFloat());
+        F = toDouble(stream.readFloat());
+        RESP0 = toDouble(stream.readFloat());
+        RESP1 = toDouble(stream.readFloat());
+        RESP2 = toDouble(stream.readFloat());
+        RESP3 = toDouble(stream.readFloat());
+        RESP4 = toDouble(stream.readFloat());
+        RESP5 = toDouble(stream.readFloat());
+        RESP6 = toDouble(stream.readFloat());
+        RESP7 = toDouble(stream.readFloat());
+        RESP8 = toDouble(stream.readFloat());
+        RESP9 = toDouble(stream.readFloat());
+        stla = toDouble(stream.readFloat());
+        stlo = toDouble(stream.readFloat());
+        STEL = toDouble(stream.readFloat());
+        STDP = toDouble(stream.readFloat());
+        evla = toDouble(stream.readFloat());
+        evlo = toDouble(stream.readFloat());
+        EVEL = toDouble(stream.readFloat());
+        evdp = toDouble(stream.readFloat());
+        MAG = toDouble(stream.readFloat());
+        USER0 = toDouble(stream.readFloat());
+        USER1 = toDouble(stream.readFloat());
+        USER2 = toDouble(stream.readFloat());
+        USER3 = toDouble(stream.readFloat());
+        USER4 = toDouble(stream.readFloat());
+        USER5 = toDouble(stream.readFloat());
+        USER6 = toDouble(stream.readFloat());
+        USER7 = toDouble(stream.readFloat());
+        USER8 = toDouble(stream.readFloat());
+        USER9 = toDouble(stream.readFloat());
+        DIST = toDouble(stream.readFloat());
+        AZ = toDouble(stream.readFloat());
+        BAZ = toDouble(stream.readFloat());
+        GCARC = toDouble(stream.readFloat());
+        num54 = toDouble(stream.readFloat());
+        num55 = toDouble(stream.readFloat());
+        DEPMEN = toDouble(stream.readFloat());
+        CMPAZ = toDouble(stream.readFloat());
+        CMPINC = toDouble(stream.readFloat());
+        XMINIMUM = toDouble(stream.readFloat());
+        XMAXIMUM = toDouble(stream.readFloat());
+        YMINIMUM = toDouble(stream.readFloat());
+        YMAXIMUM = toDouble(stream.readFloat());
+        num63 = toDouble(stream.readFloat());
+        num64 = toDouble(stream.readFloat());
+        num65 = toDouble(stream.readFloat());
+        num66 = toDouble(stream.readFloat());
+        num67 = toDouble(stream.readFloat());
+        num68 = toDouble(stream.readFloat());
+        num69 = toDouble(stream.readFloat());
+        nzyear = stream.readInt();
+        nzjday = stream.readInt();
+        nzhour = stream.readInt();
+        nzmin = stream.readInt();
+        nzsec = stream.readInt();
+        nzmsec = stream.readInt();
+        nvhdr = stream.readInt();
+        NORID = stream.readInt();
+        NEVID = stream.readInt();
+        npts = stream.readInt();
+        num80 = stream.readInt();
+        NWFID = stream.readInt();
+        nxsize = stream.readInt();
+        NYSIZE = stream.readInt();
+        num84 = stream.readInt();
+        IFTYPE = stream.readInt();
+        IDEP = stream.readInt();
+        IZTYPE = stream.readInt();
+        num88 = stream.readInt();
+        IINST = stream.readInt();
+        ISTREG = stream.readInt();
+        IEVREG = stream.readInt();
+        IEVTYP = stream.readInt();
+        IQUAL = stream.readInt();
+        ISYNTH = stream.readInt();
+        IMAGTYP = stream.readInt();
+        IMAGSRC = stream.readInt();
+        num97 = stream.readInt();
+        num98 = stream.readInt();
+        num99 = stream.readInt();
+        num100 = stream.readInt();
+        num101 = stream.readInt();
+        num102 = stream.readInt();
+        num103 = stream.readInt();
+        num104 = stream.readInt();
+        leven = stream.readSACBoolean();
+        lpspol = stream.readSACBoolean();
+        lovrok = stream.readSACBoolean();
+        lcalda = stream.readSACBoolean();
+        num109 = stream.readSACBoolean();
+        kstnm = stream.readString(8);
+        KEVNM = stream.readString(16);
+        KHOLE = stream.readString(8);
+        KO = stream.readString(8);
+        KA = stream.readString(8);
+        KT0 = stream.readString(8);
+        KT1 = stream.readString(8);
+        KT2 = stream.readString(8);
+        KT3 = stream.readString(8);
+        KT4 = stream.readString(8);
+        KT5 = stream.readString(8);
+        KT6 = stream.readString(8);
+        KT7 = stream.readString(8);
+        KT8 = stream.readString(8);
+        KT9 = stream.readString(8);
+        KF = stream.readString(8);
+        KUSER0 = stream.readString(8);
+        KUSER1 = stream.readString(8);
+        KUSER2 = stream.readString(8);
+        KCMPNM = stream.readString(8);
+        knetwk = stream.readString(8);
+        KDATRD = stream.readString(8);
+        KINST = stream.readString(8);
     }
 
     /**
@@ -181,7 +182,51 @@ class SACHeader implements SACHeaderData, Cloneable {
      * @throws IOException if an I/O error occurs.
      */
     SACHeader(SACFileName sacFileName) throws IOException {
-        read(sacFileName);
+        try (SACInputStream stream = SACInputStream.header(sacFileName.toPath())) {
+            read(stream);
+        }
+    }
+
+    /**
+     * Header values will be read from the stream. After this, the stream is
+     * at the head of the waveform data.
+     *
+     * @param stream at the head of a SAC file
+     * @throws IOException if an I/O error occurs.
+     */
+    SACHeader(SACInputStream stream) throws IOException {
+        read(stream);
+    }
+
+    /**
+     * raw header with all the values undefined (-12345 and false)
+     */
+    private static final byte[] UNDEFINED_HEADER;
+
+    static {
+        ByteBuffer buffer = ByteBuffer.allocate(SACInputStream.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 70; i++)
+            buffer.putFloat(-12345);
+        for (int i = 0; i < 35; i++)
+            buffer.putInt(-12345);
+        for (int i = 0; i < 5; i++)
+            buffer.putInt(0);
+        byte[] undefined = "-12345          ".getBytes(StandardCharsets.US_ASCII);
+        buffer.put(undefined, 0, 8).put(undefined, 0, 16);
+        while (buffer.hasRemaining()) buffer.put(undefined, 0, 8);
+        UNDEFINED_HEADER = buffer.array();
+    }
+
+    /**
+     * Header with all the values undefined (-12345 and false). Only for
+     * construction.
+     */
+    SACHeader() {
+        try {
+            read(new SACInputStream(UNDEFINED_HEADER));
+        } catch (IOException e) {
+            throw new RuntimeException("UNEXPecTEd");
+        }
     }
 
     @Override
@@ -258,25 +303,26 @@ class SACHeader implements SACHeaderData, Cloneable {
         }
     }
 
-    @Override
-    public SACHeader setBoolean(SACHeaderEnum sacHeaderEnum, boolean bool) {
+    /**
+     * Changes the value of this. Only for construction.
+     */
+    void putBoolean(SACHeaderEnum sacHeaderEnum, boolean bool) {
         if (sacHeaderEnum.typeOf() == 99 || sacHeaderEnum.typeOf() == -1)
             throw new UnsupportedOperationException(sacHeaderEnum + " is a special boolean.");
         if (sacHeaderEnum.typeOf() != 3) throw new IllegalArgumentException(sacHeaderEnum + " is not boolean");
-        SACHeader sh = clone();
         switch (sacHeaderEnum) {
             case LEVEN:
-                sh.leven = bool;
-                return sh;
+                leven = bool;
+                return;
             case LPSPOL:
-                sh.lpspol = bool;
-                return sh;
+                lpspol = bool;
+                return;
             case LOVROK:
-                sh.lovrok = bool;
-                return sh;
+                lovrok = bool;
+                return;
             case LCALDA:
-                sh.lcalda = bool;
-                return sh;
+                lcalda = bool;
+                return;
             // case num109:
             // return num109;
             default:
@@ -284,6 +330,13 @@ class SACHeader implements SACHeaderData, Cloneable {
         }
     }
 
+    @Override
+    public SACHeader setBoolean(SACHeaderEnum sacHeaderEnum, boolean bool) {
+        SACHeader sh = clone();
+        sh.putBoolean(sacHeaderEnum, bool);
+        return sh;
+    }
+
     /**
      * unused かinternalパラメタ
      *
@@ -583,272 +636,281 @@ class SACHeader implements SACHeaderData, Cloneable {
         }
     }
 
-    @Override
-    public SACHeader setSACString(SACHeaderEnum sacHeaderEnum, String string) {
+    /**
+     * Changes the value of this. Only for construction.
+     */
+    void putSACString(SACHeaderEnum sacHeaderEnum, String string) {
         int length = sacHeaderEnum.typeOf();
         if (length != 8 && length != 16) throw new IllegalArgumentException(sacHeaderEnum + " is not String value");
         if (length < string.length()) throw new IllegalArgumentException(string + " is too long for " + sacHeaderEnum);
-        SACHeader sh = clone();
         switch (sacHeaderEnum) {
             case KSTNM:
-                sh.kstnm = string;
-                return sh;
+                kstnm = string;
+                return;
             case KEVNM:
-                sh.KEVNM = string;
-                return sh;
+                KEVNM = string;
+                return;
             case KHOLE:
-                sh.KHOLE = string;
-                return sh;
+                KHOLE = string;
+                return;
             case KO:
-                sh.KO = string;
-                return sh;
+                KO = string;
+                return;
             case KA:
-                sh.KA = string;
-                return sh;
+                KA = string;
+                return;
             case KT0:
-                sh.KT0 = string;
-                return sh;
+                KT0 = string;
+                return;
             case KT1:
-                sh.KT1 = string;
-                return sh;
+                KT1 = string;
+                return;
             case KT2:
-                sh.KT2 = string;
-                return sh;
+                KT2 = string;
+                return;
             case KT3:
-                sh.KT3 = string;
-                return sh;
+                KT3 = string;
+                return;
             case KT4:
-                sh.KT4 = string;
-                return sh;
+                KT4 = string;
+                return;
             case KT5:
-                sh.KT5 = string;
-                return sh;
+                KT5 = string;
+                return;
             case KT6:
-                sh.KT6 = string;
-                return sh;
+                KT6 = string;
+                return;
             case KT7:
-                sh.KT7 = string;
-                return sh;
+                KT7 = string;
+                return;
             case KT8:
-                sh.KT8 = string;
-                return sh;
+                KT8 = string;
+                return;
             case KT9:
-                sh.KT9 = string;
-                return sh;
+                KT9 = string;
+                return;
             case KF:
-                sh.KF = string;
-                return sh;
+                KF = string;
+                return;
             case KUSER0:
-                sh.KUSER0 = string;
-                return sh;
+                KUSER0 = string;
+                return;
             case KUSER1:
-                sh.KUSER1 = string;
-                return sh;
+                KUSER1 = string;
+                return;
             case KUSER2:
-                sh.KUSER2 = string;
-                return sh;
+                KUSER2 = string;
+                return;
             case KCMPNM:
-                sh.KCMPNM = string;
-                return sh;
+                KCMPNM = string;
+                return;
             case KNETWK:
-                sh.knetwk = string;
-                return sh;
+                knetwk = string;
+                return;
             case KDATRD:
-                sh.KDATRD = string;
-                return sh;
+                KDATRD = string;
+                return;
             case KINST:
-                sh.KINST = string;
-                return sh;
+                KINST = string;
+                return;
             default:
                 throw new RuntimeException("Unanticipated happens on " + sacHeaderEnum);
         }
     }
 
     @Override
-    public SACHeader setValue(SACHeaderEnum sacHeaderEnum, double value) {
-        if (sacHeaderEnum.typeOf() != 0) throw new IllegalArgumentException(sacHeaderEnum + " is not float value");
+    public SACHeader setSACString(SACHeaderEnum sacHeaderEnum, String string) {
         SACHeader sh = clone();
+        sh.putSACString(sacHeaderEnum, string);
+        return sh;
+    }
+
+    /**
+     * Changes the value of this. Only for construction.
+     */
+    void putValue(SACHeaderEnum sacHeaderEnum, double value) {
+        if (sacHeaderEnum.typeOf() != 0) throw new IllegalArgumentException(sacHeaderEnum + " is not float value");
         switch (sacHeaderEnum) {
             case DELTA:
-                sh.delta = value;
-                return sh;
+                delta = value;
+                return;
             case DEPMIN:
-                sh.depmin = value;
-                return sh;
+                depmin = value;
+                return;
             case DEPMAX:
-                sh.depmax = value;
-                return sh;
+                depmax = value;
+                return;
             case SCALE:
-                sh.scale = value;
-                return sh;
+                scale = value;
+                return;
             case ODELTA:
-                sh.odelta = value;
-                return sh;
+                odelta = value;
+                return;
             case B:
-                sh.b = value;
-                return sh;
+                b = value;
+                return;
             case E:
-                sh.e = value;
-                return sh;
+                e = value;
+                return;
             case O:
-                sh.o = value;
-                return sh;
+                o = value;
+                return;
             case A:
-                sh.a = value;
-                return sh;
+                a = value;
+                return;
             case T0:
-                sh.T0 = value;
-                return sh;
+                T0 = value;
+                return;
             case T1:
-                sh.T1 = value;
-                return sh;
+                T1 = value;
+                return;
             case T2:
-                sh.T2 = value;
-                return sh;
+                T2 = value;
+                return;
             case T3:
-                sh.T3 = value;
-                return sh;
+                T3 = value;
+                return;
             case T4:
-                sh.T4 = value;
-                return sh;
+                T4 = value;
+                return;
             case T5:
-                sh.T5 = value;
-                return sh;
+                T5 = value;
+                return;
             case T6:
-                sh.T6 = value;
-                return sh;
+                T6 = value;
+                return;
             case T7:
-                sh.T7 = value;
-                return sh;
+                T7 = value;
+                return;
             case T8:
-                sh.T8 = value;
-                return sh;
+                T8 = value;
+                return;
             case T9:
-                sh.T9 = value;
-                return sh;
+                T9 = value;
+                return;
             case F:
-                sh.F = value;
-                return sh;
+                F = value;
+                return;
             case RESP0:
-                sh.RESP0 = value;
-                return sh;
+                RESP0 = value;
+                return;
             case RESP1:
-                sh.RESP1 = value;
-                return sh;
+                RESP1 = value;
+                return;
             case RESP2:
-                sh.RESP2 = value;
-                return sh;
+                RESP2 = value;
+                return;
             case RESP3:
-                sh.RESP3 = value;
-                return sh;
+                RESP3 = value;
+                return;
             case RESP4:
-                sh.RESP4 = value;
-                return sh;
+                RESP4 = value;
+                return;
             case RESP5:
-                sh.RESP5 = value;
-                return sh;
+                RESP5 = value;
+                return;
             case RESP6:
-                sh.RESP6 = value;
-                return sh;
+                RESP6 = value;
+                return;
             case RESP7:
-                sh.RESP7 = value;
-                return sh;
+                RESP7 = value;
+                return;
             case RESP8:
-                sh.RESP8 = value;
-                return sh;
+                RESP8 = value;
+                return;
             case RESP9:
-                sh.RESP9 = value;
-                return sh;
+                RESP9 = value;
+                return;
             case STLA:
-                sh.stla = value;
-                return sh;
+                stla = value;
+                return;
             case STLO:
-                sh.stlo = value;
-                return sh;
+                stlo = value;
+                return;
             case STEL:
-                sh.STEL = value;
-                return sh;
+                STEL = value;
+                return;
             case STDP:
-                sh.STDP = value;
-                return sh;
+                STDP = value;
+                return;
             case EVLA:
-                sh.evla = value;
-                return sh;
+                evla = value;
+                return;
             case EVLO:
-                sh.evlo = value;
-                return sh;
+                evlo = value;
+                return;
             case EVEL:
-                sh.EVEL = value;
-                return sh;
+                EVEL = value;
+                return;
             case EVDP:
-                sh.evdp = value;
-                return sh;
+                evdp = value;
+                return;
             case MAG:
-                sh.MAG = value;
-                return sh;
+                MAG = value;
+                return;
             case USER0:
-                sh.USER0 = value;
-                return sh;
+                USER0 = value;
+                return;
             case USER1:
-                sh.USER1 = value;
-                return sh;
+                USER1 = value;
+                return;
             case USER2:
-                sh.USER2 = value;
-                return sh;
+                USER2 = value;
+                return;
             case USER3:
-                sh.USER3 = value;
-                return sh;
+                USER3 = value;
+                return;
             case USER4:
-                sh.USER4 = value;
-                return sh;
+                USER4 = value;
+                return;
             case USER5:
-                sh.USER5 = value;
-                return sh;
+                USER5 = value;
+                return;
             case USER6:
-                sh.USER6 = value;
-                return sh;
+                USER6 = value;
+                return;
             case USER7:
-                sh.USER7 = value;
-                return sh;
+                USER7 = value;
+                return;
             case USER8:
-                sh.USER8 = value;
-                return sh;
+                USER8 = value;
+                return;
             case USER9:
-                sh.USER9 = value;
-                return sh;
+                USER9 = value;
+                return;
             case DIST:
-                sh.DIST = value;
-                return sh;
+                DIST = value;
+                return;
             case AZ:
-                sh.AZ = value;
-                return sh;
+                AZ = value;
+                return;
             case BAZ:
-                sh.BAZ = value;
-                return sh;
+                BAZ = value;
+                return;
             case GCARC:
-                sh.GCARC = value;
-                return sh;
+                GCARC = value;
+                return;
             case DEPMEN:
-                sh.DEPMEN = value;
-                return sh;
+                DEPMEN = value;
+                return;
             case CMPAZ:
-                sh.CMPAZ = value;
-                return sh;
+                CMPAZ = value;
+                return;
             case CMPINC:
-                sh.CMPINC = value;
-                return sh;
+                CMPINC = value;
+                return;
             case XMINIMUM:
-                sh.XMINIMUM = value;
-                return sh;
+                XMINIMUM = value;
+                return;
             case XMAXIMUM:
-                sh.XMAXIMUM = value;
-                return sh;
+                XMAXIMUM = value;
+                return;
             case YMINIMUM:
-                sh.YMINIMUM = value;
-                return sh;
+                YMINIMUM = value;
+                return;
             case YMAXIMUM:
-                sh.YMAXIMUM = value;
-                return sh;
+                YMAXIMUM = value;
+                return;
             // case num63:
             // // return num63;
             // case num64:
@@ -876,44 +938,52 @@ class SACHeader implements SACHeaderData, Cloneable {
     }
 
     @Override
-    public SACHeader setSACEnumerated(SACHeaderEnum sacHeaderEnum, int value) {
+    public SACHeader setValue(SACHeaderEnum sacHeaderEnum, double value) {
+        SACHeader sh = clone();
+        sh.putValue(sacHeaderEnum, value);
+        return sh;
+    }
+
+    /**
+     * Changes the value of this. Only for construction.
+     */
+    void putSACEnumerated(SACHeaderEnum sacHeaderEnum, int value) {
         if (sacHeaderEnum.typeOf() != 2)
             throw new IllegalArgumentException(sacHeaderEnum + " is not an enumerized value");
-        SACHeader sh = clone();
         switch (sacHeaderEnum) {
             case IFTYPE:
-                sh.IFTYPE = value;
-                return sh;
+                IFTYPE = value;
+                return;
             case IDEP:
-                sh.IDEP = value;
-                return sh;
+                IDEP = value;
+                return;
             case IZTYPE:
-                sh.IZTYPE = value;
-                return sh;
+                IZTYPE = value;
+                return;
             case IINST:
-                sh.IINST = value;
-                return sh;
+                IINST = value;
+                return;
             case ISTREG:
-                sh.ISTREG = value;
-                return sh;
+                ISTREG = value;
+                return;
             case IEVREG:
-                sh.IEVREG = value;
-                return sh;
+                IEVREG = value;
+                return;
             case IEVTYP:
-                sh.IEVTYP = value;
-                return sh;
+                IEVTYP = value;
+                return;
             case IQUAL:
-                sh.IQUAL = value;
-                return sh;
+                IQUAL = value;
+                return;
             case ISYNTH:
-                sh.ISYNTH = value;
-                return sh;
+                ISYNTH = value;
+                return;
             case IMAGTYP:
-                sh.IMAGTYP = value;
-                return sh;
+                IMAGTYP = value;
+                return;
             case IMAGSRC:
-                sh.IMAGSRC = value;
-                return sh;
+                IMAGSRC = value;
+                return;
             // case num88:
             // num88 = value;
             // return;
@@ -948,49 +1018,57 @@ class SACHeader implements SACHeaderData, Cloneable {
     }
 
     @Override
-    public SACHeader setInt(SACHeaderEnum sacHeaderEnum, int value) {
-        if (sacHeaderEnum.typeOf() != 1) throw new IllegalArgumentException(sacHeaderEnum + " is not an integer value");
+    public SACHeader setSACEnumerated(SACHeaderEnum sacHeaderEnum, int value) {
         SACHeader sh = clone();
+        sh.putSACEnumerated(sacHeaderEnum, value);
+        return sh;
+    }
+
+    /**
+     * Changes the value of this. Only for construction.
+     */
+    void putInt(SACHeaderEnum sacHeaderEnum, int value) {
+        if (sacHeaderEnum.typeOf() != 1) throw new IllegalArgumentException(sacHeaderEnum + " is not an integer value");
         switch (sacHeaderEnum) {
             case NZYEAR:
-                sh.nzyear = value;
-                return sh;
+                nzyear = value;
+                return;
             case NZJDAY:
-                sh.nzjday = value;
-                return sh;
+                nzjday = value;
+                return;
             case NZHOUR:
-                sh.nzhour = value;
-                return sh;
+                nzhour = value;
+                return;
             case NZMIN:
-                sh.nzmin = value;
-                return sh;
+                nzmin = value;
+                return;
             case NZSEC:
-                sh.nzsec = value;
-                return sh;
+                nzsec = value;
+                return;
             case NZMSEC:
-                sh.nzmsec = value;
-                return sh;
+                nzmsec = value;
+                return;
             case NVHDR:
-                sh.nvhdr = value;
-                return sh;
+                nvhdr = value;
+                return;
             case NORID:
-                sh.NORID = value;
-                return sh;
+                NORID = value;
+                return;
             case NEVID:
-                sh.NEVID = value;
-                return sh;
+                NEVID = value;
+                return;
             case NPTS:
-                sh.npts = value;
-                return sh;
+                npts = value;
+                return;
             case NWFID:
-                sh.NWFID = value;
-                return sh;
+                NWFID = value;
+                return;
             case NXSIZE:
-                sh.nxsize = value;
-                return sh;
+                nxsize = value;
+                return;
             case NYSIZE:
-                sh.NYSIZE = value;
-                return sh;
+                NYSIZE = value;
+                return;
 
             default:
                 throw new RuntimeException(sacHeaderEnum + " is unused now");
@@ -998,6 +1076,13 @@ class SACHeader implements SACHeaderData, Cloneable {
 
     }
 
+    @Override
+    public SACHeader setInt(SACHeaderEnum sacHeaderEnum, int value) {
+        SACHeader sh = clone();
+        sh.putInt(sacHeaderEnum, value);
+        return sh;
+    }
+
     @Override
     public String getSACString(SACHeaderEnum sacHeaderEnum) {
         if (sacHeaderEnum.typeOf() != 8 && sacHeaderEnum.typeOf() != 16)
@@ -0,0 +1,158 @@
+package io.github.kensuke1984.kibrary.util.sac;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.kensuke1984.kibrary.util.EventFolder;
+
+/**
+ * Index of the headers of the SAC files in an event folder. The index is kept
+ * in a file {@value #INDEX_NAME} in the folder.
+ * <p>
+ * An entry is identified by the file name, size and last modified time of a
+ * SAC file and has the raw header (632 bytes) of the file. When the index is
+ * loaded, only the headers of SAC files which are new or changed are read,
+ * and entries of removed files are dropped. The index file is rewritten only
+ * if anything is changed.
+ * <p>
+ * Use {@link EventFolder#sacHeaderMap()}. Header values can be filtered
+ * without reading waveforms.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.1
+ */
+public final class SACHeaderIndex {
+
+    /**
+     * name of an index file in an event folder
+     */
+    public static final String INDEX_NAME = ".sacHeaderIndex";
+
+    /**
+     * "KSHI"
+     */
+    private static final int MAGIC = 0x4B534849;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private SACHeaderIndex() {
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final byte[] header;
+
+        private Entry(long size, long lastModified, byte[] header) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.header = header;
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**
+     * Loads the index of the folder, and updates it for new, changed and
+     * removed SAC files.
+     *
+     * @param eventFolder to look into
+     * @return <b>unmodifiable</b> Map of all the SAC files in the folder and
+     * their headers
+     * @throws IOException if an I/O error occurs in listing or reading SAC files
+     */
+    public static Map<SACFileName, SACHeaderData> load(EventFolder eventFolder) throws IOException {
+        Path indexPath = eventFolder.toPath().resolve(INDEX_NAME);
+        Map<String, Entry> entries = read(indexPath);
+        Set<SACFileName> names = eventFolder.sacFileSet();
+        boolean changed = entries.size() != names.size();
+        Map<String, Entry> newEntries = new HashMap<>();
+        Map<SACFileName, SACHeaderData> headerMap = new HashMap<>();
+        for (SACFileName name : names) {
+            Path path = name.toPath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            Entry entry = entries.get(name.getName());
+            if (entry == null || !entry.matches(attributes)) {
+                byte[] header;
+                try (SACInputStream stream = SACInputStream.header(path)) {
+                    header = stream.readBytes(SACInputStream.HEADER_BYTES);
+                }
+                entry = new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), header);
+                changed = true;
+            }
+            newEntries.put(name.getName(), entry);
+            headerMap.put(name, new SACHeader(new SACInputStream(entry.header)));
+        }
+        if (changed) try {
+            write(indexPath, newEntries);
+        } catch (IOException e) {
+            System.err.println("Could not write " + indexPath + " " + e);
+        }
+        return Collections.unmodifiableMap(headerMap);
+    }
+
+    /**
+     * @param indexPath of an index file
+     * @return entries in the file. If the file does not exist or is broken, an
+     * empty map.
+     */
+    private static Map<String, Entry> read(Path indexPath) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!Files.exists(indexPath)) return entries;
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (dis.readInt() != MAGIC || dis.readInt() != FORMAT_VERSION) return entries;
+            int n = dis.readInt();
+            for (int i = 0; i < n; i++) {
+                String name = dis.readUTF();
+                long size = dis.readLong();
+                long lastModified = dis.readLong();
+                byte[] header = new byte[SACInputStream.HEADER_BYTES];
+                dis.readFully(header);
+                entries.put(name, new Entry(size, lastModified, header));
+            }
+        } catch (IOException e) {
+            System.err.println(indexPath + " is broken and will be rebuilt.");
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Writes a temporary file and moves it to the index file.
+     */
+    private static void write(Path indexPath, Map<String, Entry> entries) throws IOException {
+        Path tmpPath = indexPath.resolveSibling(INDEX_NAME + "." + System.nanoTime() + ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmpPath, StandardOpenOption.CREATE_NEW)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(FORMAT_VERSION);
+                dos.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    dos.writeUTF(entry.getKey());
+                    dos.writeLong(entry.getValue().size);
+                    dos.writeLong(entry.getValue().lastModified);
+                    dos.write(entry.getValue().header);
+                }
+            }
+            Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+    }
+
+}
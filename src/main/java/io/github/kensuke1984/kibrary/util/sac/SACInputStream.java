@@ -1,71 +1,150 @@
 package io.github.kensuke1984.kibrary.util.sac;
 
-import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.EOFException;
-import java.io.FilterInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
- * Input stream for a SAC file
+ * Input for a SAC file
+ * <p>
+ * The file is loaded into a heap {@link ByteBuffer} by a {@link FileChannel}
+ * and decoded through it in little-endian. Files are not mapped, as a mapping
+ * is released only when the buffer is garbage collected. Waveform data
+ * are decoded in bulk by {@link #readFloats(int)}.
  *
  * @author Kensuke Konishi
- * @version 0.1.0.2
+ * @version 0.2.1
  * @see <a href=http://ds.iris.edu/ds/nodes/dmc/forms/sac/>SAC</a>
  * @see <a href=https://ds.iris.edu/files/sac-manual/manual/file_format.html>SAC
  * data format</a>
  */
-final class SACInputStream extends FilterInputStream {
+final class SACInputStream implements Closeable {
 
+    /**
+     * [byte] size of a header. float(4) * 70, int(4) * 40, String (8) * 22 +
+     * (16) 4* 70 + 4* 40 + 8* 22 +16 = 632
+     */
+    static final int HEADER_BYTES = 632;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Loads the whole file.
+     *
+     * @param sacPath to read
+     * @param options for opening the file
+     * @throws IOException if an I/O error occurs
+     */
     SACInputStream(Path sacPath, OpenOption... options) throws IOException {
-        super(new BufferedInputStream(Files.newInputStream(sacPath, options)));
+        this(sacPath, Long.MAX_VALUE, options);
+    }
+
+    /**
+     * @param sacPath to read
+     * @param length  [byte] maximum length to load from the head of the file
+     * @param options for opening the file
+     * @throws IOException if an I/O error occurs
+     */
+    private SACInputStream(Path sacPath, long length, OpenOption... options) throws IOException {
+        try (FileChannel channel = FileChannel.open(sacPath, withRead(options))) {
+            long size = Math.min(channel.size(), length);
+            if (Integer.MAX_VALUE < size) throw new IOException(sacPath + " is too large.");
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && 0 <= channel.read(buffer)) ;
+            buffer.flip();
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param bytes of a SAC file from the head (e.g. only the header part)
+     */
+    SACInputStream(byte[] bytes) {
+        buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param sacPath to read
+     * @return input which has only the header part of the file
+     * @throws IOException if an I/O error occurs
+     */
+    static SACInputStream header(Path sacPath) throws IOException {
+        return new SACInputStream(sacPath, HEADER_BYTES);
+    }
+
+    private static OpenOption[] withRead(OpenOption... options) {
+        OpenOption[] withRead = new OpenOption[options.length + 1];
+        System.arraycopy(options, 0, withRead, 0, options.length);
+        withRead[options.length] = StandardOpenOption.READ;
+        return withRead;
     }
 
     final float readFloat() throws IOException {
-        return Float.intBitsToFloat(readInt());
+        if (buffer.remaining() < 4) throw new EOFException();
+        return buffer.getFloat();
     }
 
     final int readInt() throws IOException {
-        int ch1 = in.read();
-        int ch2 = in.read();
-        int ch3 = in.read();
-        int ch4 = in.read();
-        if ((ch1 | ch2 | ch3 | ch4) < 0) throw new EOFException();
-        return (ch4 << 24) + (ch3 << 16) + (ch2 << 8) + (ch1);
+        if (buffer.remaining() < 4) throw new EOFException();
+        return buffer.getInt();
+    }
 
+    /**
+     * @param n the number of floats to read
+     * @return the floats as double values
+     * @throws IOException if the file has less than n floats left
+     */
+    final double[] readFloats(int n) throws IOException {
+        if (buffer.remaining() < 4L * n) throw new EOFException();
+        float[] floats = new float[n];
+        buffer.asFloatBuffer().get(floats);
+        buffer.position(buffer.position() + 4 * n);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++)
+            values[i] = floats[i];
+        return values;
     }
 
     /**
-     * See the general contract of the <code>skipBytes</code> method of
-     * <code>DataInput</code>.
-     * <p>
-     * Bytes for this operation are read from the contained input stream.
-     *
      * @param n the number of bytes to be skipped.
      * @return the actual number of bytes skipped.
-     * @throws IOException if the contained input stream does not support seek, or
-     *                     the stream has been closed and the contained input stream
-     *                     does not support reading after close, or another I/O error
-     *                     occurs.
      */
-    final int skipBytes(int n) throws IOException {
-        int total = 0;
-        int cur = 0;
-
-        while ((total < n) && ((cur = (int) in.skip(n - total)) > 0)) total += cur;
+    final int skipBytes(int n) {
+        int skipped = Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
 
-        return total;
+    /**
+     * @param n the number of bytes to read
+     * @return the raw bytes
+     * @throws IOException if the file has less than n bytes left
+     */
+    final byte[] readBytes(int n) throws IOException {
+        if (buffer.remaining() < n) throw new EOFException();
+        byte a[] = new byte[n];
+        buffer.get(a);
+        return a;
     }
 
     final String readString(int i) throws IOException {
-        byte a[] = new byte[i];
-        read(a);
-        return new String(a, 0, i).trim();
+        return new String(readBytes(i), 0, i).trim();
     }
 
     final boolean readSACBoolean() throws IOException {
         return readInt() == 1;
     }
+
+    /**
+     * The file is already closed after loading. It does nothing.
+     */
+    @Override
+    public void close() {
+    }
 }
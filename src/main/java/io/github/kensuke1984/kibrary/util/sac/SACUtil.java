@@ -17,7 +17,7 @@ import io.github.kensuke1984.kibrary.util.Trace;
  * Read/Write of a SAC file. (SAC: seismic analysis code)
  *
  * @author Kensuke Konishi
- * @version 0.1.1.1
+ * @version 0.1.2
  * @see <a href=http://ds.iris.edu/ds/nodes/dmc/forms/sac/>SAC</a>
  */
 public final class SACUtil {
@@ -253,7 +253,7 @@ public final class SACUtil {
      */
     public static Map<SACHeaderEnum, String> readHeader(Path sacPath) throws IOException {
         Map<SACHeaderEnum, String> headerMap = new EnumMap<>(SACHeaderEnum.class);
-        try (SACInputStream stream = new SACInputStream(sacPath)) {
+        try (SACInputStream stream = SACInputStream.header(sacPath)) {
             headerMap.put(SACHeaderEnum.DELTA, Float.toString(stream.readFloat())); // 0
             headerMap.put(SACHeaderEnum.DEPMIN, Float.toString(stream.readFloat())); // 1
             headerMap.put(SACHeaderEnum.DEPMAX, Float.toString(stream.readFloat())); // 2
@@ -404,14 +404,8 @@ public final class SACUtil {
         try (SACInputStream stream = new SACInputStream(sacPath)) {
             stream.skipBytes(79 * 4);
             int npts = stream.readInt();
-            double[] data = new double[npts];
-            stream.skipBytes(632 - 80 * 4);
-            // stream.skipBytes(632);
-            // float(4) * 70, int(4) * 40, String (8) * 22 + (16)
-            // 4* 70 + 4* 40 + 8* 22 +16 = 632
-            for (int i = 0; i < npts; i++)
-                data[i] = stream.readFloat();
-            return data;
+            stream.skipBytes(SACInputStream.HEADER_BYTES - 80 * 4);
+            return stream.readFloats(npts);
         }
 
     }
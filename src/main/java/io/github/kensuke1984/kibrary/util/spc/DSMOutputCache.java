@@ -0,0 +1,135 @@
+package io.github.kensuke1984.kibrary.util.spc;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of read spectrum files. The least recently used ones are dropped when
+ * the total size exceeds a limit.
+ * <p>
+ * Cached {@link DSMOutput}s are shared, so they must not be modified.
+ * If two threads ask for a file at once, it may be read twice.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.2
+ */
+public class DSMOutputCache {
+
+    /**
+     * approximate size (byte) of a {@link org.apache.commons.math3.complex.Complex} and the reference to it
+     */
+    private static final int COMPLEX_BYTES = 40;
+
+    /**
+     * maximum total size (byte)
+     */
+    private final long MAX_BYTES;
+
+    /**
+     * in the access order
+     */
+    private final LinkedHashMap<SpcFileName, DSMOutput> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * total size (byte) of the cached ones
+     */
+    private long bytes;
+
+    private long hitCount;
+
+    private long missCount;
+
+    /**
+     * @param maxBytes maximum total size (byte) of cached spectra
+     */
+    public DSMOutputCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes must not be negative.");
+        MAX_BYTES = maxBytes;
+    }
+
+    /**
+     * @param dsmOutput spectrum
+     * @return approximate size (byte) of the spectrum in the heap
+     */
+    public static long sizeOf(DSMOutput dsmOutput) {
+        long nValue = 0;
+        for (SpcBody body : dsmOutput.getSpcBodyList())
+            nValue += (long) body.getNumberOfComponent() * (body.getNp() + 1);
+        return nValue * COMPLEX_BYTES;
+    }
+
+    /**
+     * @param spcFileName to read
+     * @return the cached spectrum of the file, or the read one if it is not cached
+     * @throws IOException if an I/O error occurs
+     */
+    public DSMOutput read(SpcFileName spcFileName) throws IOException {
+        synchronized (this) {
+            DSMOutput dsmOutput = CACHE.get(spcFileName);
+            if (dsmOutput != null) {
+                hitCount++;
+                return dsmOutput;
+            }
+            missCount++;
+        }
+        DSMOutput dsmOutput = spcFileName.read();
+        put(spcFileName, dsmOutput);
+        return dsmOutput;
+    }
+
+    private synchronized void put(SpcFileName spcFileName, DSMOutput dsmOutput) {
+        long size = sizeOf(dsmOutput);
+        if (MAX_BYTES < size || CACHE.containsKey(spcFileName)) return;
+        CACHE.put(spcFileName, dsmOutput);
+        bytes += size;
+        for (Iterator<Map.Entry<SpcFileName, DSMOutput>> iterator = CACHE.entrySet().iterator();
+             MAX_BYTES < bytes; ) {
+            bytes -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return the number of reads served from the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of reads from files
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of cached spectra
+     */
+    public synchronized int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * @return total size (byte) of the cached spectra
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return hits / (hits + misses), 0 if nothing is read
+     */
+    public synchronized double getHitRate() {
+        return hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "hits: " + hitCount + ", misses: " + missCount + String.format(" (hit rate %.1f%%)", 100 * getHitRate()) +
+                ", cached: " + CACHE.size() + " (" + bytes / 1024 / 1024 + " MB)";
+    }
+
+}
@@ -1,7 +1,8 @@
 package io.github.kensuke1984.kibrary.util.spc;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.util.FastMath;
@@ -18,7 +19,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACComponent;
  * 
  * @author Kensuke Konishi
  *
- * @version 0.0.1.3
+ * @version 0.0.1.4
  *
  */
 public final class FujiConversion {
@@ -47,7 +48,6 @@ public final class FujiConversion {
 		int nbody = spectrum.nbody();
 		int np = spectrum.np();
 		double tlen = spectrum.tlen();
-		List<SpcBody> spcBodyList = new ArrayList<>(nbody);
 
 		// data part
 		double omegai = spectrum.omegai();
@@ -57,7 +57,7 @@ public final class FujiConversion {
 		String sourceID = spectrum.getSourceID();
 		double[] bodyR = spectrum.getBodyR();
 		double omega0 = spectrum.tlen(); // TODO
-		for (int i = 0; i < spectrum.nbody(); i++) {
+		List<SpcBody> spcBodyList = IntStream.range(0, nbody).parallel().mapToObj(i -> {
 			double r = bodyR[i];
 			double q = 1 / structure.getQmuAt(r);
 			double mu0 = structure.computeMu(r);
@@ -77,8 +77,8 @@ public final class FujiConversion {
 				}
 				newBody.add(ip, uQ);
 			}
-			spcBodyList.add(newBody);
-		}
+			return newBody;
+		}).collect(Collectors.toList());
 
 		return new DSMOutput() {
 
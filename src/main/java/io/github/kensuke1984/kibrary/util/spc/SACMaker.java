@@ -7,22 +7,17 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
-import java.util.EnumMap;
 import java.util.EnumSet;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.function.Predicate;
 
 import org.apache.commons.math3.util.FastMath;
 
-import io.github.kensuke1984.kibrary.butterworth.ButterworthFilter;
 import io.github.kensuke1984.kibrary.datacorrection.SourceTimeFunction;
 import io.github.kensuke1984.kibrary.datacorrection.SCARDEC;
 import io.github.kensuke1984.kibrary.datacorrection.SCARDEC.SCARDEC_ID;
 import io.github.kensuke1984.kibrary.util.Raypath;
 import io.github.kensuke1984.kibrary.util.Station;
-import io.github.kensuke1984.kibrary.util.Trace;
 import io.github.kensuke1984.kibrary.util.Utilities;
 import io.github.kensuke1984.kibrary.util.globalcmt.GlobalCMTID;
 import io.github.kensuke1984.kibrary.util.sac.SACComponent;
@@ -40,263 +35,13 @@ import io.github.kensuke1984.kibrary.util.sac.SACHeaderEnum;
  * in Global CMT catalogue, the information for the event is written in SAC.
  * 
  * 
- * @version 0.1.6.1.1
+ * @version 0.1.7
  * 
  * @author Kensuke Konishi
  * @see <a href=http://ds.iris.edu/ds/nodes/dmc/forms/sac/>SAC</a>
  */
 public class SACMaker implements Runnable {
 
-	private final static Map<SACHeaderEnum, String> initialMap = new EnumMap<>(SACHeaderEnum.class);
-
-	static {
-		initialMap.put(SACHeaderEnum.DEPMIN, "-12345.0");
-		initialMap.put(SACHeaderEnum.DEPMAX, "-12345.0");
-		initialMap.put(SACHeaderEnum.SCALE, "-12345.0");
-		initialMap.put(SACHeaderEnum.ODELTA, "-12345.0");
-		initialMap.put(SACHeaderEnum.O, "-12345.0");
-		initialMap.put(SACHeaderEnum.A, "-12345.0");
-		initialMap.put(SACHeaderEnum.T0, "-12345.0");
-		initialMap.put(SACHeaderEnum.T1, "-12345.0");
-		initialMap.put(SACHeaderEnum.T2, "-12345.0");
-		initialMap.put(SACHeaderEnum.T3, "-12345.0");
-		initialMap.put(SACHeaderEnum.T4, "-12345.0");
-		initialMap.put(SACHeaderEnum.T5, "-12345.0");
-		initialMap.put(SACHeaderEnum.T6, "-12345.0");
-		initialMap.put(SACHeaderEnum.T7, "-12345.0");
-		initialMap.put(SACHeaderEnum.T8, "-12345.0");
-		initialMap.put(SACHeaderEnum.T9, "-12345.0");
-		initialMap.put(SACHeaderEnum.F, "-12345.0");
-
-		initialMap.put(SACHeaderEnum.RESP0, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP1, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP2, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP3, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP4, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP5, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP6, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP7, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP8, "-12345.0");
-		initialMap.put(SACHeaderEnum.RESP9, "-12345.0");
-		initialMap.put(SACHeaderEnum.STEL, "-12345.0");
-		initialMap.put(SACHeaderEnum.STDP, "-12345.0");
-		initialMap.put(SACHeaderEnum.EVEL, "-12345.0");
-		initialMap.put(SACHeaderEnum.MAG, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER0, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER1, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER2, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER3, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER4, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER5, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER6, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER7, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER8, "-12345.0");
-		initialMap.put(SACHeaderEnum.USER9, "-12345.0");
-		initialMap.put(SACHeaderEnum.DIST, "-12345.0");
-		initialMap.put(SACHeaderEnum.DEPMEN, "-12345.0");
-		initialMap.put(SACHeaderEnum.CMPAZ, "-12345.0");
-		initialMap.put(SACHeaderEnum.CMPINC, "-12345.0");
-		initialMap.put(SACHeaderEnum.XMINIMUM, "-12345.0");
-		initialMap.put(SACHeaderEnum.XMAXIMUM, "-12345.0");
-		initialMap.put(SACHeaderEnum.YMINIMUM, "-12345.0");
-		initialMap.put(SACHeaderEnum.YMAXIMUM, "-12345.0");
-		initialMap.put(SACHeaderEnum.NVHDR, "6");
-		initialMap.put(SACHeaderEnum.NORID, "-12345");
-		initialMap.put(SACHeaderEnum.NEVID, "-12345");
-		initialMap.put(SACHeaderEnum.NWFID, "-12345");
-		initialMap.put(SACHeaderEnum.NXSIZE, "-12345");
-		initialMap.put(SACHeaderEnum.NYSIZE, "-12345");
-		initialMap.put(SACHeaderEnum.NZYEAR, "-12345");
-		initialMap.put(SACHeaderEnum.NZJDAY, "-12345");
-		initialMap.put(SACHeaderEnum.NZHOUR, "-12345");
-		initialMap.put(SACHeaderEnum.NZMIN, "-12345");
-		initialMap.put(SACHeaderEnum.NZSEC, "-12345");
-		initialMap.put(SACHeaderEnum.NZMSEC, "-12345");
-		initialMap.put(SACHeaderEnum.IFTYPE, "1");
-		initialMap.put(SACHeaderEnum.IDEP, "5");
-		initialMap.put(SACHeaderEnum.IZTYPE, "-12345");
-		initialMap.put(SACHeaderEnum.IINST, "-12345");
-		initialMap.put(SACHeaderEnum.ISTREG, "-12345");
-		initialMap.put(SACHeaderEnum.IEVREG, "-12345");
-		initialMap.put(SACHeaderEnum.IEVTYP, "-12345");
-		initialMap.put(SACHeaderEnum.IQUAL, "-12345");
-		initialMap.put(SACHeaderEnum.ISYNTH, "-12345");
-		initialMap.put(SACHeaderEnum.IMAGTYP, "-12345");
-		initialMap.put(SACHeaderEnum.IMAGSRC, "-12345");
-		initialMap.put(SACHeaderEnum.LEVEN, "true");
-		initialMap.put(SACHeaderEnum.LPSPOL, "false");
-		initialMap.put(SACHeaderEnum.LOVROK, "true");
-		initialMap.put(SACHeaderEnum.LCALDA, "true");
-		initialMap.put(SACHeaderEnum.KHOLE, "-12345");
-		initialMap.put(SACHeaderEnum.KO, "-12345");
-		initialMap.put(SACHeaderEnum.KA, "-12345");
-		initialMap.put(SACHeaderEnum.KT0, "-12345");
-		initialMap.put(SACHeaderEnum.KT1, "-12345");
-		initialMap.put(SACHeaderEnum.KT2, "-12345");
-		initialMap.put(SACHeaderEnum.KT3, "-12345");
-		initialMap.put(SACHeaderEnum.KT4, "-12345");
-		initialMap.put(SACHeaderEnum.KT5, "-12345");
-		initialMap.put(SACHeaderEnum.KT6, "-12345");
-		initialMap.put(SACHeaderEnum.KT7, "-12345");
-		initialMap.put(SACHeaderEnum.KT8, "-12345");
-		initialMap.put(SACHeaderEnum.KT9, "-12345");
-		initialMap.put(SACHeaderEnum.KF, "-12345");
-		initialMap.put(SACHeaderEnum.KUSER0, "-12345");
-		initialMap.put(SACHeaderEnum.KUSER1, "-12345");
-		initialMap.put(SACHeaderEnum.KUSER2, "-12345");
-		initialMap.put(SACHeaderEnum.KDATRD, "-12345");
-		initialMap.put(SACHeaderEnum.KINST, "-12345");
-		initialMap.put(SACHeaderEnum.num100, "-12345");
-		initialMap.put(SACHeaderEnum.num101, "-12345");
-		initialMap.put(SACHeaderEnum.num102, "-12345");
-		initialMap.put(SACHeaderEnum.num103, "-12345");
-		initialMap.put(SACHeaderEnum.num104, "-12345");
-		initialMap.put(SACHeaderEnum.num109, "-12345");
-		initialMap.put(SACHeaderEnum.num54, "-12345");
-		initialMap.put(SACHeaderEnum.num55, "-12345");
-		initialMap.put(SACHeaderEnum.num63, "-12345");
-		initialMap.put(SACHeaderEnum.num64, "-12345");
-		initialMap.put(SACHeaderEnum.num65, "-12345");
-		initialMap.put(SACHeaderEnum.num66, "-12345");
-		initialMap.put(SACHeaderEnum.num67, "-12345");
-		initialMap.put(SACHeaderEnum.num68, "-12345");
-		initialMap.put(SACHeaderEnum.num69, "-12345");
-		initialMap.put(SACHeaderEnum.num80, "-12345");
-		initialMap.put(SACHeaderEnum.num84, "-12345");
-		initialMap.put(SACHeaderEnum.num88, "-12345");
-		initialMap.put(SACHeaderEnum.num9, "-12345");
-		initialMap.put(SACHeaderEnum.num97, "-12345");
-		initialMap.put(SACHeaderEnum.num98, "-12345");
-		initialMap.put(SACHeaderEnum.num99, "-12345");
-	}
-
-	private class SAC implements SACData, Cloneable {
-		private double[] waveData;
-
-		@Override
-		protected SAC clone() {
-			try {
-				SAC sac = (SAC) super.clone();
-				sac.headerMap = new EnumMap<>(headerMap);
-				return sac;
-			} catch (Exception e) {
-				throw new RuntimeException("UneXPectED");
-			}
-		}
-
-		private SAC of(SACComponent component) {
-			SAC sac = clone();
-			switch (component.valueOf()) {
-			case 1:
-				sac = sac.setSACString(SACHeaderEnum.KCMPNM, "vertical");
-				break;
-			case 2:
-				sac = sac.setSACString(SACHeaderEnum.KCMPNM, "radial");
-				break;
-			case 3:
-				sac = sac.setSACString(SACHeaderEnum.KCMPNM, "trnsvers");
-				break;
-			default:
-			}
-			return sac;
-		}
-
-		private Map<SACHeaderEnum, String> headerMap = new EnumMap<>(initialMap);
-
-		private SAC() {
-		}
-
-		@Override
-		public boolean getBoolean(SACHeaderEnum sacHeaderEnum) {
-			return Boolean.parseBoolean(headerMap.get(sacHeaderEnum));
-		}
-
-		@Override
-		public int getInt(SACHeaderEnum sacHeaderEnum) {
-			return Integer.parseInt(headerMap.get(sacHeaderEnum));
-		}
-
-		@Override
-		public int getSACEnumerated(SACHeaderEnum sacHeaderEnum) {
-			return Integer.parseInt(headerMap.get(sacHeaderEnum));
-		}
-
-		@Override
-		public String getSACString(SACHeaderEnum sacHeaderEnum) {
-			return headerMap.get(sacHeaderEnum);
-		}
-
-		@Override
-		public double getValue(SACHeaderEnum sacHeaderEnum) {
-			return Double.parseDouble(headerMap.get(sacHeaderEnum));
-		}
-
-		@Override
-		public Trace createTrace() {
-			throw new RuntimeException("UnEXPEcteD");
-		}
-
-		@Override
-		public SAC setBoolean(SACHeaderEnum sacHeaderEnum, boolean bool) {
-			if (headerMap.containsKey(sacHeaderEnum))
-				throw new RuntimeException("UNEeXpExted");
-			headerMap.put(sacHeaderEnum, String.valueOf(bool));
-			return this;
-		}
-
-		@Override
-		public SAC applyButterworthFilter(ButterworthFilter filter) {
-			throw new RuntimeException("UnEXPEcteD");
-		}
-
-		@Override
-		public SAC setValue(SACHeaderEnum sacHeaderEnum, double value) {
-			if (headerMap.containsKey(sacHeaderEnum))
-				throw new RuntimeException("UNEeXpExted");
-			headerMap.put(sacHeaderEnum, String.valueOf(value));
-			return this;
-		}
-
-		@Override
-		public SAC setInt(SACHeaderEnum sacHeaderEnum, int value) {
-			if (headerMap.containsKey(sacHeaderEnum) && headerMap.get(sacHeaderEnum) != "-12345")
-				throw new RuntimeException("UNEeXpExted");
-			headerMap.put(sacHeaderEnum, String.valueOf(value));
-			return this;
-		}
-
-		@Override
-		public SAC setSACEnumerated(SACHeaderEnum sacHeaderEnum, int value) {
-			if (headerMap.containsKey(sacHeaderEnum))
-				throw new RuntimeException("UNEeXpExted");
-			headerMap.put(sacHeaderEnum, String.valueOf(value));
-			return this;
-		}
-
-		@Override
-		public SAC setSACString(SACHeaderEnum sacHeaderEnum, String string) {
-			if (headerMap.containsKey(sacHeaderEnum))
-				throw new RuntimeException("UNEeXpExted");
-			headerMap.put(sacHeaderEnum, string);
-			return this;
-		}
-
-		@Override
-		public SAC setSACData(double[] waveData) {
-			Objects.requireNonNull(waveData);
-			if (waveData.length != getInt(SACHeaderEnum.NPTS))
-				throw new RuntimeException("UNEeXpExted");
-			this.waveData = waveData;
-			return this;
-		}
-
-		@Override
-		public double[] getData() {
-			return waveData.clone();
-		}
-
-	}
-
 	private DSMOutput secondarySPC;
 
 	private DSMOutput primeSPC;
@@ -306,6 +51,48 @@ public class SACMaker implements Runnable {
 	 */
 	private double samplingHz = 20;
 
+	/**
+	 * @param samplingHz
+	 *            of output SAC files (20)
+	 */
+	public void setSamplingHz(double samplingHz) {
+		this.samplingHz = samplingHz;
+	}
+
+	/**
+	 * The smallest sampling rate of time series from DSM spectra, i.e. 2 np
+	 * lsmooth/tlen (lsmooth is a power of 2), which is more than twice the
+	 * Nyquist rate of maxFreq and an integer multiple of baseHz. Above the
+	 * Nyquist rate, there must be a margin for the roll-off of the filters, and
+	 * {@link io.github.kensuke1984.kibrary.butterworth.BandPassFilter} accepts
+	 * only &omega;<sub>H</sub> &lt; &pi;/2.
+	 * 
+	 * @param np
+	 *            DSM parameter
+	 * @param tlen
+	 *            DSM parameter [s]
+	 * @param maxFreq
+	 *            maximum frequency [Hz] in use
+	 * @param baseHz
+	 *            the rate must be a multiple of this (e.g. finalSamplingHz).
+	 *            If it is 0, any rate is OK.
+	 * @return sampling Hz
+	 */
+	public static double findSamplingHz(int np, double tlen, double maxFreq, double baseHz) {
+		int pow2np = Integer.highestOneBit(np);
+		if (pow2np < np)
+			pow2np *= 2;
+		for (int lsmooth = 1; lsmooth <= 1 << 20; lsmooth *= 2) {
+			double samplingHz = 2 * pow2np * lsmooth / tlen;
+			if (samplingHz <= 4 * maxFreq)
+				continue;
+			if (baseHz == 0 || Math.abs(samplingHz / baseHz - Math.round(samplingHz / baseHz)) < 1e-9)
+				return samplingHz;
+		}
+		throw new IllegalArgumentException(
+				"No sampling rate for np " + np + " tlen " + tlen + " maxFreq " + maxFreq + " baseHz " + baseHz);
+	}
+
 	/**
 	 * 書き出す成分 デフォルトでは R, T, Z （すべて）
 	 */
@@ -426,8 +213,6 @@ public class SACMaker implements Runnable {
 	public void outputPAR(Path outDirectoryPath) throws IOException {
 		Files.createDirectories(outDirectoryPath);
 		setInformation();
-		SAC sac = new SAC();
-		setHeaderOn(sac);
 		for (int i = 0; i < primeSPC.nbody(); i++) {
 			SpcBody body = primeSPC.getSpcBodyList().get(i).copy();
 			if (secondarySPC != null)
@@ -444,7 +229,7 @@ public class SACMaker implements Runnable {
 					System.err.println(sacFileName + " already exists..");
 					return;
 				}
-				sac.of(component).setSACData(body.getTimeseries(component)).writeSAC(sacFileName.toPath());
+				createSAC(component, body.getTimeseries(component)).writeSAC(sacFileName.toPath());
 			}
 		}
 
@@ -453,8 +238,6 @@ public class SACMaker implements Runnable {
 	@Override
 	public void run() {
 		setInformation();
-		SAC sac = new SAC();
-		setHeaderOn(sac);
 		SpcBody body = primeSPC.getSpcBodyList().get(0).copy();
 		if (secondarySPC != null)
 			body.addBody(secondarySPC.getSpcBodyList().get(0));
@@ -465,7 +248,7 @@ public class SACMaker implements Runnable {
 			SACExtension ext = sourceTimeFunction != null ? SACExtension.valueOfConvolutedSynthetic(component)
 					: SACExtension.valueOfSynthetic(component);
 			try {
-				sac.of(component).setSACData(body.getTimeseries(component)).writeSAC(
+				createSAC(component, body.getTimeseries(component)).writeSAC(
 						outDirectoryPath.resolve(station.getName() + "." + primeSPC.getSourceID() + "." + ext));
 			} catch (IOException e) {
 				e.printStackTrace();
@@ -481,7 +264,7 @@ public class SACMaker implements Runnable {
 						? SACExtension.valueOfConvolutedTemporalPartial(component)
 						: SACExtension.valueOfTemporalPartial(component);
 				try {
-					sac.of(component).setSACData(bodyT.getTimeseries(component)).writeSAC(
+					createSAC(component, bodyT.getTimeseries(component)).writeSAC(
 							outDirectoryPath.resolve(station.getName() + "." + globalCMTID + "." + extT));
 				} catch (IOException e) {
 					e.printStackTrace();
@@ -491,11 +274,47 @@ public class SACMaker implements Runnable {
 	}
 
 	/**
-	 * set headers on the input sacFile
+	 * All the header values are set on one builder, and the data are not
+	 * copied.
+	 * 
+	 * @param component
+	 *            for KCMPNM
+	 * @param waveData
+	 *            of the component
+	 * @return SAC with the headers and the data
+	 */
+	private SACData createSAC(SACComponent component, double[] waveData) {
+		SACData.Builder builder = SACData.builder();
+		setHeaderOn(builder);
+		switch (component.valueOf()) {
+		case 1:
+			builder.setSACString(SACHeaderEnum.KCMPNM, "vertical");
+			break;
+		case 2:
+			builder.setSACString(SACHeaderEnum.KCMPNM, "radial");
+			break;
+		case 3:
+			builder.setSACString(SACHeaderEnum.KCMPNM, "trnsvers");
+			break;
+		default:
+		}
+		return builder.setData(waveData).build();
+	}
+
+	/**
+	 * set headers on the input builder
 	 * 
-	 * @param sac to set header on
+	 * @param sac
+	 *            to set header on
 	 */
-	private void setHeaderOn(SAC sac) {
+	private void setHeaderOn(SACData.Builder sac) {
+		sac.setInt(SACHeaderEnum.NVHDR, 6);
+		sac.setSACEnumerated(SACHeaderEnum.IFTYPE, 1);
+		sac.setSACEnumerated(SACHeaderEnum.IDEP, 5);
+		sac.setBoolean(SACHeaderEnum.LEVEN, true);
+		sac.setBoolean(SACHeaderEnum.LPSPOL, false);
+		sac.setBoolean(SACHeaderEnum.LOVROK, true);
+		sac.setBoolean(SACHeaderEnum.LCALDA, true);
 		if (beginDateTime != null)
 			sac.setEventTime(beginDateTime);
 		sac.setValue(SACHeaderEnum.B, 0);
@@ -1,20 +1,16 @@
 package io.github.kensuke1984.kibrary.util.spc;
 
-import java.util.Arrays;
-
 import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 import org.apache.commons.math3.util.FastMath;
 
 import io.github.kensuke1984.kibrary.datacorrection.SourceTimeFunction;
+import io.github.kensuke1984.kibrary.math.InverseFFT;
 
 /**
  * Data for one element in one {@link SpcBody} in a {@link SpectrumFile}
  *
  * @author Kensuke Konishi
- * @version 0.1.6
+ * @version 0.1.7
  */
 public class SpcComponent {
 
@@ -45,9 +41,9 @@ public class SpcComponent {
     private Complex[] uFreq;
 
     /**
-     * 時間領域のデータ u[i] i=[0,nptsInTimedomain-1]
+     * 時間領域のデータ u[i] i=[0,nptsInTimedomain-1] (real part)
      */
-    private Complex[] uTime;
+    private double[] uTime;
 
     SpcComponent(int np) {
         NP = np;
@@ -88,7 +84,7 @@ public class SpcComponent {
     public void amplitudeCorrection(double tlen) {
         double tmp = nptsInTimeDomain * 1e3 / tlen;
         for (int i = 0; i < nptsInTimeDomain; i++)
-            uTime[i] = uTime[i].multiply(tmp);
+            uTime[i] *= tmp;
 
     }
 
@@ -101,7 +97,7 @@ public class SpcComponent {
     public void applyGrowingExponential(double omegai, double tlen) {
         double constant = omegai * tlen / nptsInTimeDomain;
         for (int i = 0; i < nptsInTimeDomain; i++)
-            uTime[i] = uTime[i].multiply(FastMath.exp(constant * i));
+            uTime[i] *= FastMath.exp(constant * i);
     }
 
     /**
@@ -144,7 +140,7 @@ public class SpcComponent {
      * @return the data in time_domain
      */
     public double[] getTimeseries() {
-        return Arrays.stream(uTime).mapToDouble(Complex::getReal).toArray();
+        return uTime.clone();
     }
 
     private int getNPTS(int lsmooth) {
@@ -156,26 +152,15 @@ public class SpcComponent {
     public void toTimeDomain(int lsmooth) {
         nptsInTimeDomain = getNPTS(lsmooth);
 
-        int nnp = nptsInTimeDomain / 2;
-
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-
-        // pack to temporary Complex array
-        Complex[] data = new Complex[nptsInTimeDomain];
-        System.arraycopy(uFreq, 0, data, 0, NP + 1);
-
-        // set blank due to lsmooth
-        Arrays.fill(data, NP + 1, nnp + 1, Complex.ZERO);
-
-        // set values for imaginary frequency  F[i] = F[N-i]
-        for (int i = 0; i < nnp - 1; i++)
-            data[nnp + 1 + i] = data[nnp - 1 - i].conjugate();
-
-        // fast fourier transformation
-        data = fft.transform(data, TransformType.INVERSE);
+        // pack to an interleaved array
+        double[] spectrum = new double[2 * (NP + 1)];
+        for (int i = 0; i <= NP; i++) {
+            spectrum[2 * i] = uFreq[i].getReal();
+            spectrum[2 * i + 1] = uFreq[i].getImaginary();
+        }
 
-        // put values in time domain into collections
-        uTime = data;
+        // inverse fast fourier transformation (blank due to lsmooth and values for imaginary frequency are considered)
+        uTime = InverseFFT.getInstance(nptsInTimeDomain).toTimeSeries(spectrum, NP);
     }
 
 }
@@ -7,20 +7,21 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import io.github.kensuke1984.kibrary.Operation;
 import io.github.kensuke1984.kibrary.Property;
 import io.github.kensuke1984.kibrary.datacorrection.SourceTimeFunction;
 import io.github.kensuke1984.kibrary.util.EventFolder;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Utilities;
 import io.github.kensuke1984.kibrary.util.globalcmt.GlobalCMTID;
 import io.github.kensuke1984.kibrary.util.sac.SACComponent;
@@ -35,7 +36,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACData;
  * has only one folder, then model name will be set automatically the name of
  * the folder.
  * 
- * @version 0.2.4.2
+ * @version 0.2.6
  * 
  * @author Kensuke Konishi
  * @see <a href=http://ds.iris.edu/ds/nodes/dmc/forms/sac/>SAC</a>
@@ -69,6 +70,10 @@ public final class SpcSAC implements Operation {
 			property.setProperty("timePartial", "false");
 		if (!property.containsKey("modelName"))
 			property.setProperty("modelName", "");
+		if (!property.containsKey("samplingHz"))
+			property.setProperty("samplingHz", "auto");
+		if (!property.containsKey("maxFreq"))
+			property.setProperty("maxFreq", "0.08");
 	}
 
 	private void set() throws IOException {
@@ -109,7 +114,10 @@ public final class SpcSAC implements Operation {
 
 		computesPartial = Boolean.parseBoolean(property.getProperty("timePartial"));
 
-		samplingHz = 20; // TODO
+		if (property.getProperty("samplingHz").equals("auto"))
+			maxFreq = Double.parseDouble(property.getProperty("maxFreq"));
+		else
+			samplingHz = Double.parseDouble(property.getProperty("samplingHz"));
 	}
 
 	private Path sourceTimeFunctionPath;
@@ -125,10 +133,24 @@ public final class SpcSAC implements Operation {
 	private String modelName;
 
 	/**
-	 * サンプリングヘルツ 当面は２０Hz固定
+	 * サンプリングヘルツ. If it is 0, the smallest one for {@link #maxFreq}
+	 * which is a multiple of {@link #OBSERVED_SAMPLING_HZ} is chosen for each
+	 * spectrum.
 	 */
 	private double samplingHz;
 
+	/**
+	 * [Hz] of observed SAC files. Synthetics are cut at the same points as
+	 * them, so an automatic rate must be a multiple of this.
+	 */
+	private static final double OBSERVED_SAMPLING_HZ = 20;
+
+	/**
+	 * [Hz] maximum frequency in use, which is used only if {@link #samplingHz}
+	 * is automatically chosen.
+	 */
+	private double maxFreq;
+
 	/**
 	 * source time function.-1:Users, 0: none, 1: boxcar, 2: triangle
 	 */
@@ -251,13 +273,13 @@ public final class SpcSAC implements Operation {
 		if (shPath != null && (shSPCs = collectSHSPCs()).isEmpty())
 			throw new RuntimeException("No SH spector files are found.");
 
-		ExecutorService execs = Executors.newFixedThreadPool(nThread);
+		List<Runnable> sacMakers = new ArrayList<>();
 		// single
 		if (psvPath == null || shPath == null)
 			for (SpcFileName spc : psvSPCs != null ? psvSPCs : shSPCs) {
 				SpectrumFile one = SpectrumFile.getInstance(spc);
 				Files.createDirectories(outPath.resolve(spc.getSourceID()));
-				execs.execute(createSACMaker(one, null));
+				sacMakers.add(createSACMaker(one, null));
 			}
 
 		// both
@@ -271,16 +293,13 @@ public final class SpcSAC implements Operation {
 				}
 				SpectrumFile two = SpectrumFile.getInstance(pairFile(spc));
 				Files.createDirectories(outPath.resolve(spc.getSourceID()));
-				execs.execute(createSACMaker(one, two));
+				sacMakers.add(createSACMaker(one, two));
 			}
 
-		execs.shutdown();
-		while (!execs.isTerminated()) {
-			try {
-				Thread.sleep(100);
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+		try {
+			JobScheduler.invokeAll(sacMakers, nThread);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
 
 	}
@@ -305,8 +324,12 @@ public final class SpcSAC implements Operation {
 			pw.println("##Type source time function 0:none, 1:boxcar, 2:triangle. (0)");
 			pw.println("##or folder name containing *.stf if you want to your own GLOBALCMTID.stf ");
 			pw.println("#sourceTimeFunction");
-			pw.println("#SamplingHz (20) !You can not change yet!");
+			pw.println("##double SamplingHz of SAC files (auto)");
+			pw.println("##auto: the smallest for maxFreq which is a multiple of 20 Hz of observed SAC files,");
+			pw.println("##i.e. 20 for usual np and tlen. ObservedSyntheticDatasetMaker needs 20.");
 			pw.println("#samplingHz");
+			pw.println("##double maximum frequency in use, only for samplingHz auto (0.08)");
+			pw.println("#maxFreq");
 			pw.println("#timePartial If it is true, then temporal partial is computed. (false)");
 			pw.println("#timePartial");
 		}
@@ -325,9 +348,12 @@ public final class SpcSAC implements Operation {
 	 * @return {@link SACMaker}
 	 */
 	private SACMaker createSACMaker(SpectrumFile primeSPC, SpectrumFile secondarySPC) {
+		double samplingHz = this.samplingHz != 0 ? this.samplingHz
+				: SACMaker.findSamplingHz(primeSPC.np(), primeSPC.tlen(), maxFreq, OBSERVED_SAMPLING_HZ);
 		SourceTimeFunction sourceTimeFunction = getSourceTimeFunction(primeSPC.np(), primeSPC.tlen(), samplingHz,
 				new GlobalCMTID(primeSPC.getSourceID()));
 		SACMaker sm = new SACMaker(primeSPC, secondarySPC, sourceTimeFunction);
+		sm.setSamplingHz(samplingHz);
 		sm.setComponents(components);
 		sm.setTemporalDifferentiation(computesPartial);
 		sm.setOutPath(outPath.resolve(primeSPC.getSourceID()));
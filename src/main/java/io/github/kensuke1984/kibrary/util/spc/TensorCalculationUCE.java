@@ -1,115 +1,146 @@
 package io.github.kensuke1984.kibrary.util.spc;
 
-import java.util.Arrays;
-
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.util.FastMath;
 
 /**
  * Calculation of U<sub>j,q</sub> C<sub>jqrs</sub> &eta;<sub>ri,s</sub> in
  * Geller &amp; Hara (1993)
- * 
- * @version 0.0.2.1
- * 
+ * <p>
+ * For each frequency, the products U<sub>p,q</sub>&eta;<sub>ri,s</sub> are
+ * computed once and summed up with the weights of all the input
+ * {@link WeightingFactor}s. Spectra are held in interleaved arrays (re, im) and
+ * no {@link Complex} is created until the output.
+ *
+ * @version 0.1.0
+ *
  * @author Kensuke Konishi
- * 
+ *
  */
 class TensorCalculationUCE {
 
 	/**
-	 * Uj,q = u[j][q][(np)]
+	 * Up,q = u[p][q][(2np, 2np+1)]
 	 */
-	private Complex[][][] u = new Complex[3][3][];
+	private final double[][][] u = new double[3][3][];
 
 	/**
-	 * i に対して都度計算するので iは引数に取らない Eta ri,s = eta （[i]）[r][s][(np)]
+	 * Eta ri,s = eta[i][r][s][(2np, 2np+1)] rotated by {@link #angle}
 	 */
-	private Complex[][][] eta = new Complex[3][3][];
-
-	private WeightingFactor factor;
-
-	private SpcBody fp;
-	private SpcBody bp;
+	private final double[][][][] eta = new double[3][][][];
 
-	private int np;
+	private final int np;
 
 	/**
 	 * bpのテンソル座標軸をfpの軸に合わせるための角度
 	 */
-	private double angle;
+	private final double angle;
 
 	/**
-	 * input cに対するテンソル積の和を計算する
-	 * 
 	 * @param fp
 	 *            forward propagation spc file
 	 * @param bp
 	 *            back propagation spc file
-	 * @param factor
-	 *            どう重み付けするか
 	 * @param angle
+	 *            to rotate the tensor of bp to the one of fp
 	 */
-	TensorCalculationUCE(SpcBody fp, SpcBody bp, WeightingFactor factor, double angle) {
-		this.fp = fp;
-		this.bp = bp;
+	TensorCalculationUCE(SpcBody fp, SpcBody bp, double angle) {
 		np = fp.getNp();
-		this.factor = factor;
 		this.angle = angle;
+		for (int p = 0; p < 3; p++)
+			for (int q = 0; q < 3; q++)
+				u[p][q] = toInterleaved(
+						fp.getSpcComponent(SpcTensorComponent.valueOfFP(p + 1, q + 1)).getValueInFrequencyDomain());
+		for (int i = 0; i < 3; i++) {
+			double[][][] etaI = new double[3][3][];
+			for (int r = 0; r < 3; r++)
+				for (int s = 0; s < 3; s++)
+					etaI[r][s] = toInterleaved(bp.getSpcComponent(SpcTensorComponent.valueOfBP(i + 1, r + 1, s + 1))
+							.getValueInFrequencyDomain());
+			eta[i] = rotateEta(etaI);
+		}
+	}
+
+	private double[] toInterleaved(Complex[] spectrum) {
+		double[] interleaved = new double[2 * (np + 1)];
+		for (int ip = 0; ip < np + 1; ip++) {
+			interleaved[2 * ip] = spectrum[ip].getReal();
+			interleaved[2 * ip + 1] = spectrum[ip].getImaginary();
+		}
+		return interleaved;
 	}
 
 	/**
-	 * Uj,q Cjqrs Eri,sのi成分の計算
-	 * 
-	 * @param i
-	 *            (0: Z 1:R 2:T)
-	 * @return {@link Complex}[np] i成分を返す
+	 * Uj,q Cjqrs Eri,s for all the components i and input weighting factors
+	 *
+	 * @param factors
+	 *            どう重み付けするか
+	 * @return partial[k][i][np] i成分 (0: Z 1:R 2:T) for factors[k]
 	 */
-	public Complex[] calc(int i) {
-		Complex[] partial = new Complex[np + 1];
-		Arrays.fill(partial, Complex.ZERO);
-
-		for (int r = 0; r < 3; r++)
-			for (int s = 0; s < 3; s++) {
-				SpcTensorComponent irs = SpcTensorComponent.valueOfBP(i + 1, r + 1, s + 1);
-				eta[r][s] = bp.getSpcComponent(irs).getValueInFrequencyDomain();
-			}
-
-		eta = rotateEta(eta);
-
-		for (int p = 0; p < 3; p++)
-			for (int q = 0; q < 3; q++) {
-				SpcTensorComponent pq = SpcTensorComponent.valueOfFP(p + 1, q + 1);
-				u[p][q] = fp.getSpcComponent(pq).getValueInFrequencyDomain();
-				// u = rotate(u,anglefp);
-				for (int r = 0; r < 3; r++)
-					for (int s = 0; s < 3; s++) {
-						// 球座標系とデカルト座標の調整
-						double factor = getFactor(p, q, r, s);
-						if (factor != 0)
-							addPartial(partial, calcCrossCorrelation(u[p][q], eta[r][s]), factor);
+	Complex[][][] calc(WeightingFactor... factors) {
+		// 球座標系とデカルト座標の調整
+		double[][] weights = new double[factors.length][81];
+		for (int k = 0; k < factors.length; k++)
+			for (int p = 0; p < 3; p++)
+				for (int q = 0; q < 3; q++)
+					for (int r = 0; r < 3; r++)
+						for (int s = 0; s < 3; s++)
+							weights[k][27 * p + 9 * q + 3 * r + s] = getFactor(factors[k], p, q, r, s);
+
+		double[][][] partial = new double[factors.length][3][2 * (np + 1)];
+		for (int ip = 0; ip < np + 1; ip++) {
+			int re = 2 * ip;
+			int im = re + 1;
+			for (int i = 0; i < 3; i++)
+				for (int p = 0; p < 3; p++)
+					for (int q = 0; q < 3; q++) {
+						double uRe = u[p][q][re];
+						double uIm = u[p][q][im];
+						for (int r = 0; r < 3; r++)
+							for (int s = 0; s < 3; s++) {
+								double etaRe = eta[i][r][s][re];
+								double etaIm = eta[i][r][s][im];
+								double productRe = uRe * etaRe - uIm * etaIm;
+								double productIm = uRe * etaIm + uIm * etaRe;
+								int index = 27 * p + 9 * q + 3 * r + s;
+								for (int k = 0; k < factors.length; k++) {
+									double weight = weights[k][index];
+									if (weight == 0)
+										continue;
+									partial[k][i][re] += productRe * weight;
+									partial[k][i][im] += productIm * weight;
+								}
+							}
 					}
-			}
-		return partial;
+		}
+
+		Complex[][][] partialC = new Complex[factors.length][3][np + 1];
+		for (int k = 0; k < factors.length; k++)
+			for (int i = 0; i < 3; i++)
+				for (int ip = 0; ip < np + 1; ip++)
+					partialC[k][i][ip] = new Complex(partial[k][i][2 * ip], partial[k][i][2 * ip + 1]);
+		return partialC;
 	}
 
 	/**
 	 * 球座標系pqrs(0, 1, 2)に対して 係数を求める (0, 1, 2) = (r, theta, phi) (->) (Z, X, Y) =
 	 * (2, 0, 1)
-	 * 
+	 *
+	 * @param factor
 	 * @param p
 	 * @param q
 	 * @param r
 	 * @param s
 	 * @return
 	 */
-	private double getFactor(int p, int q, int r, int s) {
+	private static double getFactor(WeightingFactor factor, int p, int q, int r, int s) {
 		return factor.getFactor(switchCoordinateSystem(p), switchCoordinateSystem(q), switchCoordinateSystem(r),
 				switchCoordinateSystem(s));
 	}
 
 	/**
 	 * (0, 1, 2) = (r, theta, phi) &rarr; (Z, X, Y) = (2, 0, 1)
-	 * 
+	 *
 	 * @param i
 	 * @return
 	 */
@@ -129,85 +160,34 @@ class TensorCalculationUCE {
 
 	/**
 	 * back propagateのローカル座標をforwardのものにあわせる
-	 * 
+	 *
 	 * @param eta
-	 *            eta[3][3][np+1]
-	 * @param r
+	 *            eta[3][3][2(np+1)]
 	 * @return ETAir,s（back propagation） をテンソルのZ軸中心に {@link #angle} 回す
+	 *         (forwardMatrix eta)
 	 */
-	private Complex[][][] rotateEta(Complex[][][] eta) {
-
-		// double angle = this.angle+Math.toRadians(195);
+	private double[][][] rotateEta(double[][][] eta) {
 		/*
-		 * テンソル（eta）をangleだけ回転させ新しいテンソル(reta)を返す。
-		 * 
-		 * reta = forwardMatrix eta backmatrix
-		 * 
-		 * 中間値として neweta = forwardmatrix eta
-		 * 
-		 * reta = neweta backmatrix
+		 * テンソル（eta）をangleだけ回転させる
+		 *
+		 * neweta = forwardmatrix eta
 		 */
-		// angle= 0;
 		double cosine = FastMath.cos(angle);
 		double sine = FastMath.sin(angle);
 
 		// 回転行列 前から
 		double[][] forwardMatrix = new double[][] { { 1, 0, 0 }, { 0, cosine, sine }, { 0, -sine, cosine } };
 
-		// 回転行列 後ろから
-		double[][] backMatrix = new double[][] { { 1, 0, 0 }, { 0, cosine, -sine }, { 0, sine, cosine } };
-
-		Complex[][][] newETA = new Complex[3][3][np + 1];
-
-		for (int ip = 0; ip < np + 1; ip++)
-			for (int r = 0; r < 3; r++)
-				for (int s = 0; s < 3; s++) {
-					newETA[r][s][ip] = Complex.ZERO;
-					for (int k = 0; k < 3; k++)
-						newETA[r][s][ip] = newETA[r][s][ip].add(eta[k][s][ip].multiply(forwardMatrix[r][k]));
-				}
-
-		Complex[][][] rETA = new Complex[3][3][np + 1];
-
-		for (int ip = 0; ip < np + 1; ip++)
-			for (int r = 0; r < 3; r++)
-				for (int s = 0; s < 3; s++) {
-					rETA[r][s][ip] = Complex.ZERO;
+		double[][][] newETA = new double[3][3][2 * (np + 1)];
+		for (int r = 0; r < 3; r++)
+			for (int s = 0; s < 3; s++)
+				for (int x = 0; x < 2 * (np + 1); x++) {
+					double value = 0;
 					for (int k = 0; k < 3; k++)
-						rETA[r][s][ip] = rETA[r][s][ip].add(newETA[r][k][ip].multiply(backMatrix[k][s]));
+						value += eta[k][s][x] * forwardMatrix[r][k];
+					newETA[r][s][x] = value;
 				}
-
 		return newETA;
-
-	}
-
-	/**
-	 * uとEtaの計算をする（積） cross correlation
-	 * 
-	 * @param u
-	 * @param eta
-	 * @return c[i] = u[i]* eta[i]
-	 */
-	private Complex[] calcCrossCorrelation(Complex[] u, Complex[] eta) {
-		Complex[] c = new Complex[np + 1];
-		Arrays.parallelSetAll(c, i -> u[i].multiply(eta[i]));
-		return c;
-	}
-
-	/**
-	 * 
-	 * イメージとしては partial = partial+coef*uce
-	 * 
-	 * partialにcoef倍したuceをたす
-	 * 
-	 * @param partial
-	 * @param uce
-	 * @param coef
-	 */
-	private void addPartial(Complex[] partial, Complex[] uce, double coef) {
-		for (int i = 0; i < np + 1; i++)
-			partial[i] = partial[i].add(uce[i].multiply(coef));
-		return;
 	}
 
 }
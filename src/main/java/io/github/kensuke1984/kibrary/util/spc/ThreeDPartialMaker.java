@@ -1,16 +1,21 @@
 package io.github.kensuke1984.kibrary.util.spc;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 
+import io.github.kensuke1984.kibrary.butterworth.BandPassFilter;
 import io.github.kensuke1984.kibrary.datacorrection.SourceTimeFunction;
 import io.github.kensuke1984.kibrary.dsminformation.PolynomialStructure;
+import io.github.kensuke1984.kibrary.math.InverseFFT;
 import io.github.kensuke1984.kibrary.util.Earth;
 import io.github.kensuke1984.kibrary.util.HorizontalPosition;
 import io.github.kensuke1984.kibrary.util.Location;
@@ -24,7 +29,7 @@ import io.github.kensuke1984.kibrary.util.sac.SACComponent;
  * U<sub>j,q</sub> C<sub>jqrs</sub> &eta;<sub>ri,s</sub>
  *
  * @author Kensuke Konishi
- * @version 0.0.2.1
+ * @version 0.1.1
  */
 public class ThreeDPartialMaker {
 
@@ -41,7 +46,7 @@ public class ThreeDPartialMaker {
     /**
      * SACファイルにするときのサンプリング値 デフォルト20Hz
      */
-    private double samplingFrequency = 20;
+    private final double samplingFrequency;
 
     private int npts;
 
@@ -64,12 +69,24 @@ public class ThreeDPartialMaker {
      * @param bp a spc file for back propagation
      */
     public ThreeDPartialMaker(DSMOutput fp, DSMOutput bp) {
+        this(fp, bp, 20);
+    }
+
+    /**
+     * @param fp                a spc file for forward propagation
+     * @param bp                a spc file for back propagation
+     * @param samplingFrequency [Hz] of time series (e.g.
+     *                          {@link SACMaker#findSamplingHz(int, double, double, double)})
+     */
+    public ThreeDPartialMaker(DSMOutput fp, DSMOutput bp, double samplingFrequency) {
         if (!isGoodPair(fp, bp))
             throw new RuntimeException("An input pair of forward and backward propagation is invalid.");
         this.fp = fp;
         this.bp = bp;
+        this.samplingFrequency = samplingFrequency;
         findLsmooth();
         setAngles();
+        windowSynthesizer = new WindowSynthesizer(fp.np(), bp.tlen(), fp.omegai(), npts);
     }
 
     /**
@@ -89,25 +106,13 @@ public class ThreeDPartialMaker {
         Location sourceLocation = fp.getSourceLocation();
         String sourceID = fp.getSourceID();
         double[] bodyR = bp.getBodyR();
-        List<SpcBody> spcBodyList = new ArrayList<>(nbody);
-        for (int ibody = 0; ibody < nbody; ibody++) {
-            TensorCalculationUCE tensorcalc =
-                    new TensorCalculationUCE(fp.getSpcBodyList().get(ibody), bp.getSpcBodyList().get(ibody),
-                            type.getWeightingFactor(), angleForTensor);
-            // tensorcalc.setBP(angleBP);
-            // tensorcalc.setFP(angleFP);
-            // System.out.println("angleForTensor "+angleForTensor);
-            Complex[] partialZ = tensorcalc.calc(0); // frequency domain Z
-            Complex[] partial1 = tensorcalc.calc(1); // R
-            Complex[] partial2 = tensorcalc.calc(2); // T
-
-            Complex[] partialR = rotatePartial(partial1, partial2, SACComponent.R);
-            Complex[] partialT = rotatePartial(partial1, partial2, SACComponent.T);
+        List<SpcBody> spcBodyList = IntStream.range(0, nbody).parallel().mapToObj(ibody -> {
+            Complex[][] partialZRT = computeTensorCulculus(ibody, type.getWeightingFactor())[0];
             SpcBody body = new SpcBody(3, np);
-            for (int ip = 0; ip < bp.np() + 1; ip++)
-                body.add(ip, partialZ[ip], partialR[ip], partialT[ip]);
-            spcBodyList.add(body);
-        }
+            for (int ip = 0; ip < np + 1; ip++)
+                body.add(ip, partialZRT[0][ip], partialZRT[1][ip], partialZRT[2][ip]);
+            return body;
+        }).collect(Collectors.toList());
         return new DSMOutput() {
 
             @Override
@@ -179,12 +184,60 @@ public class ThreeDPartialMaker {
         Complex[] partial_frequency = type == PartialType.Q ? computeQpartial(component, iBody) :
                 computeTensorCulculus(component, iBody, type);
         if (null != sourceTimeFunction) partial_frequency = sourceTimeFunction.convolve(partial_frequency);
-        Complex[] partial_time = toTimedomain(partial_frequency);
-        double[] partialdouble = new double[npts];
-        for (int j = 0; j < npts; j++)
-            partialdouble[j] = partial_time[j].getReal();
-//        Arrays.stream(partial_time).mapToDouble(Complex::abs).toArray();
-        return partialdouble;
+        return toTimedomain(partial_frequency);
+    }
+
+    /**
+     * Partial derivatives in time windows filtered by the filter set by
+     * {@link #setFilter(BandPassFilter, double)}. The j-th point of the i-th
+     * window is at startTimes[i] + j step / samplingFrequency of the time
+     * series of {@link #createPartial(SACComponent, int, PartialType)}. The
+     * filter and the source time function are applied in frequency domain by
+     * {@link WindowSynthesizer}, and one inverse transform gives all the
+     * windows at the same offset from the samples.
+     *
+     * @param component  {@link SACComponent}
+     * @param iBody      index for SacBody
+     * @param type       {@link PartialType}
+     * @param startTimes [s] of the windows
+     * @param step       interval of the points at the sampling of this
+     * @param n          the numbers of points in the windows
+     * @return Ui(t) at the points in each window
+     * @throws IllegalArgumentException if a window is out of the time series
+     */
+    public double[][] createPartial(SACComponent component, int iBody, PartialType type, double[] startTimes,
+                                    int step, int[] n) {
+        Complex[] partial_frequency = type == PartialType.Q ? computeQpartial(component, iBody) :
+                computeTensorCulculus(component, iBody, type);
+        if (null != sourceTimeFunction) partial_frequency = sourceTimeFunction.convolve(partial_frequency);
+        return windowSynthesizer.synthesize(partial_frequency, startTimes, step, n);
+    }
+
+    /**
+     * for {@link #createPartial(SACComponent, int, PartialType, double[], int, int[])}
+     */
+    private final WindowSynthesizer windowSynthesizer;
+
+    /**
+     * @param filter     for {@link #createPartial(SACComponent, int, PartialType, double[], int, int[])}
+     * @param samplingHz [Hz] the filter is designed for. The response is
+     *                   evaluated at the physical frequencies, and it may
+     *                   differ from the sampling of this.
+     */
+    public void setFilter(BandPassFilter filter, double samplingHz) {
+        windowSynthesizer.setFilter(filter, samplingHz);
+    }
+
+    /**
+     * @param windowSynthesis if true, time series are evaluated only at the
+     *                        points in time windows by the chirp-z transform
+     *                        (or direct summation for short windows). It is
+     *                        ignored for zero-phase filters, whose pass
+     *                        backward in time needs the whole time series.
+     * @see WindowSynthesizer#setWindowSynthesis(boolean)
+     */
+    public void setWindowSynthesis(boolean windowSynthesis) {
+        windowSynthesizer.setWindowSynthesis(windowSynthesis);
     }
 
     private FujiConversion fujiConversion;
@@ -196,15 +249,56 @@ public class ThreeDPartialMaker {
      */
     public void setStructure(PolynomialStructure structure) {
         fujiConversion = new FujiConversion(structure);
+        qSpectrum = null;
     }
 
+    /**
+     * Q partials of all the bodies, computed at the first request
+     */
+    private DSMOutput qSpectrum;
+
     private Complex[] computeQpartial(SACComponent component, int iBody) {
-        if (fujiConversion == null) fujiConversion = new FujiConversion(PolynomialStructure.PREM);
-        DSMOutput qspec = fujiConversion.convert(toSpectrum(PartialType.MU));
-        return qspec.getSpcBodyList().get(iBody).getSpcComponent(component).getValueInFrequencyDomain();
+        if (qSpectrum == null) {
+            if (fujiConversion == null) fujiConversion = new FujiConversion(PolynomialStructure.PREM);
+            qSpectrum = fujiConversion.convert(toSpectrum(PartialType.MU));
+        }
+        return qSpectrum.getSpcBodyList().get(iBody).getSpcComponent(component).getValueInFrequencyDomain();
+    }
 
+    /**
+     * Types which are computed together with a requested one
+     */
+    private final Set<PartialType> partialTypes = EnumSet.noneOf(PartialType.class);
+
+    /**
+     * index of the body in {@link #partialSpectra}
+     */
+    private int cachedBody = -1;
+
+    /**
+     * type &rarr; partials (Z, R, T) in frequency domain for {@link #cachedBody}
+     */
+    private final Map<PartialType, Complex[][]> partialSpectra = new EnumMap<>(PartialType.class);
+
+    /**
+     * When a partial of a body is requested, the partials of all the types are
+     * computed at once, sharing the products of the forward and back
+     * propagations. Set all the types to be created for each body.
+     *
+     * @param partialTypes to be computed together. Types other than A, C, F,
+     *                     L, N, MU and LAMBDA are ignored.
+     */
+    public void setPartialTypes(Collection<PartialType> partialTypes) {
+        this.partialTypes.clear();
+        partialTypes.stream().filter(TENSOR_TYPES::contains).forEach(this.partialTypes::add);
     }
 
+    /**
+     * Types computed by U<sub>j,q</sub> C<sub>jqrs</sub> &eta;<sub>ri,s</sub>
+     */
+    private static final Set<PartialType> TENSOR_TYPES = EnumSet.of(PartialType.A, PartialType.C, PartialType.F,
+            PartialType.L, PartialType.N, PartialType.MU, PartialType.LAMBDA);
+
     /**
      * compute tensor culculus of u Cijkl eta
      *
@@ -214,12 +308,48 @@ public class ThreeDPartialMaker {
      * @return uCe
      */
     private Complex[] computeTensorCulculus(SACComponent component, int iBody, PartialType type) {
+        if (iBody != cachedBody || !partialSpectra.containsKey(type)) {
+            partialSpectra.clear();
+            cachedBody = iBody;
+            Set<PartialType> types = EnumSet.copyOf(partialTypes);
+            types.add(type);
+            WeightingFactor[] factors = types.stream().map(PartialType::getWeightingFactor)
+                    .toArray(WeightingFactor[]::new);
+            Complex[][][] partials = computeTensorCulculus(iBody, factors);
+            int k = 0;
+            for (PartialType computedType : types)
+                partialSpectra.put(computedType, partials[k++]);
+        }
+        Complex[][] partialZRT = partialSpectra.get(type);
+        switch (component) {
+            case Z:
+                return partialZRT[0];
+            case R:
+                return partialZRT[1];
+            case T:
+                return partialZRT[2];
+            default:
+                throw new RuntimeException("Unexpected component " + component);
+        }
+    }
+
+    /**
+     * @param iBody   index for sacbody
+     * @param factors {@link WeightingFactor}s
+     * @return uCe [k][Z, R, T] for factors[k] in frequency domain
+     */
+    private Complex[][][] computeTensorCulculus(int iBody, WeightingFactor... factors) {
         TensorCalculationUCE tensorcalc =
                 new TensorCalculationUCE(fp.getSpcBodyList().get(iBody), bp.getSpcBodyList().get(iBody),
-                        type.getWeightingFactor(), angleForTensor);
-        return component == SACComponent.Z ? tensorcalc.calc(0) :
-                rotatePartial(tensorcalc.calc(1), tensorcalc.calc(2), component);
-
+                        angleForTensor);
+        Complex[][][] partials = tensorcalc.calc(factors);
+        for (Complex[][] partial : partials) {
+            Complex[] partialR = rotatePartial(partial[1], partial[2], SACComponent.R);
+            Complex[] partialT = rotatePartial(partial[1], partial[2], SACComponent.T);
+            partial[1] = partialR;
+            partial[2] = partialT;
+        }
+        return partials;
     }
 
     private SourceTimeFunction sourceTimeFunction;
@@ -278,10 +408,10 @@ public class ThreeDPartialMaker {
     /**
      * 時間領域のデータにGrowingExponentialを考慮する
      */
-    private void applyGrowingExponential(Complex[] uTime) {
+    private void applyGrowingExponential(double[] uTime) {
         double x = bp.tlen() * fp.omegai() / npts;
         for (int i = 0; i < npts; i++)
-            uTime[i] = uTime[i].multiply(Math.exp(i * x));
+            uTime[i] *= Math.exp(i * x);
 
     }
 
@@ -290,10 +420,10 @@ public class ThreeDPartialMaker {
      *
      * @param uTime time series
      */
-    private void correctAmplitude(Complex[] uTime) {
+    private void correctAmplitude(double[] uTime) {
         double tmp = npts * 1e3 / bp.tlen();
         for (int i = 0; i < npts; i++)
-            uTime[i] = uTime[i].multiply(tmp);
+            uTime[i] *= tmp;
     }
 
     /**
@@ -303,8 +433,8 @@ public class ThreeDPartialMaker {
      * @param spector u in frequency domain
      * @return u in time domain
      */
-    private Complex[] toTimedomain(Complex[] spector) {
-        Complex[] partial_time = inverseFourierTransform(spector);
+    private double[] toTimedomain(Complex[] spector) {
+        double[] partial_time = inverseFourierTransform(spector);
         applyGrowingExponential(partial_time);
         correctAmplitude(partial_time);
         return partial_time;
@@ -314,28 +444,21 @@ public class ThreeDPartialMaker {
      * input complexを時間領域に
      *
      * @param complex waveform in frequency domain
-     * @return 時間領域の複素数列
+     * @return 時間領域の実数列
      */
-    private Complex[] inverseFourierTransform(Complex[] complex) {
+    private double[] inverseFourierTransform(Complex[] complex) {
         // must be tested
         int nnp = fp.np() * lsmooth;
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-
-        Complex[] data = new Complex[nnp * 2];
-
-        // pack to temporary Complex array
-        System.arraycopy(complex, 0, data, 0, fp.np() + 1);
 
-        // set blank due to lsmooth
-        Arrays.fill(data, fp.np() + 1, nnp + 1, Complex.ZERO);
-
-        // set values for imaginary frequency
-        for (int i = 0; i < nnp - 1; i++)
-            data[nnp + i + 1] = data[nnp - i - 1].conjugate();
-
-        // fast fourier transformation
-        return fft.transform(data, TransformType.INVERSE); // check
+        // pack to an interleaved array
+        double[] spectrum = new double[2 * (fp.np() + 1)];
+        for (int i = 0; i <= fp.np(); i++) {
+            spectrum[2 * i] = complex[i].getReal();
+            spectrum[2 * i + 1] = complex[i].getImaginary();
+        }
 
+        // fast fourier transformation (blank due to lsmooth and values for imaginary frequency are considered)
+        return InverseFFT.getInstance(nnp * 2).toTimeSeries(spectrum, fp.np());
     }
 
     /**
@@ -345,7 +468,8 @@ public class ThreeDPartialMaker {
         int np = Integer.highestOneBit(fp.np());
         if (np < fp.np()) np *= 2;
 
-        lsmooth = (int) (0.5 * bp.tlen() * samplingFrequency / np);
+        // round-off in tlen samplingFrequency must not lower lsmooth
+        lsmooth = (int) (0.5 * bp.tlen() * samplingFrequency / np + 1e-9);
         int i = Integer.highestOneBit(lsmooth);
         if (i < lsmooth) i *= 2;
         lsmooth = i;
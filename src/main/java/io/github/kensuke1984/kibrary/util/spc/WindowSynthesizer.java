@@ -0,0 +1,246 @@
+package io.github.kensuke1984.kibrary.util.spc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.math3.complex.Complex;
+
+import io.github.kensuke1984.kibrary.butterworth.BandPassFilter;
+import io.github.kensuke1984.kibrary.math.ChirpZTransform;
+import io.github.kensuke1984.kibrary.math.InverseFFT;
+
+/**
+ * Time series of a DSM spectrum filtered by a band-pass filter at points in
+ * time windows.
+ * <p>
+ * The filter is applied in frequency domain. The pass forward in time is
+ * exact at the damped frequencies &omega;-i&omega;<sub>I</sub> of the spectra,
+ * as the filtered series is still causal. The pass backward in time of a
+ * zero-phase filter is not, as the series it makes before 0 is wrapped around
+ * to the end and grows by exp(&omega;<sub>I</sub> tlen) there. For the pass,
+ * the series filtered forward is weighted by exp(&sigma;t) instead and filtered
+ * at &omega;+i&sigma;, where the wrapped part decays by exp(-&sigma; tlen). The
+ * result is same as the filter applied to the whole time series.
+ * <p>
+ * The response of the filter is evaluated at the physical frequencies of the
+ * spectra for the sampling the filter is designed for. Points are at their
+ * exact times; a start of a window between two samples is shifted in
+ * frequency domain. Therefore the values do not depend on the sampling of the
+ * time series, which needs only to resolve the spectra.
+ *
+ * @author Kensuke Konishi
+ * @version 0.0.1
+ */
+public class WindowSynthesizer {
+
+    /**
+     * &sigma;tlen for the pass backward in time of zero-phase filters. The
+     * series wrapped around is suppressed by exp(-&sigma;tlen).
+     */
+    private static final double BACKWARD_DAMPING = Math.log(1e8);
+
+    /**
+     * Starts of windows closer than this (in samples) to a sample are on it.
+     */
+    private static final double GRID_EPSILON = 1e-9;
+
+    private final int np;
+
+    private final double tlen;
+
+    private final double omegai;
+
+    /**
+     * the number of points in the whole time series
+     */
+    private final int npts;
+
+    private BandPassFilter filter;
+
+    /**
+     * frequency response of one pass of {@link #filter} at &omega;-i&omega;<sub>I</sub>
+     * for the frequencies of the spectra [re(0), im(0), ..., re(np), im(np)]
+     */
+    private double[] forwardResponse;
+
+    /**
+     * frequency response of the pass backward in time of {@link #filter} at
+     * &omega;+i&sigma; for the frequencies of the time series [re(0), im(0),
+     * ..., re(npts/2), im(npts/2)]
+     */
+    private double[] backwardResponse;
+
+    private boolean windowSynthesis;
+
+    /**
+     * @param np     DSM parameter np
+     * @param tlen   DSM parameter tlen [s]
+     * @param omegai &omega;<sub>I</sub> of the spectra
+     * @param npts   the number of points in the whole time series (2 np
+     *               lsmooth, a power of 2)
+     */
+    public WindowSynthesizer(int np, double tlen, double omegai, int npts) {
+        if (npts < 2 * np) throw new IllegalArgumentException("npts " + npts + " is less than 2np " + 2 * np);
+        this.np = np;
+        this.tlen = tlen;
+        this.omegai = omegai;
+        this.npts = npts;
+    }
+
+    /**
+     * The responses of the filter are computed here once.
+     *
+     * @param filter     band-pass filter
+     * @param samplingHz [Hz] the filter is designed for
+     */
+    public void setFilter(BandPassFilter filter, double samplingHz) {
+        // omega dt of the filter for the frequencies of the spectra
+        double omegaStep = 2 * Math.PI / tlen / samplingHz;
+        double omegaiDt = omegai / samplingHz;
+        forwardResponse = new double[2 * (np + 1)];
+        for (int ip = 0; ip <= np; ip++) {
+            Complex r = filter.getCausalFrequencyResponse(new Complex(omegaStep * ip, -omegaiDt));
+            forwardResponse[2 * ip] = r.getReal();
+            forwardResponse[2 * ip + 1] = r.getImaginary();
+        }
+        backwardResponse = null;
+        if (filter.isBackward()) {
+            double sigmaDt = BACKWARD_DAMPING / tlen / samplingHz;
+            backwardResponse = new double[npts + 2];
+            for (int k = 0; k <= npts / 2; k++) {
+                // H(-(omega + i sigma))
+                Complex r = filter.getCausalFrequencyResponse(new Complex(-omegaStep * k, -sigmaDt));
+                backwardResponse[2 * k] = r.getReal();
+                backwardResponse[2 * k + 1] = r.getImaginary();
+            }
+        }
+        this.filter = filter;
+    }
+
+    /**
+     * @param windowSynthesis if true and the filter is causal, time series are
+     *                        evaluated only at the points in time windows by
+     *                        {@link ChirpZTransform}, whose cost depends on the
+     *                        number of the points and np but not on npts.
+     *                        Zero-phase filters always need the whole time
+     *                        series for the pass backward in time.
+     */
+    public void setWindowSynthesis(boolean windowSynthesis) {
+        this.windowSynthesis = windowSynthesis;
+    }
+
+    /**
+     * The j-th point of the i-th window is at startTimes[i] + j step tlen/npts
+     * (j = 0, ..., n[i]-1). One inverse transform gives all the windows whose
+     * starts are at the same offset from the samples of the time series (e.g.
+     * all on the samples).
+     *
+     * @param spectrum   at &omega;-i&omega;<sub>I</sub> (np+1 values), e.g.
+     *                   after a source time function is convolved
+     * @param startTimes [s] of the windows
+     * @param step       interval of the points in samples of the time series
+     * @param n          the numbers of points in the windows
+     * @return the filtered time series at the points in each window with the
+     * amplitude correction of DSM
+     * @throws IllegalArgumentException if a window is out of the time series
+     */
+    public double[][] synthesize(Complex[] spectrum, double[] startTimes, int step, int[] n) {
+        if (filter == null) throw new IllegalStateException("No filter is set.");
+        if (spectrum.length != np + 1) throw new IllegalArgumentException("The spectrum must have np+1 values.");
+        int[] firstPoints = new int[startTimes.length];
+        // offset of the start from the first point -> windows
+        Map<Double, List<Integer>> offsetWindows = new TreeMap<>();
+        for (int i = 0; i < startTimes.length; i++) {
+            double start = startTimes[i] * npts / tlen;
+            firstPoints[i] = (int) Math.floor(start + GRID_EPSILON);
+            double offset = Math.max(start - firstPoints[i], 0);
+            if (offset < GRID_EPSILON) offset = 0;
+            if (firstPoints[i] < 0 || npts - 1 < firstPoints[i] + (long) (n[i] - 1) * step + offset)
+                throw new IllegalArgumentException(
+                        "Window from " + startTimes[i] + " (" + n[i] + " points) is out of [0, " + tlen + ")");
+            offsetWindows.computeIfAbsent(offset, k -> new ArrayList<>()).add(i);
+        }
+
+        double[] filtered = new double[2 * (np + 1)];
+        for (int ip = 0; ip <= np; ip++) {
+            double re = spectrum[ip].getReal();
+            double im = spectrum[ip].getImaginary();
+            filtered[2 * ip] = re * forwardResponse[2 * ip] - im * forwardResponse[2 * ip + 1];
+            filtered[2 * ip + 1] = re * forwardResponse[2 * ip + 1] + im * forwardResponse[2 * ip];
+        }
+        // the time series is the waveform times exp(-damping t)
+        double dampingDt = omegai * tlen / npts;
+        int nSpectrum = np;
+        if (backwardResponse != null) {
+            filtered = filterBackward(filtered);
+            dampingDt = -BACKWARD_DAMPING / npts;
+            nSpectrum = npts / 2;
+        }
+        boolean synthesis = windowSynthesis && backwardResponse == null;
+        // amplitude (1/npts in the inverse transform)
+        double amplitude = npts * 1e3 / tlen;
+        double[][] waveforms = new double[startTimes.length][];
+        for (Map.Entry<Double, List<Integer>> entry : offsetWindows.entrySet()) {
+            double offset = entry.getKey();
+            double[] shifted = offset == 0 ? filtered : shift(filtered, nSpectrum, offset);
+            double[] uTime = synthesis ? null : InverseFFT.getInstance(npts).toTimeSeries(shifted, nSpectrum);
+            for (int i : entry.getValue()) {
+                double[] waveform = synthesis ?
+                        ChirpZTransform.toTimeSeries(shifted, nSpectrum, npts, firstPoints[i], step, n[i]) :
+                        new double[n[i]];
+                for (int j = 0; j < n[i]; j++) {
+                    int point = firstPoints[i] + j * step;
+                    waveform[j] = (synthesis ? waveform[j] : uTime[point]) * Math.exp((point + offset) * dampingDt) *
+                            amplitude;
+                }
+                waveforms[i] = waveform;
+            }
+        }
+        return waveforms;
+    }
+
+    /**
+     * @param spectrum at &omega;-i&omega;<sub>I</sub> filtered forward in time
+     *                 (np+1 values)
+     * @return spectrum at &omega;+i&sigma; filtered backward in time
+     * (npts/2+1 values)
+     */
+    private double[] filterBackward(double[] spectrum) {
+        InverseFFT fft = InverseFFT.getInstance(npts);
+        double[] uTime = fft.toTimeSeries(spectrum, np);
+        double weightDt = (omegai * tlen + BACKWARD_DAMPING) / npts;
+        for (int t = 0; t < npts; t++)
+            uTime[t] *= Math.exp(t * weightDt);
+        double[] backward = fft.toSpectrum(uTime);
+        for (int k = 0; k <= npts / 2; k++) {
+            double re = backward[2 * k];
+            double im = backward[2 * k + 1];
+            backward[2 * k] = re * backwardResponse[2 * k] - im * backwardResponse[2 * k + 1];
+            backward[2 * k + 1] = re * backwardResponse[2 * k + 1] + im * backwardResponse[2 * k];
+        }
+        return backward;
+    }
+
+    /**
+     * x(t + offset dt) by exp(i &omega; offset dt)
+     *
+     * @param spectrum  interleaved (nSpectrum+1 values)
+     * @param nSpectrum the number of steps in the spectrum
+     * @param offset    in samples
+     * @return shifted spectrum
+     */
+    private double[] shift(double[] spectrum, int nSpectrum, double offset) {
+        double[] shifted = new double[spectrum.length];
+        for (int k = 0; k <= nSpectrum; k++) {
+            double phase = 2 * Math.PI * k * offset / npts;
+            double cos = Math.cos(phase);
+            double sin = Math.sin(phase);
+            shifted[2 * k] = spectrum[2 * k] * cos - spectrum[2 * k + 1] * sin;
+            shifted[2 * k + 1] = spectrum[2 * k] * sin + spectrum[2 * k + 1] * cos;
+        }
+        return shifted;
+    }
+
+}
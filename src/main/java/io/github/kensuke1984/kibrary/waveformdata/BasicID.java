@@ -1,5 +1,6 @@
 package io.github.kensuke1984.kibrary.waveformdata;
 
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
 
 import org.apache.commons.math3.util.Precision;
@@ -34,12 +35,12 @@ import io.github.kensuke1984.kibrary.util.sac.WaveformType;
  * Position of a waveform for the ID<br>
  *
  * @author Kensuke Konishi
- * @version 0.3.1.2
+ * @version 0.3.2
  */
 public class BasicID {
 
     public boolean containsData() {
-        return DATA != null;
+        return DATA != null || DATA_BUFFER != null;
     }
 
     /**
@@ -47,11 +48,19 @@ public class BasicID {
      */
     private final double[] DATA;
 
+    /**
+     * waveform in a mapped data file. It is decoded every time it is accessed. If the waveform is on the heap, null
+     */
+    private final DoubleBuffer DATA_BUFFER;
+
     /**
      * @return Arrays of waveform data
      */
     public double[] getData() {
-        return DATA.clone();
+        if (DATA_BUFFER == null) return DATA.clone();
+        double[] data = new double[NPTS];
+        DATA_BUFFER.duplicate().get(data);
+        return data;
     }
 
     @Override
@@ -220,6 +229,29 @@ public class BasicID {
     public BasicID(WaveformType waveFormType, double samplingHz, double startTime, int npts, Station station,
                    GlobalCMTID globalCMTID, SACComponent sacComponent, double minPeriod, double maxPeriod,
                    long startByte, boolean convolute, double... waveformData) {
+        this(waveFormType, samplingHz, startTime, npts, station, globalCMTID, sacComponent, minPeriod, maxPeriod,
+                startByte, convolute, waveformData.clone(), null);
+        if (waveformData.length != 0 && waveformData.length != npts)
+            throw new IllegalArgumentException("Input waveform data length is invalid");
+    }
+
+    /**
+     * The waveform is not copied to the heap but decoded from the buffer when it is accessed.
+     *
+     * @param waveformBuffer view of the waveform data for this ID (e.g. in a mapped data file)
+     */
+    BasicID(WaveformType waveFormType, double samplingHz, double startTime, int npts, Station station,
+            GlobalCMTID globalCMTID, SACComponent sacComponent, double minPeriod, double maxPeriod, long startByte,
+            boolean convolute, DoubleBuffer waveformBuffer) {
+        this(waveFormType, samplingHz, startTime, npts, station, globalCMTID, sacComponent, minPeriod, maxPeriod,
+                startByte, convolute, null, waveformBuffer);
+        if (waveformBuffer.remaining() != npts)
+            throw new IllegalArgumentException("Input waveform data length is invalid");
+    }
+
+    private BasicID(WaveformType waveFormType, double samplingHz, double startTime, int npts, Station station,
+                    GlobalCMTID globalCMTID, SACComponent sacComponent, double minPeriod, double maxPeriod,
+                    long startByte, boolean convolute, double[] waveformData, DoubleBuffer waveformBuffer) {
         TYPE = waveFormType;
         SAMPLINGHZ = Precision.round(samplingHz, 3);
         START_TIME = Precision.round(startTime, 3);
@@ -231,18 +263,18 @@ public class BasicID {
         MAX_PERIOD = Precision.round(maxPeriod, 3);
         START_BYTE = startByte;
         CONVOLUTE = convolute;
-        if (waveformData.length != 0 && waveformData.length != npts)
-            throw new IllegalArgumentException("Input waveform data length is invalid");
-        DATA = waveformData.clone();
+        DATA = waveformData;
+        DATA_BUFFER = waveformBuffer;
     }
 
     /**
      * @return Trace of the waveform for this ID.
      */
     public Trace getTrace() {
-        double[] x = new double[DATA.length];
+        double[] data = getData();
+        double[] x = new double[data.length];
         Arrays.setAll(x, i -> START_TIME + i / SAMPLINGHZ);
-        return new Trace(x, DATA);
+        return new Trace(x, data);
     }
 
     /**
@@ -256,4 +288,15 @@ public class BasicID {
                 START_BYTE, CONVOLUTE, data);
     }
 
+    /**
+     * A new BasicID which decodes its waveform from the input buffer on access will be returned.
+     *
+     * @param data view of the waveform data to be set
+     * @return BasicID with the input data
+     */
+    BasicID setData(DoubleBuffer data) {
+        return new BasicID(TYPE, SAMPLINGHZ, START_TIME, NPTS, STATION, ID, COMPONENT, MIN_PERIOD, MAX_PERIOD,
+                START_BYTE, CONVOLUTE, data);
+    }
+
 }
@@ -4,6 +4,10 @@ import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -50,7 +54,7 @@ import io.github.kensuke1984.kibrary.util.sac.WaveformType;
  * TODO sampling Hz
  *
  * @author Kensuke Konishi
- * @version 0.3.0.3
+ * @version 0.3.1
  * @see {@link BasicID}
  */
 public final class BasicIDFile {
@@ -139,6 +143,65 @@ public final class BasicIDFile {
         return ids;
     }
 
+    /**
+     * The data file is memory-mapped instead of being read into the heap. The waveform of each ID is decoded only
+     * when {@link BasicID#getData()} is called, so a dataset larger than the memory can be used.
+     *
+     * @param idPath   {@link Path} of an ID file, if it does not exist, an
+     *                 IOException
+     * @param dataPath {@link Path} of an data file, if it does not exist, an
+     *                 IOException
+     * @return Array of {@link BasicID} referring waveform data in the mapped data file
+     * @throws IOException if an I/O error happens,
+     */
+    public static BasicID[] mapBasicIDandDataFile(Path idPath, Path dataPath) throws IOException {
+        BasicID[] ids = readBasicIDFile(idPath);
+        long dataSize = Files.size(dataPath);
+        long t = System.nanoTime();
+        BasicID lastID = ids[ids.length - 1];
+        if (dataSize != lastID.START_BYTE + lastID.NPTS * 8)
+            throw new RuntimeException(dataPath + " is not invalid for " + idPath);
+        DoubleBuffer[] buffers = mapData(dataPath, ids);
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = ids[i].setData(buffers[i]);
+        System.err.println("Mapping waveform done in " + Utilities.toTimeString(System.nanoTime() - t));
+        return ids;
+    }
+
+    /**
+     * Maps waveforms in a data file. The i th buffer is a view of the waveform for ids[i] (null if ids[i] is
+     * null). One mapping can not be larger than {@link Integer#MAX_VALUE} bytes, therefore a large file is mapped
+     * region by region.
+     *
+     * @param dataPath {@link Path} of a data file
+     * @param ids      whose waveforms are in the data file
+     * @return views of the waveforms for the ids
+     * @throws IOException if an I/O error occurs
+     */
+    static DoubleBuffer[] mapData(Path dataPath, BasicID[] ids) throws IOException {
+        DoubleBuffer[] buffers = new DoubleBuffer[ids.length];
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedByteBuffer region = null;
+            long regionStart = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == null) continue;
+                long start = ids[i].START_BYTE;
+                long end = start + ids[i].NPTS * 8L;
+                if (region == null || start < regionStart || regionStart + region.capacity() < end) {
+                    regionStart = start;
+                    region = channel.map(MapMode.READ_ONLY, regionStart,
+                            Math.min(fileSize - regionStart, Integer.MAX_VALUE));
+                }
+                ByteBuffer bb = region.duplicate();
+                bb.position((int) (start - regionStart));
+                bb.limit((int) (end - regionStart));
+                buffers[i] = bb.slice().asDoubleBuffer();
+            }
+        }
+        return buffers;
+    }
+
     /**
      * @param idPath {@link Path} of an ID file
      * @return Array of {@link BasicID} without waveform data
@@ -10,11 +10,10 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
@@ -26,6 +25,7 @@ import io.github.kensuke1984.kibrary.datacorrection.StaticCorrectionFile;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformation;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformationFile;
 import io.github.kensuke1984.kibrary.util.EventFolder;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Station;
 import io.github.kensuke1984.kibrary.util.Trace;
 import io.github.kensuke1984.kibrary.util.Utilities;
@@ -63,7 +63,7 @@ import io.github.kensuke1984.kibrary.util.sac.WaveformType;
  * network in one event</b>
  *
  * @author Kensuke Konishi
- * @version 0.2.1.1
+ * @version 0.2.1.3
  */
 public class ObservedSyntheticDatasetMaker implements Operation {
 
@@ -213,17 +213,18 @@ public class ObservedSyntheticDatasetMaker implements Operation {
     private void readPeriodRanges() {
         try {
             List<double[]> ranges = new ArrayList<>();
-            for (SACFileName name : Utilities.sacFileNameSet(obsPath)) {
-                if (!name.isOBS()) continue;
-                SACHeaderData header = name.readHeader();
-                double[] range =
-                        new double[]{header.getValue(SACHeaderEnum.USER0), header.getValue(SACHeaderEnum.USER1)};
-                boolean exists = false;
-                if (ranges.isEmpty()) ranges.add(range);
-                for (int i = 0; !exists && i < ranges.size(); i++)
-                    if (Arrays.equals(range, ranges.get(i))) exists = true;
-                if (!exists) ranges.add(range);
-            }
+            for (EventFolder eventFolder : Utilities.eventFolderSet(obsPath))
+                for (Map.Entry<SACFileName, SACHeaderData> entry : eventFolder.sacHeaderMap().entrySet()) {
+                    if (!entry.getKey().isOBS()) continue;
+                    SACHeaderData header = entry.getValue();
+                    double[] range =
+                            new double[]{header.getValue(SACHeaderEnum.USER0), header.getValue(SACHeaderEnum.USER1)};
+                    boolean exists = false;
+                    if (ranges.isEmpty()) ranges.add(range);
+                    for (int i = 0; !exists && i < ranges.size(); i++)
+                        if (Arrays.equals(range, ranges.get(i))) exists = true;
+                    if (!exists) ranges.add(range);
+                }
             periodRanges = ranges.toArray(new double[0][]);
         } catch (Exception e) {
             throw new RuntimeException("Error in reading period ranges from SAC files.");
@@ -264,19 +265,13 @@ public class ObservedSyntheticDatasetMaker implements Operation {
                 .collect(Collectors.toSet());
         readPeriodRanges();
 
-        int n = Runtime.getRuntime().availableProcessors();
-        ExecutorService execs = Executors.newFixedThreadPool(n);
         String dateStr = Utilities.getTemporaryString();
         Path waveIDPath = workPath.resolve("waveformID" + dateStr + ".dat");
         Path waveformPath = workPath.resolve("waveform" + dateStr + ".dat");
         try (WaveformDataWriter bdw = new WaveformDataWriter(waveIDPath, waveformPath, stationSet, idSet,
                 periodRanges)) {
             dataWriter = bdw;
-            for (EventFolder eventDir : eventDirs)
-                execs.execute(new Worker(eventDir));
-
-            execs.shutdown();
-            while (!execs.isTerminated()) Thread.sleep(1000);
+            JobScheduler.invokeAll(eventDirs.stream().map(Worker::new).collect(Collectors.toList()));
             System.err.println("\n" + numberOfPairs.get() + " pairs of observed and synthetic waveforms are output.");
         } catch (Exception e) {
             e.printStackTrace();
@@ -306,17 +301,20 @@ public class ObservedSyntheticDatasetMaker implements Operation {
             Path synEventPath = synPath.resolve(obsEventDir.getGlobalCMTID().toString());
             if (!Files.exists(synEventPath)) throw new RuntimeException(synEventPath + " does not exist.");
 
-            Set<SACFileName> obsFiles;
+            // headers are checked before reading waveforms
+            Map<SACFileName, SACHeaderData> obsHeaders;
+            Map<SACFileName, SACHeaderData> synHeaders;
             try {
-                (obsFiles = obsEventDir.sacFileSet()).removeIf(sfn -> !sfn.isOBS());
+                obsHeaders = obsEventDir.sacHeaderMap();
+                synHeaders = new EventFolder(synEventPath).sacHeaderMap();
             } catch (IOException e2) {
                 e2.printStackTrace();
                 return;
             }
 
-            for (SACFileName obsFileName : obsFiles) {
+            for (SACFileName obsFileName : obsHeaders.keySet()) {
                 // データセットに含める成分かどうか
-                if (!components.contains(obsFileName.getComponent())) continue;
+                if (!obsFileName.isOBS() || !components.contains(obsFileName.getComponent())) continue;
                 String stationName = obsFileName.getStationName();
                 GlobalCMTID id = obsFileName.getGlobalCMTID();
                 SACComponent component = obsFileName.getComponent();
@@ -325,7 +323,9 @@ public class ObservedSyntheticDatasetMaker implements Operation {
                                 stationName + "." + id + "." + SACExtension.valueOfSynthetic(component);
                 SACFileName synFileName = new SACFileName(synEventPath.resolve(name));
 
-                if (!synFileName.exists()) continue;
+                SACHeaderData obsHeader = obsHeaders.get(obsFileName);
+                SACHeaderData synHeader = synHeaders.get(synFileName);
+                if (synHeader == null) continue;
 
                 Set<TimewindowInformation> windows = timewindowInformationSet.stream()
                         .filter(info -> info.getStation().getName().equals(stationName))
@@ -335,6 +335,24 @@ public class ObservedSyntheticDatasetMaker implements Operation {
                 // タイムウインドウの情報が入っていなければ次へ
                 if (windows.isEmpty()) continue;
 
+                // Sampling Hz of observed and synthetic must be same as the
+                // value declared in the input file
+                if (obsHeader.getValue(SACHeaderEnum.DELTA) != 1 / sacSamplingHz &&
+                        obsHeader.getValue(SACHeaderEnum.DELTA) == synHeader.getValue(SACHeaderEnum.DELTA)) {
+                    System.err.println("Values of sampling Hz of observed and synthetic " +
+                            (1 / obsHeader.getValue(SACHeaderEnum.DELTA)) + ", " +
+                            (1 / synHeader.getValue(SACHeaderEnum.DELTA)) + " are invalid, they should be " +
+                            sacSamplingHz);
+                    continue;
+                }
+
+                // bandpassの読み込み 観測波形と理論波形とで違えばスキップ
+                if (obsHeader.getValue(SACHeaderEnum.USER0) != synHeader.getValue(SACHeaderEnum.USER0) ||
+                        obsHeader.getValue(SACHeaderEnum.USER1) != synHeader.getValue(SACHeaderEnum.USER1)) {
+                    System.err.println("band pass filter difference");
+                    continue;
+                }
+
                 SACData obsSac;
                 try {
                     obsSac = obsFileName.read();
@@ -353,25 +371,8 @@ public class ObservedSyntheticDatasetMaker implements Operation {
                     continue;
                 }
 
-                // Sampling Hz of observed and synthetic must be same as the
-                // value declared in the input file
-                if (obsSac.getValue(SACHeaderEnum.DELTA) != 1 / sacSamplingHz &&
-                        obsSac.getValue(SACHeaderEnum.DELTA) == synSac.getValue(SACHeaderEnum.DELTA)) {
-                    System.err.println("Values of sampling Hz of observed and synthetic " +
-                            (1 / obsSac.getValue(SACHeaderEnum.DELTA)) + ", " +
-                            (1 / synSac.getValue(SACHeaderEnum.DELTA)) + " are invalid, they should be " +
-                            sacSamplingHz);
-                    continue;
-                }
-
-                // bandpassの読み込み 観測波形と理論波形とで違えばスキップ
-                double minPeriod = 0;
-                double maxPeriod = Double.POSITIVE_INFINITY;
-                if (obsSac.getValue(SACHeaderEnum.USER0) != synSac.getValue(SACHeaderEnum.USER0) ||
-                        obsSac.getValue(SACHeaderEnum.USER1) != synSac.getValue(SACHeaderEnum.USER1)) {
-                    System.err.println("band pass filter difference");
-                    continue;
-                }
+                double minPeriod;
+                double maxPeriod;
                 minPeriod = obsSac.getValue(SACHeaderEnum.USER0) == -12345 ? 0 : obsSac.getValue(SACHeaderEnum.USER0);
                 maxPeriod = obsSac.getValue(SACHeaderEnum.USER1) == -12345 ? 0 : obsSac.getValue(SACHeaderEnum.USER1);
 
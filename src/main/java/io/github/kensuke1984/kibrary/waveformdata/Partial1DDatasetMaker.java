@@ -12,19 +12,19 @@ import java.util.Date;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
+import org.apache.commons.math3.complex.Complex;
+
 import io.github.kensuke1984.kibrary.Operation;
 import io.github.kensuke1984.kibrary.Property;
 import io.github.kensuke1984.kibrary.butterworth.BandPassFilter;
-import io.github.kensuke1984.kibrary.butterworth.ButterworthFilter;
 import io.github.kensuke1984.kibrary.datacorrection.SourceTimeFunction;
 import io.github.kensuke1984.kibrary.dsminformation.PolynomialStructure;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformation;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformationFile;
 import io.github.kensuke1984.kibrary.util.EventFolder;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Location;
 import io.github.kensuke1984.kibrary.util.Station;
 import io.github.kensuke1984.kibrary.util.Utilities;
@@ -33,8 +33,10 @@ import io.github.kensuke1984.kibrary.util.sac.SACComponent;
 import io.github.kensuke1984.kibrary.util.spc.DSMOutput;
 import io.github.kensuke1984.kibrary.util.spc.FujiConversion;
 import io.github.kensuke1984.kibrary.util.spc.PartialType;
+import io.github.kensuke1984.kibrary.util.spc.SACMaker;
 import io.github.kensuke1984.kibrary.util.spc.SpcFileName;
 import io.github.kensuke1984.kibrary.util.spc.SpcFileType;
+import io.github.kensuke1984.kibrary.util.spc.WindowSynthesizer;
 
 /**
  * Creates a pair of files containing 1-D partial derivatives
@@ -50,7 +52,7 @@ import io.github.kensuke1984.kibrary.util.spc.SpcFileType;
  * same events</b> TODO
  *
  * @author Kensuke Konishi
- * @version 0.2.0.4
+ * @version 0.2.2
  */
 public class Partial1DDatasetMaker implements Operation {
     private boolean backward;
@@ -83,8 +85,10 @@ public class Partial1DDatasetMaker implements Operation {
             pw.println("#minFreq");
             pw.println("##double maximum value of passband (0.08)");
             pw.println("#maxFreq");
-            pw.println("#double");
-            pw.println("#partialSamplingHz cant change now");
+            pw.println("##double SamplingHz for computation of partials (auto)");
+            pw.println("##auto: the smallest for maxFreq which is a multiple of finalSamplingHz.");
+            pw.println("##Partials do not depend on it, as the filter and the starts of time windows are exact.");
+            pw.println("#partialSamplingHz");
             pw.println("##double sampling Hz in output dataset (1)");
             pw.println("#finalSamplingHz");
             pw.println("##radius for perturbation points, must be set");
@@ -107,6 +111,7 @@ public class Partial1DDatasetMaker implements Operation {
         if (!property.containsKey("minFreq")) property.setProperty("minFreq", "0.005");
         if (!property.containsKey("maxFreq")) property.setProperty("maxFreq", "0.08");
         if (!property.containsKey("finalSamplingHz")) property.setProperty("finalSamplingHz", "1");
+        if (!property.containsKey("partialSamplingHz")) property.setProperty("partialSamplingHz", "auto");
         if (!property.containsKey("timewindowPath"))
             throw new IllegalArgumentException("There is no information about timewindowPath.");
     }
@@ -143,9 +148,10 @@ public class Partial1DDatasetMaker implements Operation {
         minFreq = Double.parseDouble(property.getProperty("minFreq"));
         maxFreq = Double.parseDouble(property.getProperty("maxFreq"));
         bodyR = Arrays.stream(property.getProperty("bodyR").split("\\s+")).mapToDouble(Double::parseDouble).toArray();
-        // partialSamplingHz
-        // =Double.parseDouble(reader.getFirstValue("partialSamplingHz")); TODO
         finalSamplingHz = Double.parseDouble(property.getProperty("finalSamplingHz"));
+        partialSamplingHz = property.getProperty("partialSamplingHz").equals("auto") ?
+                SACMaker.findSamplingHz(np, tlen, maxFreq, finalSamplingHz) :
+                Double.parseDouble(property.getProperty("partialSamplingHz"));
 
     }
 
@@ -175,9 +181,10 @@ public class Partial1DDatasetMaker implements Operation {
     private double maxFreq;
 
     /**
-     * spcFileをコンボリューションして時系列にする時のサンプリングHz デフォルトは２０ TODOまだ触れない
+     * spcFileをコンボリューションして時系列にする時のサンプリングHz. If it is auto, the
+     * smallest one for {@link #maxFreq} and {@link #finalSamplingHz}.
      */
-    private double partialSamplingHz = 20;
+    private double partialSamplingHz;
 
     /**
      * 最後に時系列で切り出す時のサンプリングヘルツ(Hz)
@@ -219,13 +226,20 @@ public class Partial1DDatasetMaker implements Operation {
 
     private int lsmooth;
 
+    /**
+     * the number of points in the time series at {@link #partialSamplingHz}
+     */
+    private int npts;
+
     private void setLsmooth() {
         int pow2np = Integer.highestOneBit(np);
         if (pow2np < np) pow2np *= 2;
 
-        int lsmooth = (int) (0.5 * tlen * partialSamplingHz / pow2np);
+        // round-off in tlen partialSamplingHz must not lower lsmooth
+        int lsmooth = (int) (0.5 * tlen * partialSamplingHz / pow2np + 1e-9);
         int ismooth = Integer.highestOneBit(lsmooth);
         this.lsmooth = ismooth == lsmooth ? lsmooth : ismooth * 2;
+        npts = pow2np * this.lsmooth * 2;
     }
 
     private class Worker implements Runnable {
@@ -319,11 +333,8 @@ public class Partial1DDatasetMaker implements Operation {
             }
         }
 
-        private void cutAndWrite(Station station, double[] filteredUt, TimewindowInformation t, double bodyR,
-                                 PartialType partialType) {
-
-            double[] cutU = sampleOutput(filteredUt, t);
-
+        private void write(Station station, TimewindowInformation t, double bodyR, PartialType partialType,
+                           double[] cutU) {
             PartialID pid = new PartialID(station, id, t.getComponent(), finalSamplingHz, t.getStartTime(), cutU.length,
                     1 / maxFreq, 1 / minFreq, 0, sourceTimeFunction != null, new Location(0, 0, bodyR), partialType,
                     cutU);
@@ -333,18 +344,18 @@ public class Partial1DDatasetMaker implements Operation {
             } catch (Exception e) {
                 e.printStackTrace();
             }
-
         }
 
-        private void process(DSMOutput spectrum) {
-            for (SACComponent component : components)
-                spectrum.getSpcBodyList().stream().map(body -> body.getSpcComponent(component))
-                        .forEach(spcComponent -> {
-                            if (sourceTimeFunction != null) spcComponent.applySourceTimeFunction(sourceTimeFunction);
-                            spcComponent.toTimeDomain(lsmooth);
-                            spcComponent.applyGrowingExponential(spectrum.omegai(), tlen);
-                            spcComponent.amplitudeCorrection(tlen);
-                        });
+        /**
+         * @return the partial of the body convolved with the source time
+         * function and filtered at the points in the windows
+         */
+        private double[][] synthesize(WindowSynthesizer windowSynthesizer, DSMOutput spectrum, int iBody,
+                                      SACComponent component, double[] startTimes, int[] outnpts) {
+            Complex[] uFreq =
+                    spectrum.getSpcBodyList().get(iBody).getSpcComponent(component).getValueInFrequencyDomain();
+            if (sourceTimeFunction != null) uFreq = sourceTimeFunction.convolve(uFreq);
+            return windowSynthesizer.synthesize(uFreq, startTimes, step, outnpts);
         }
 
         private void addPartialSpectrum(SpcFileName spcname) throws IOException {
@@ -359,19 +370,24 @@ public class Partial1DDatasetMaker implements Operation {
             Station station = new Station(stationName, spectrum.getObserverPosition(), "DSM");
             PartialType partialType = PartialType.valueOf(spcname.getFileType().toString());
             DSMOutput qSpectrum = null;
-            if (spcname.getFileType() == SpcFileType.PAR2 && partialTypes.contains(PartialType.PARQ)) {
+            if (spcname.getFileType() == SpcFileType.PAR2 && partialTypes.contains(PartialType.PARQ))
                 qSpectrum = fujiConversion.convert(spectrum);
-                process(qSpectrum);
-            }
-            process(spectrum);
+
+            // the filter and the source time function are applied in frequency domain
+            WindowSynthesizer windowSynthesizer = new WindowSynthesizer(np, tlen, spectrum.omegai(), npts);
+            windowSynthesizer.setFilter(filter, FILTER_SAMPLING_HZ);
 
             for (SACComponent component : components) {
-                Set<TimewindowInformation> tw = timewindowInformationSet.stream()
+                TimewindowInformation[] tw = timewindowInformationSet.stream()
                         .filter(info -> info.getStation().getName().equals(stationName))
                         .filter(info -> info.getGlobalCMTID().equals(id))
-                        .filter(info -> info.getComponent() == component).collect(Collectors.toSet());
+                        .filter(info -> info.getComponent() == component).toArray(TimewindowInformation[]::new);
 
-                if (tw.isEmpty()) continue;
+                if (tw.length == 0) continue;
+                double[] startTimes = Arrays.stream(tw).mapToDouble(TimewindowInformation::getStartTime).toArray();
+                int[] outnpts =
+                        Arrays.stream(tw).mapToInt(t -> (int) ((t.getEndTime() - t.getStartTime()) * finalSamplingHz))
+                                .toArray();
 
                 for (int k = 0; k < spectrum.nbody(); k++) {
                     double bodyR = spectrum.getBodyR()[k];
@@ -379,44 +395,17 @@ public class Partial1DDatasetMaker implements Operation {
                     for (double r : Partial1DDatasetMaker.this.bodyR)
                         if (r == bodyR) exists = true;
                     if (!exists) continue;
-                    double[] ut = spectrum.getSpcBodyList().get(k).getSpcComponent(component).getTimeseries();
-                    // applying the filter
-                    double[] filteredUt = filter.applyFilter(ut);
-                    for (TimewindowInformation t : tw)
-                        cutAndWrite(station, filteredUt, t, bodyR, partialType);
-                }
-                if (qSpectrum != null) for (int k = 0; k < spectrum.nbody(); k++) {
-                    double bodyR = spectrum.getBodyR()[k];
-                    boolean exists = false;
-                    for (double r : Partial1DDatasetMaker.this.bodyR)
-                        if (r == bodyR) exists = true;
-                    if (!exists) continue;
-                    double[] ut = qSpectrum.getSpcBodyList().get(k).getSpcComponent(component).getTimeseries();
-                    // applying the filter
-                    double[] filteredUt = filter.applyFilter(ut);
-                    for (TimewindowInformation t : tw)
-                        cutAndWrite(station, filteredUt, t, bodyR, PartialType.PARQ);
+                    double[][] cutU = synthesize(windowSynthesizer, spectrum, k, component, startTimes, outnpts);
+                    for (int i = 0; i < tw.length; i++)
+                        write(station, tw[i], bodyR, partialType, cutU[i]);
+                    if (qSpectrum == null) continue;
+                    double[][] cutQ = synthesize(windowSynthesizer, qSpectrum, k, component, startTimes, outnpts);
+                    for (int i = 0; i < tw.length; i++)
+                        write(station, tw[i], bodyR, PartialType.PARQ, cutQ[i]);
                 }
             }
         }
 
-        /**
-         * @param u                     partial waveform
-         * @param timewindowInformation cut information
-         * @return u cut by considering sampling Hz
-         */
-        private double[] sampleOutput(double[] u, TimewindowInformation timewindowInformation) {
-            int cutstart = (int) (timewindowInformation.getStartTime() * partialSamplingHz);
-            // 書きだすための波形
-            int outnpts = (int) ((timewindowInformation.getEndTime() - timewindowInformation.getStartTime()) *
-                    finalSamplingHz);
-            double[] sampleU = new double[outnpts];
-            // cutting a waveform for outputting
-            Arrays.setAll(sampleU, j -> u[cutstart + j * step]);
-
-            return sampleU;
-        }
-
         private EventFolder eventDir;
 
         private Worker(EventFolder eventDir) {
@@ -436,7 +425,14 @@ public class Partial1DDatasetMaker implements Operation {
     /**
      * filter いじらなくていい
      */
-    private ButterworthFilter filter;
+    private BandPassFilter filter;
+
+    /**
+     * [Hz] the filter is designed for. It is applied in frequency domain, and
+     * the response is evaluated at the physical frequencies for any
+     * {@link #partialSamplingHz}.
+     */
+    private static final double FILTER_SAMPLING_HZ = 20;
 
     /**
      * sacdataを何ポイントおきに取り出すか
@@ -500,20 +496,28 @@ public class Partial1DDatasetMaker implements Operation {
         long startTime = System.nanoTime();
 
         // pdm.createStreams();
-        int N_THREADS = Runtime.getRuntime().availableProcessors();
-        // N_THREADS = 2;
-        writeLog("going with " + N_THREADS + " threads");
+        writeLog("going with " + JobScheduler.getParallelism() + " threads");
 
         if (partialTypes.contains(PartialType.PARQ)) fujiConversion = new FujiConversion(PolynomialStructure.PREM);
 
         setLsmooth();
-        writeLog("Set lsmooth " + lsmooth);
+        writeLog("Set partialSamplingHz " + partialSamplingHz + " lsmooth " + lsmooth);
 
         // タイムウインドウの情報を読み取る。
         System.err.print("Reading timewindow information ");
         timewindowInformationSet = TimewindowInformationFile.read(timewindowPath);
         System.err.println("done");
 
+        // a window out of the synthetic is not zero-padded but skipped
+        Set<TimewindowInformation> outOfRange = timewindowInformationSet.stream()
+                .filter(info -> info.getStartTime() < 0 || tlen < info.getEndTime()).collect(Collectors.toSet());
+        if (!outOfRange.isEmpty()) {
+            for (TimewindowInformation info : outOfRange)
+                writeLog(info + " is out of the time series [0, " + tlen + "]. Skipped.");
+            timewindowInformationSet = timewindowInformationSet.stream().filter(info -> !outOfRange.contains(info))
+                    .collect(Collectors.toSet());
+        }
+
         if (sourceTimeFunction == -1) readSourceTimeFunctions();
 
         // filter設計
@@ -528,25 +532,17 @@ public class Partial1DDatasetMaker implements Operation {
         writeLog(partialTypes.stream().map(Object::toString).collect(Collectors.joining(" ", "Computing for ", "")));
 
         // sacdataを何ポイントおきに取り出すか
-        step = (int) (partialSamplingHz / finalSamplingHz);
+        step = (int) Math.round(partialSamplingHz / finalSamplingHz);
 
         Set<EventFolder> eventDirs = Utilities.eventFolderSet(workPath);
 
-        // create ThreadPool
-        ExecutorService execs = Executors.newFixedThreadPool(N_THREADS);
-
         Path idPath = workPath.resolve("partial1DID" + dateString + ".dat");
         Path datasetPath = workPath.resolve("partial1D" + dateString + ".dat");
         try (WaveformDataWriter pdw = new WaveformDataWriter(idPath, datasetPath, stationSet, idSet, periodRanges,
                 perturbationLocationSet)) {
 
             partialDataWriter = pdw;
-            for (EventFolder eventDir : eventDirs)
-                execs.execute(new Worker(eventDir));
-            // break;
-            execs.shutdown();
-
-            while (!execs.isTerminated()) Thread.sleep(100);
+            JobScheduler.invokeAll(eventDirs.stream().map(Worker::new).collect(Collectors.toList()));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -563,8 +559,8 @@ public class Partial1DDatasetMaker implements Operation {
     private double[][] periodRanges;
 
     private void setBandPassFilter() throws IOException {
-        double omegaH = maxFreq * 2 * Math.PI / partialSamplingHz;
-        double omegaL = minFreq * 2 * Math.PI / partialSamplingHz;
+        double omegaH = maxFreq * 2 * Math.PI / FILTER_SAMPLING_HZ;
+        double omegaL = minFreq * 2 * Math.PI / FILTER_SAMPLING_HZ;
         filter = new BandPassFilter(omegaH, omegaL, 4);
         filter.setBackward(backward);
         periodRanges = new double[][]{{1 / maxFreq, 1 / minFreq}};
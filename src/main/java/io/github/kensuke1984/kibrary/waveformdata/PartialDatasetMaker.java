@@ -6,35 +6,37 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import org.apache.commons.math3.complex.Complex;
 
 import io.github.kensuke1984.kibrary.Operation;
 import io.github.kensuke1984.kibrary.Property;
 import io.github.kensuke1984.kibrary.butterworth.BandPassFilter;
-import io.github.kensuke1984.kibrary.butterworth.ButterworthFilter;
 import io.github.kensuke1984.kibrary.datacorrection.SourceTimeFunction;
 import io.github.kensuke1984.kibrary.dsminformation.PolynomialStructure;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformation;
 import io.github.kensuke1984.kibrary.timewindow.TimewindowInformationFile;
+import io.github.kensuke1984.kibrary.util.JobScheduler;
 import io.github.kensuke1984.kibrary.util.Location;
 import io.github.kensuke1984.kibrary.util.Station;
 import io.github.kensuke1984.kibrary.util.Utilities;
 import io.github.kensuke1984.kibrary.util.globalcmt.GlobalCMTID;
 import io.github.kensuke1984.kibrary.util.sac.SACComponent;
 import io.github.kensuke1984.kibrary.util.spc.DSMOutput;
+import io.github.kensuke1984.kibrary.util.spc.DSMOutputCache;
 import io.github.kensuke1984.kibrary.util.spc.PartialType;
+import io.github.kensuke1984.kibrary.util.spc.SACMaker;
 import io.github.kensuke1984.kibrary.util.spc.SpcFileName;
 import io.github.kensuke1984.kibrary.util.spc.ThreeDPartialMaker;
 
@@ -67,7 +69,7 @@ import io.github.kensuke1984.kibrary.util.spc.ThreeDPartialMaker;
  * <p>
  * Because of DSM condition, stations can not have the same name...
  * 
- * @version 2.3.0.5
+ * @version 2.4.0
  * 
  * @author Kensuke Konishi
  */
@@ -126,9 +128,16 @@ public class PartialDatasetMaker implements Operation {
 	private Properties property;
 	private Path workPath;
 	/**
-	 * spcFileをコンボリューションして時系列にする時のサンプリングHz デフォルトは２０ TODOまだ触れない
+	 * spcFileをコンボリューションして時系列にする時のサンプリングHz. If it is auto, the
+	 * smallest one for {@link #maxFreq} and {@link #finalSamplingHz}.
 	 */
-	private double partialSamplingHz = 20;
+	private double partialSamplingHz;
+
+	/**
+	 * [Hz] the filter is designed for, i.e. that of SAC files. Its response is
+	 * evaluated at the physical frequencies for any {@link #partialSamplingHz}.
+	 */
+	private static final double FILTER_SAMPLING_HZ = 20;
 
 	@Override
 	public Properties getProperties() {
@@ -145,6 +154,11 @@ public class PartialDatasetMaker implements Operation {
 	 */
 	private double finalSamplingHz;
 
+	/**
+	 * If true, partials are synthesized only at the points in time windows.
+	 */
+	private boolean windowSynthesis;
+
 	/**
 	 * structure for Q partial
 	 */
@@ -183,37 +197,6 @@ public class PartialDatasetMaker implements Operation {
 			id = new GlobalCMTID(fpname.getSourceID());
 		}
 
-		/**
-		 * cut partial derivative in [start-ext, start+ext] The ext is for
-		 * filtering .
-		 * 
-		 * @param u waveform
-		 * @param timewindowInformation time window information
-		 * @return cut waveform
-		 */
-		private Complex[] cutPartial(double[] u, TimewindowInformation timewindowInformation) {
-			int cutstart = (int) (timewindowInformation.getStartTime() * partialSamplingHz) - ext;
-			// cutstartが振り切れた場合0 からにする
-			if (cutstart < 0)
-				return null;
-			int cutend = (int) (timewindowInformation.getEndTime() * partialSamplingHz) + ext;
-			Complex[] cut = new Complex[cutend - cutstart];
-			Arrays.parallelSetAll(cut, i -> new Complex(u[i + cutstart]));
-
-			return cut;
-		}
-
-		private double[] sampleOutput(Complex[] u, TimewindowInformation timewindowInformation) {
-			// 書きだすための波形
-			int outnpts = (int) ((timewindowInformation.getEndTime() - timewindowInformation.getStartTime())
-					* finalSamplingHz);
-			double[] sampleU = new double[outnpts];
-
-			// cutting a waveform for outputting
-			Arrays.parallelSetAll(sampleU, j -> u[ext + j * step].getReal());
-			return sampleU;
-		}
-
 		private SourceTimeFunction getSourceTimeFunction() {
 			return sourceTimeFunction == 0 ? null : userSourceTimeFunctions.get(id);
 		}
@@ -235,20 +218,36 @@ public class PartialDatasetMaker implements Operation {
 					.filter(info -> info.getStation().getName().equals(stationName))
 					.filter(info -> info.getGlobalCMTID().equals(id)).collect(Collectors.toSet());
 
+			// a window out of the synthetic is not zero-padded but skipped
+			Set<TimewindowInformation> outOfRange = timewindowList.stream()
+					.filter(info -> info.getStartTime() < 0 || tlen < info.getEndTime()).collect(Collectors.toSet());
+			if (!outOfRange.isEmpty()) {
+				timewindowList.removeAll(outOfRange);
+				try {
+					for (TimewindowInformation info : outOfRange)
+						writeLog(info + " is out of the time series [0, " + tlen + "]. Skipped.");
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+
 			// timewindow情報のないときスキップ
 			if (timewindowList.isEmpty())
 				return;
 
 			// System.out.println("I am " + Thread.currentThread().getName());
 			try {
-				fp = fpname.read();
+				fp = fpCache.read(fpname);
 			} catch (Exception e) {
 				e.printStackTrace();
 				return;
 			}
 
-			ThreeDPartialMaker threedPartialMaker = new ThreeDPartialMaker(fp, bp);
+			ThreeDPartialMaker threedPartialMaker = new ThreeDPartialMaker(fp, bp, partialSamplingHz);
 			threedPartialMaker.setSourceTimeFunction(getSourceTimeFunction());
+			threedPartialMaker.setPartialTypes(partialTypes);
+			threedPartialMaker.setWindowSynthesis(windowSynthesis);
+			threedPartialMaker.setFilter(filter, FILTER_SAMPLING_HZ);
 			if (structure != null)
 				threedPartialMaker.setStructure(structure);
 
@@ -256,39 +255,39 @@ public class PartialDatasetMaker implements Operation {
 			for (int ibody = 0, nbody = fp.nbody(); ibody < nbody; ibody++) {
 				// とりあえずtransverse（２）成分についての名前
 				Location location = fp.getObserverPosition().toLocation(fp.getBodyR()[ibody]);
+				int iBody = ibody;
 				for (PartialType type : partialTypes)
 					for (SACComponent component : components) {
-						if (timewindowList.stream().noneMatch(info -> info.getComponent() == component))
+						TimewindowInformation[] windows = timewindowList.stream()
+								.filter(info -> info.getComponent() == component).toArray(TimewindowInformation[]::new);
+						if (windows.length == 0)
 							continue;
-						double[] partial = threedPartialMaker.createPartial(component, ibody, type);
-						timewindowList.stream().filter(info -> info.getComponent() == component).forEach(info -> {
-							Complex[] u = cutPartial(partial, info);
-
-							u = filter.applyFilter(u);
-							double[] cutU = sampleOutput(u, info);
-
-							PartialID pid = new PartialID(station, id, component, finalSamplingHz, info.getStartTime(),
-									cutU.length, 1 / maxFreq, 1 / minFreq, 0, sourceTimeFunction != 0, location, type,
-									cutU);
+						// filtered in frequency domain and sampled only in the windows
+						double[] startTimes = Arrays.stream(windows).mapToDouble(TimewindowInformation::getStartTime)
+								.toArray();
+						int[] outnpts = Arrays.stream(windows)
+								.mapToInt(info -> (int) ((info.getEndTime() - info.getStartTime()) * finalSamplingHz))
+								.toArray();
+						double[][] cutU = threedPartialMaker.createPartial(component, iBody, type, startTimes, step,
+								outnpts);
+						for (int i = 0; i < windows.length; i++) {
+							PartialID pid = new PartialID(station, id, component, finalSamplingHz,
+									windows[i].getStartTime(), cutU[i].length, 1 / maxFreq, 1 / minFreq, 0,
+									sourceTimeFunction != 0, location, type, cutU[i]);
 							try {
 								partialDataWriter.addPartialID(pid);
 								System.out.print(".");
 							} catch (Exception e) {
 								e.printStackTrace();
 							}
-						});
+						}
 					}
 
 			}
 		}
 	}
 
-	private ButterworthFilter filter;
-
-	/**
-	 * バンドパスを安定させるためwindowを左右に ext = max period(s) ずつ伸ばす
-	 */
-	private int ext;
+	private BandPassFilter filter;
 
 	/**
 	 * sacdataを何ポイントおきに取り出すか
@@ -299,6 +298,11 @@ public class PartialDatasetMaker implements Operation {
 
 	private Set<GlobalCMTID> touchedSet = new HashSet<>();
 
+	/**
+	 * FP spectra shared by the stations
+	 */
+	private DSMOutputCache fpCache;
+
 	public PartialDatasetMaker(Properties property) throws IOException {
 		this.property = (Properties) property.clone();
 		set();
@@ -333,14 +337,22 @@ public class PartialDatasetMaker implements Operation {
 			pw.println("#minFreq");
 			pw.println("##double maximum value of passband (0.08)");
 			pw.println("#maxFreq");
-			pw.println("#double (20)");
-			pw.println("#partialSamplingHz cant change now");
+			pw.println("##double SamplingHz for computation of partials (auto)");
+			pw.println("##auto: the smallest for maxFreq which is a multiple of finalSamplingHz.");
+			pw.println("##Partials do not depend on it, as the filter and the starts of time windows are exact.");
+			pw.println("#partialSamplingHz");
 			pw.println("##double SamplingHz in output dataset (1)");
 			pw.println("#finalSamplingHz");
 			pw.println("##perturbationPath, must be set");
 			pw.println("#perturbationPath perturbationPoint.inf");
 			pw.println("##File for Qstructure (if no file, then PREM)");
 			pw.println("#qinf");
+			pw.println("##long maximum size (MB) of cached FP spectra (a quarter of the max heap size)");
+			pw.println("##It should hold the FP spectra of one perturbation point for all the events.");
+			pw.println("#fpCacheSize");
+			pw.println("##boolean if partials are synthesized only at the points in time windows (true)");
+			pw.println("##otherwise through the whole time series. Zero-phase filters always need the whole one.");
+			pw.println("#windowSynthesis");
 		}
 		System.err.println(outPath + " is created.");
 	}
@@ -367,9 +379,13 @@ public class PartialDatasetMaker implements Operation {
 		if (!property.containsKey("partialTypes"))
 			property.setProperty("partialTypes", "MU");
 		if (!property.containsKey("partialSamplingHz"))
-			property.setProperty("partialSamplingHz", "20");
+			property.setProperty("partialSamplingHz", "auto");
 		if (!property.containsKey("finalSamplingHz"))
 			property.setProperty("finalSamplingHz", "1");
+		if (!property.containsKey("fpCacheSize"))
+			property.setProperty("fpCacheSize", String.valueOf(Runtime.getRuntime().maxMemory() / 4 / 1024 / 1024));
+		if (!property.containsKey("windowSynthesis"))
+			property.setProperty("windowSynthesis", "true");
 	}
 
 	/**
@@ -405,10 +421,12 @@ public class PartialDatasetMaker implements Operation {
 		minFreq = Double.parseDouble(property.getProperty("minFreq"));
 		maxFreq = Double.parseDouble(property.getProperty("maxFreq"));
 		perturbationPath = getPath("perturbationPath");
-		// partialSamplingHz
-		// =Double.parseDouble(reader.getFirstValue("partialSamplingHz")); TODO
-
 		finalSamplingHz = Double.parseDouble(property.getProperty("finalSamplingHz"));
+		partialSamplingHz = property.getProperty("partialSamplingHz").equals("auto")
+				? SACMaker.findSamplingHz(np, tlen, maxFreq, finalSamplingHz)
+				: Double.parseDouble(property.getProperty("partialSamplingHz"));
+		fpCache = new DSMOutputCache(Long.parseLong(property.getProperty("fpCacheSize")) * 1024 * 1024);
+		windowSynthesis = Boolean.parseBoolean(property.getProperty("windowSynthesis"));
 	}
 
 	private void setLog() throws IOException {
@@ -460,26 +478,24 @@ public class PartialDatasetMaker implements Operation {
 	@Override
 	public void run() throws IOException {
 		setLog();
-		int N_THREADS = Runtime.getRuntime().availableProcessors();
-		writeLog("Running " + N_THREADS + " threads");
+		writeLog("Running " + JobScheduler.getParallelism() + " threads");
 		setTimeWindow();
 		// filter設計
 		setBandPassFilter();
 		// read a file for perturbation points.
 		readPerturbationPoints();
 
-		// バンドパスを安定させるためwindowを左右に ext = max period(s) ずつ伸ばす
-		ext = (int) (1 / minFreq * partialSamplingHz);
-
 		// sacdataを何ポイントおきに取り出すか
-		step = (int) (partialSamplingHz / finalSamplingHz);
+		step = (int) Math.round(partialSamplingHz / finalSamplingHz);
+		writeLog("partialSamplingHz " + partialSamplingHz + " step " + step);
 		setOutput();
-		int bpnum = 0;
 		setSourceTimeFunctions();
-		// bpフォルダごとにスタート
+		// bp files of all the stations grouped by perturbation points. The FP spectra of a point are used for all
+		// the stations one after another, so they stay in the cache (computed for one point at a time).
+		Map<String, Map<SpcFileName, Station>> bpFileMap = new TreeMap<>();
+		Map<Station, Path[]> fpEventPathMap = new HashMap<>();
 		for (Station station : stationSet) {
-			Path bp0000Path = bpPath.resolve("0000" + station.getName());
-			Path bpModelPath = bp0000Path.resolve(modelName);
+			Path bpModelPath = bpPath.resolve("0000" + station.getName()).resolve(modelName);
 
 			// Set of global cmt IDs for the station in the timewindow.
 			Set<GlobalCMTID> idSet = timewindowInformation.stream()
@@ -492,45 +508,45 @@ public class PartialDatasetMaker implements Operation {
 
 			// bpModelFolder内 spectorfile
 			Set<SpcFileName> bpFiles = Utilities.collectSpcFileName(bpModelPath);
-			System.out.println(bpFiles.size() + " bpfiles are found");
+			System.out.println(bpFiles.size() + " bpfiles are found for " + station);
 
 			// stationに対するタイムウインドウが存在するfp内のmodelフォルダ
-			Path[] fpEventPaths = idSet.stream().map(id -> fpPath.resolve(id + "/" + modelName))
-					.filter(Files::exists).toArray(Path[]::new);
-
-			int donebp = 0;
-			// bpフォルダ内の各bpファイルに対して
-			for (SpcFileName bpname : bpFiles) {
-				// create ThreadPool
-				ExecutorService execs = Executors.newFixedThreadPool(N_THREADS);
-				System.out.println("Working for " + bpname.getName() + " " + ++donebp + "/" + bpFiles.size());
-				// 摂動点の名前
+			fpEventPathMap.put(station, idSet.stream().map(id -> fpPath.resolve(id + "/" + modelName))
+					.filter(Files::exists).toArray(Path[]::new));
+			for (SpcFileName bpname : bpFiles)
+				bpFileMap.computeIfAbsent(bpname.getObserverID(), point -> new HashMap<>()).put(bpname, station);
+		}
+
+		int donePoint = 0;
+		// 摂動点ごとに 全ての観測点のbpファイルに対して
+		for (Map.Entry<String, Map<SpcFileName, Station>> pointEntry : bpFileMap.entrySet()) {
+			String pointName = pointEntry.getKey();
+			System.out.println("Working for " + pointName + " " + ++donePoint + "/" + bpFileMap.size());
+			for (Map.Entry<SpcFileName, Station> bpEntry : pointEntry.getValue().entrySet()) {
+				SpcFileName bpname = bpEntry.getKey();
+				Station station = bpEntry.getValue();
 				DSMOutput bp = bpname.read();
-				String pointName = bp.getObserverID();
 
 				// timewindowの存在するfpdirに対して
 				// ｂｐファイルに対する全てのfpファイルを
-				for (Path fpEventPath : fpEventPaths) {
+				List<PartialComputation> computations = new ArrayList<>();
+				for (Path fpEventPath : fpEventPathMap.get(station)) {
 					String eventName = fpEventPath.getParent().getFileName().toString();
 					SpcFileName fpfile = new SpcFileName(
 							fpEventPath.resolve(pointName + "." + eventName + ".PF..." + bpname.getMode() + ".spc"));
 					if (!fpfile.exists())
 						continue;
-					PartialComputation pc = new PartialComputation(bp, station, fpfile);
-					execs.execute(pc);
+					computations.add(new PartialComputation(bp, station, fpfile));
 				}
-				execs.shutdown();
-				while (!execs.isTerminated()) {
-					try {
-						Thread.sleep(100);
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
+				try {
+					JobScheduler.invokeAll(computations);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
 				}
 				partialDataWriter.flush();
-				System.out.println();
 			}
-			writeLog(+bpnum++ + "th " + bp0000Path + " was done ");
+			System.out.println();
+			writeLog(pointName + " was done. FP cache " + fpCache);
 		}
 		terminate();
 	}
@@ -586,6 +602,8 @@ public class PartialDatasetMaker implements Operation {
 		endTime = System.nanoTime();
 		long nanoSeconds = endTime - startTime;
 		String endLine = "Everything is done in " + Utilities.toTimeString(nanoSeconds) + ". Over n out! ";
+		System.err.println("FP cache " + fpCache);
+		writeLog("FP cache " + fpCache);
 		System.err.println(endLine);
 		writeLog(endLine);
 		writeLog(partialDataWriter.getIDPath() + " " + partialDataWriter.getDataPath() + " were created");
@@ -601,8 +619,8 @@ public class PartialDatasetMaker implements Operation {
 
 	private void setBandPassFilter() throws IOException {
 		System.err.println("Designing filter.");
-		double omegaH = maxFreq * 2 * Math.PI / partialSamplingHz;
-		double omegaL = minFreq * 2 * Math.PI / partialSamplingHz;
+		double omegaH = maxFreq * 2 * Math.PI / FILTER_SAMPLING_HZ;
+		double omegaL = minFreq * 2 * Math.PI / FILTER_SAMPLING_HZ;
 		filter = new BandPassFilter(omegaH, omegaL, 4);
 		writeLog(filter.toString());
 		periodRanges = new double[][] { { 1 / maxFreq, 1 / minFreq } };
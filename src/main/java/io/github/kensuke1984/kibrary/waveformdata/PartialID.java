@@ -1,5 +1,7 @@
 package io.github.kensuke1984.kibrary.waveformdata;
 
+import java.nio.DoubleBuffer;
+
 import io.github.kensuke1984.kibrary.util.Location;
 import io.github.kensuke1984.kibrary.util.Station;
 import io.github.kensuke1984.kibrary.util.globalcmt.GlobalCMTID;
@@ -34,7 +36,7 @@ import io.github.kensuke1984.kibrary.util.spc.PartialType;
  * One ID volume:{@link PartialIDFile#oneIDByte}
  * </p>
  *
- * @version 0.2.0.1.1
+ * @version 0.2.1
  * @author Kensuke Konishi
  *
  */
@@ -67,6 +69,15 @@ public class PartialID extends BasicID {
         POINT_LOCATION = perturbationLocation;
     }
 
+    PartialID(Station station, GlobalCMTID eventID, SACComponent sacComponent, double samplingHz, double startTime,
+              int npts, double minPeriod, double maxPeriod, long startByte, boolean isConvolved,
+              Location perturbationLocation, PartialType partialType, DoubleBuffer waveformBuffer) {
+        super(WaveformType.PARTIAL, samplingHz, startTime, npts, station, eventID, sacComponent, minPeriod, maxPeriod,
+                startByte, isConvolved, waveformBuffer);
+        PARTIAL_TYPE = partialType;
+        POINT_LOCATION = perturbationLocation;
+    }
+
     public Location getPerturbationLocation() {
         return POINT_LOCATION;
     }
@@ -107,4 +118,14 @@ public class PartialID extends BasicID {
                 CONVOLUTE, POINT_LOCATION, PARTIAL_TYPE, data);
     }
 
+    /**
+     * @param data view of the waveform data to be set
+     * @return {@link PartialID} decoding its waveform from the input buffer
+     */
+    @Override
+    PartialID setData(DoubleBuffer data) {
+        return new PartialID(STATION, ID, COMPONENT, SAMPLINGHZ, START_TIME, NPTS, MIN_PERIOD, MAX_PERIOD, START_BYTE,
+                CONVOLUTE, POINT_LOCATION, PARTIAL_TYPE, data);
+    }
+
 }
@@ -4,6 +4,7 @@ import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -45,7 +46,7 @@ import io.github.kensuke1984.kibrary.util.spc.PartialType;
  * READing has problem. TODO
  *
  * @author Kensuke Konishi
- * @version 0.3.0.3
+ * @version 0.3.1
  */
 public final class PartialIDFile {
 
@@ -75,6 +76,36 @@ public final class PartialIDFile {
         return ids;
     }
 
+    /**
+     * The data file is memory-mapped instead of being read into the heap. The waveform of each ID is decoded only
+     * when {@link PartialID#getData()} is called.
+     *
+     * @param idPath   {@link Path} of an ID file
+     * @param dataPath {@link Path} of a data file
+     * @param chooser  IDs which do not pass this are dropped
+     * @return Array of {@link PartialID} referring waveform data in the mapped data file
+     * @throws IOException if an I/O error occurs
+     */
+    public static PartialID[] mapPartialIDandDataFile(Path idPath, Path dataPath, Predicate<PartialID> chooser)
+            throws IOException {
+        PartialID[] ids = readPartialIDFile(idPath);
+        long t = System.nanoTime();
+        long dataSize = Files.size(dataPath);
+        PartialID lastID = ids[ids.length - 1];
+        if (dataSize != lastID.START_BYTE + lastID.NPTS * 8)
+            throw new RuntimeException(dataPath + " is not invalid for " + idPath);
+        PartialID[] chosen = Arrays.stream(ids).parallel().filter(chooser).toArray(PartialID[]::new);
+        DoubleBuffer[] buffers = BasicIDFile.mapData(dataPath, chosen);
+        for (int i = 0; i < chosen.length; i++)
+            chosen[i] = chosen[i].setData(buffers[i]);
+        System.err.println("Partial waveforms are mapped in " + Utilities.toTimeString(System.nanoTime() - t));
+        return chosen;
+    }
+
+    public static PartialID[] mapPartialIDandDataFile(Path idPath, Path dataPath) throws IOException {
+        return mapPartialIDandDataFile(idPath, dataPath, id -> true);
+    }
+
     /**
      * @param idPath {@link Path} of an ID file.
      * @return Array of {@link PartialID} without waveform data
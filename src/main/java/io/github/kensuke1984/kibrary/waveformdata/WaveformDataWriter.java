@@ -5,13 +5,20 @@ import java.io.Closeable;
 import java.io.DataOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -25,9 +32,18 @@ import io.github.kensuke1984.kibrary.util.sac.WaveformType;
  * BasicDatasetやPartialDatasetの書き込み
  * <p>
  * This class create a new set of dataset files.
+ * <p>
+ * IDs and waveforms can be added by multiple threads at once. Each thread
+ * encodes waveforms in its own staging block, and a full block is appended to
+ * the data file by one write together with the ID records of its waveforms, so
+ * the ID records are in the order of the waveforms in the data file. Blocks of
+ * all the threads are written by {@link #flush()} and {@link #close()}.
+ * Nothing is reserved in the data file before it is written. If a block can
+ * not be written, the data file is truncated back and the waveforms in the
+ * block are lost (the IOException is thrown).
  *
  * @author Kensuke Konishi
- * @version 0.4.0.1
+ * @version 0.5.2
  */
 public class WaveformDataWriter implements Closeable, Flushable {
     public Path getIDPath() {
@@ -46,7 +62,26 @@ public class WaveformDataWriter implements Closeable, Flushable {
     /**
      * 波形情報の書き出し
      */
-    private DataOutputStream dataStream;
+    private FileChannel dataChannel;
+
+    /**
+     * [byte] size of a staging block
+     */
+    private static final int STAGE_BYTES = 1 << 20;
+
+    /**
+     * staging blocks of all the threads
+     */
+    private final Queue<Stage> stages = new ConcurrentLinkedQueue<>();
+
+    /**
+     * staging block of each thread
+     */
+    private final ThreadLocal<Stage> stage = ThreadLocal.withInitial(() -> {
+        Stage stage = new Stage();
+        stages.add(stage);
+        return stage;
+    });
 
     /**
      * id information file
@@ -58,16 +93,37 @@ public class WaveformDataWriter implements Closeable, Flushable {
      */
     private Path dataPath;
 
+    /**
+     * Writes the staging blocks of all the threads and closes the files.
+     *
+     * @throws IOException if an I/O error occurs
+     */
     @Override
     public void close() throws IOException {
-        idStream.close();
-        dataStream.close();
+        try {
+            writeStages();
+            idStream.close();
+        } finally {
+            dataChannel.close();
+        }
     }
 
+    /**
+     * Writes the staging blocks of all the threads.
+     */
     @Override
     public void flush() throws IOException {
-        idStream.flush();
-        dataStream.flush();
+        writeStages();
+        synchronized (this) {
+            idStream.flush();
+        }
+    }
+
+    private void writeStages() throws IOException {
+        for (Stage stage : stages)
+            synchronized (stage) {
+                stage.write();
+            }
     }
 
     /**
@@ -134,9 +190,7 @@ public class WaveformDataWriter implements Closeable, Flushable {
         this.periodRanges = periodRanges;
         idStream = new DataOutputStream(
                 new BufferedOutputStream(Files.newOutputStream(idPath, StandardOpenOption.CREATE_NEW)));
-        dataStream = new DataOutputStream(
-                new BufferedOutputStream(Files.newOutputStream(dataPath, StandardOpenOption.CREATE_NEW)));
-        dataLength = Files.size(dataPath);
+        dataChannel = FileChannel.open(dataPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
         idStream.writeShort(stationSet.size());
         idStream.writeShort(globalCMTIDSet.size());
         idStream.writeShort(periodRanges.length);
@@ -192,54 +246,138 @@ public class WaveformDataWriter implements Closeable, Flushable {
     }
 
     /**
-     * The file size (byte). (should be StartByte)
+     * The file size (byte) written so far. (should be StartByte)
      */
     private long dataLength;
 
     /**
-     * Writes a waveform
+     * Appends a block of waveforms to the data file and the ID records of
+     * them. The start byte of each waveform is put in its record. If the block
+     * can not be written, the data file is truncated back.
      *
-     * @param data waveform data
+     * @param block   waveforms (from the position to the limit)
+     * @param pending ID records of the waveforms in the block
      */
-    private void addWaveform(double[] data) throws IOException {
-        for (double aData : data) dataStream.writeDouble(aData);
-        dataLength += 8 * data.length;
+    private synchronized void write(ByteBuffer block, List<PendingRecord> pending) throws IOException {
+        long start = dataLength;
+        int size = block.remaining();
+        try {
+            for (long position = start; block.hasRemaining(); )
+                position += dataChannel.write(block, position);
+        } catch (IOException e) {
+            dataChannel.truncate(start);
+            throw e;
+        }
+        dataLength += size;
+        for (PendingRecord record : pending) {
+            record.RECORD.putLong(record.POSITION, start + record.OFFSET);
+            idStream.write(record.RECORD.array());
+        }
+    }
+
+    /**
+     * ID record of a waveform in a staging block
+     */
+    private static final class PendingRecord {
+        private final ByteBuffer RECORD;
+        /**
+         * of the start byte in the record
+         */
+        private final int POSITION;
+        /**
+         * [byte] of the waveform in the block
+         */
+        private final int OFFSET;
+
+        private PendingRecord(ByteBuffer record, int position, int offset) {
+            RECORD = record;
+            POSITION = position;
+            OFFSET = offset;
+        }
+    }
+
+    /**
+     * Waveforms encoded by a thread, which are not written yet. Access must be
+     * synchronized on it.
+     */
+    private final class Stage {
+        private final ByteBuffer BLOCK = ByteBuffer.allocate(STAGE_BYTES);
+        private final List<PendingRecord> PENDING = new ArrayList<>();
+
+        private void add(double[] data, ByteBuffer record, int position) throws IOException {
+            int size = 8 * data.length;
+            if (BLOCK.remaining() < size) write();
+            if (BLOCK.capacity() < size) {
+                // larger than a block
+                ByteBuffer large = ByteBuffer.allocate(size);
+                large.asDoubleBuffer().put(data);
+                WaveformDataWriter.this.write(large, Collections.singletonList(new PendingRecord(record, position, 0)));
+                return;
+            }
+            int offset = BLOCK.position();
+            BLOCK.asDoubleBuffer().put(data);
+            BLOCK.position(offset + size);
+            PENDING.add(new PendingRecord(record, position, offset));
+        }
+
+        private void write() throws IOException {
+            if (PENDING.isEmpty()) return;
+            BLOCK.flip();
+            try {
+                WaveformDataWriter.this.write(BLOCK, PENDING);
+            } finally {
+                BLOCK.clear();
+                PENDING.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds a waveform to the staging block of the current thread. The start
+     * byte is put at the position of the record when the block is written.
+     *
+     * @param data     waveform data
+     * @param record   ID record
+     * @param position of the start byte in the record
+     * @throws IOException if the staging block is full and can not be written
+     */
+    private void addWaveform(double[] data, ByteBuffer record, int position) throws IOException {
+        Stage stage = this.stage.get();
+        synchronized (stage) {
+            stage.add(data, record, position);
+        }
     }
 
     /**
      * @param basicID StartByte will be ignored and set properly in the output file.
      * @throws IOException if an I/O error occurs
      */
-    public synchronized void addBasicID(BasicID basicID) throws IOException {
+    public void addBasicID(BasicID basicID) throws IOException {
         if (mode != 0) throw new RuntimeException("No BasicID please, would you.");
-
+        ByteBuffer record = ByteBuffer.allocate(28);
         switch (basicID.TYPE) {
             case OBS:
-                idStream.writeBoolean(true); // if it is obs 1Byte
+                record.put((byte) 1); // if it is obs 1Byte
                 break;
             case SYN:
-                idStream.writeBoolean(false); // if it is obs
+                record.put((byte) 0); // if it is obs
                 break;
             default:
                 throw new RuntimeException("This is a partial derivative.");
         }
-        long startByte = dataLength;
-        addWaveform(basicID.getData());
-        idStream.writeShort(stationMap.get(basicID.STATION));
-        idStream.writeShort(globalCMTIDMap.get(basicID.ID));
-        idStream.writeByte(basicID.COMPONENT.valueOf());
-        idStream.writeByte(getIndexOfRange(basicID.MIN_PERIOD, basicID.MAX_PERIOD));
+        record.putShort(stationMap.get(basicID.STATION).shortValue());
+        record.putShort(globalCMTIDMap.get(basicID.ID).shortValue());
+        record.put((byte) basicID.COMPONENT.valueOf());
+        record.put((byte) getIndexOfRange(basicID.MIN_PERIOD, basicID.MAX_PERIOD));
 
         // 4Byte * 3
-        idStream.writeFloat((float) basicID.getStartTime()); // start time
-        idStream.writeInt(basicID.getNpts()); // number of points
-        idStream.writeFloat((float) basicID.getSamplingHz()); // sampling Hz
-
+        record.putFloat((float) basicID.getStartTime()); // start time
+        record.putInt(basicID.getNpts()); // number of points
+        record.putFloat((float) basicID.getSamplingHz()); // sampling Hz
 
         // convolutionされているか 観測波形なら true
-        idStream.writeBoolean(basicID.getWaveformType() == WaveformType.OBS || basicID.CONVOLUTE); // 1Byte
-        idStream.writeLong(startByte); // データの格納場所 8 Byte
-
+        record.put((byte) (basicID.getWaveformType() == WaveformType.OBS || basicID.CONVOLUTE ? 1 : 0)); // 1Byte
+        addWaveform(basicID.getData(), record, record.position()); // データの格納場所 8 Byte
     }
 
     private int getIndexOfRange(double min, double max) {
@@ -254,25 +392,26 @@ public class WaveformDataWriter implements Closeable, Flushable {
      *                  be ignored and set properly in the output file.
      * @throws IOException if an I/O error occurs
      */
-    public synchronized void addPartialID(PartialID partialID) throws IOException {
+    public void addPartialID(PartialID partialID) throws IOException {
         if (partialID.TYPE != WaveformType.PARTIAL) throw new RuntimeException(
                 "This is not a partial derivative. " + Thread.currentThread().getStackTrace()[1].getMethodName());
         if (mode != 1) throw new RuntimeException("No Partial please, would you.");
-        long startByte = dataLength;
-        addWaveform(partialID.getData());
-        idStream.writeShort(stationMap.get(partialID.STATION));
-        idStream.writeShort(globalCMTIDMap.get(partialID.ID));
-        idStream.writeByte(partialID.COMPONENT.valueOf());
-        idStream.writeByte(getIndexOfRange(partialID.MIN_PERIOD, partialID.MAX_PERIOD));
-        idStream.writeFloat((float) partialID.START_TIME); // start time 4 Byte
-        idStream.writeInt(partialID.NPTS); // データポイント数 4 Byte
-        idStream.writeFloat((float) partialID.SAMPLINGHZ); // sampling Hz 4 Byte
+        ByteBuffer record = ByteBuffer.allocate(30);
+        record.putShort(stationMap.get(partialID.STATION).shortValue());
+        record.putShort(globalCMTIDMap.get(partialID.ID).shortValue());
+        record.put((byte) partialID.COMPONENT.valueOf());
+        record.put((byte) getIndexOfRange(partialID.MIN_PERIOD, partialID.MAX_PERIOD));
+        record.putFloat((float) partialID.START_TIME); // start time 4 Byte
+        record.putInt(partialID.NPTS); // データポイント数 4 Byte
+        record.putFloat((float) partialID.SAMPLINGHZ); // sampling Hz 4 Byte
         // convolutionされているか
-        idStream.writeBoolean(partialID.CONVOLUTE); // 1Byte
-        idStream.writeLong(startByte); // データの格納場所 8 Byte
+        record.put((byte) (partialID.CONVOLUTE ? 1 : 0)); // 1Byte
+        int startBytePosition = record.position(); // データの格納場所 8 Byte
+        record.position(startBytePosition + 8);
         // partial type 1 Byte
-        idStream.writeByte(partialID.getPartialType().getValue());
-        idStream.writeShort(perturbationLocationMap.get(partialID.POINT_LOCATION));
+        record.put((byte) partialID.getPartialType().getValue());
+        record.putShort(perturbationLocationMap.get(partialID.POINT_LOCATION).shortValue());
+        addWaveform(partialID.getData(), record, startBytePosition);
     }
 
 }